@@ -2,8 +2,12 @@ package com.example.librarybackend;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication //@Configuration, @EnableAutoConfiguration, @ComponentScan(Component, Service, Repository, Controller)
+@EnableScheduling // Runs @Scheduled jobs such as the dashboard stats reconciliation
+@EnableAsync // Runs @Async jobs such as the analytics backfill off the request thread
 public class LibraryBackendApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,72 @@
+package com.example.librarybackend.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Smaller response bodies for the big list endpoints.
+ *
+ * Clients that send Accept: application/x-jackson-smile or application/cbor get the same data as
+ * binary Smile or CBOR instead of JSON. Both skip the quotes and escaping, and Smile also writes
+ * each repeated field name only once, which is most of a list's size. Clients that ask for JSON
+ * or anything at all still get JSON, so browsers and curl see no difference.
+ *
+ * Independently, responses of at least library.compression.min-size bytes are gzipped for clients
+ * that send Accept-Encoding: gzip (see ResponseCompressionFilter). Smile and gzip together give
+ * the smallest bodies.
+ */
+@Configuration
+public class EncodingConfig implements WebMvcConfigurer {
+
+    private final Jackson2ObjectMapperBuilder objectMapperBuilder;
+
+    public EncodingConfig(Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        this.objectMapperBuilder = objectMapperBuilder;
+    }
+
+    // Spring MVC adds Smile and CBOR converters after the JSON one when the libraries are present,
+    // but with default Jackson settings. Swap them for ones configured like the JSON converter, so
+    // dates and the like come out the same in every format.
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        for (int i = 0; i < converters.size(); i++) {
+            if (converters.get(i) instanceof MappingJackson2SmileHttpMessageConverter) {
+                converters.set(i, new MappingJackson2SmileHttpMessageConverter(
+                        objectMapperBuilder.build().copyWith(new SmileFactory())));
+            } else if (converters.get(i) instanceof MappingJackson2CborHttpMessageConverter) {
+                converters.set(i, new MappingJackson2CborHttpMessageConverter(
+                        objectMapperBuilder.build().copyWith(new CBORFactory())));
+            }
+        }
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "library.compression.enabled", havingValue = "true", matchIfMissing = true)
+    public FilterRegistrationBean<ResponseCompressionFilter> responseCompressionFilter(
+            @Value("${library.compression.min-size:2048}") int minSize,
+            @Value("${library.compression.level:5}") int level,
+            @Value("${library.compression.pool-size:0}") int poolSize,
+            @Value("${library.compression.mime-types:application/json,application/*+json,application/x-jackson-smile,"
+                    + "application/cbor,application/x-ndjson,text/csv,text/plain}") List<MediaType> mimeTypes) {
+        // Enough idle encoders for every request thread that could be compressing at once on these CPUs
+        int idle = poolSize > 0 ? poolSize : 2 * Runtime.getRuntime().availableProcessors();
+        GzipEncoderPool encoders = new GzipEncoderPool(level, idle, 16 * 1024);
+        FilterRegistrationBean<ResponseCompressionFilter> registration =
+                new FilterRegistrationBean<>(new ResponseCompressionFilter(encoders, minSize, mimeTypes));
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.librarybackend.config;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+// Gzip encoders (a Deflater with its output buffer and checksum) kept for reuse between responses.
+// A Deflater holds a few hundred KB of native zlib state, which GZIPOutputStream allocates afresh
+// for every response and only frees when the stream is closed or collected. Here an encoder is
+// reset and put back instead. At most maxIdle are kept; under a burst extra ones are created and
+// ended again when they are returned.
+public class GzipEncoderPool {
+
+    // The fixed 10-byte gzip header: magic, deflate, no flags, no mtime, no extra flags, unknown OS
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final int level;
+    private final int bufferSize;
+    private final BlockingQueue<Encoder> idle;
+
+    public GzipEncoderPool(int level, int maxIdle, int bufferSize) {
+        this.level = level;
+        this.bufferSize = bufferSize;
+        this.idle = new ArrayBlockingQueue<>(maxIdle);
+    }
+
+    // A gzip stream writing to out. finish() ends the gzip data and returns the encoder to the
+    // pool without closing out; close() does the same and then closes out.
+    public GzipStream open(OutputStream out) throws IOException {
+        Encoder encoder = idle.poll();
+        if (encoder == null) {
+            encoder = new Encoder(new Deflater(level, true), new byte[bufferSize], new CRC32());
+        }
+        out.write(HEADER);
+        return new GzipStream(out, encoder);
+    }
+
+    public int getIdle() {
+        return idle.size();
+    }
+
+    // Helper methods
+
+    private void release(Encoder encoder) {
+        encoder.deflater.reset();
+        encoder.crc.reset();
+        if (!idle.offer(encoder)) {
+            encoder.deflater.end();
+        }
+    }
+
+    private record Encoder(Deflater deflater, byte[] buffer, CRC32 crc) {
+    }
+
+    public final class GzipStream extends OutputStream {
+        private final OutputStream out;
+        private Encoder encoder;
+        private long uncompressed;
+
+        private GzipStream(OutputStream out, Encoder encoder) {
+            this.out = out;
+            this.encoder = encoder;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (encoder == null) {
+                throw new IOException("Gzip stream already finished");
+            }
+            if (len == 0) {
+                return;
+            }
+            encoder.crc.update(b, off, len);
+            uncompressed += len;
+            encoder.deflater.setInput(b, off, len);
+            while (!encoder.deflater.needsInput()) {
+                deflate(Deflater.NO_FLUSH);
+            }
+        }
+
+        // Pushes out everything written so far as complete deflate blocks, for streamed responses.
+        // Costs a little compression each time, so it is only worth it when the client is waiting.
+        @Override
+        public void flush() throws IOException {
+            if (encoder != null) {
+                int written;
+                do {
+                    written = deflate(Deflater.SYNC_FLUSH);
+                } while (written == encoder.buffer.length);
+            }
+            out.flush();
+        }
+
+        public void finish() throws IOException {
+            if (encoder == null) {
+                return;
+            }
+            Encoder finishing = encoder;
+            encoder = null;
+            try {
+                finishing.deflater.finish();
+                while (!finishing.deflater.finished()) {
+                    int written = finishing.deflater.deflate(finishing.buffer, 0, finishing.buffer.length);
+                    out.write(finishing.buffer, 0, written);
+                }
+                long crc = finishing.crc.getValue();
+                out.write(new byte[] {
+                        (byte) crc, (byte) (crc >> 8), (byte) (crc >> 16), (byte) (crc >> 24),
+                        (byte) uncompressed, (byte) (uncompressed >> 8), (byte) (uncompressed >> 16), (byte) (uncompressed >> 24)});
+            } finally {
+                release(finishing);
+            }
+        }
+
+        // Gives the encoder back without finishing, e.g. when the client has gone away
+        public void abandon() {
+            if (encoder != null) {
+                release(encoder);
+                encoder = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                finish();
+            } finally {
+                out.close();
+            }
+        }
+
+        private int deflate(int flush) throws IOException {
+            int written = encoder.deflater.deflate(encoder.buffer, 0, encoder.buffer.length, flush);
+            if (written > 0) {
+                out.write(encoder.buffer, 0, written);
+            }
+            return written;
+        }
+    }
+}
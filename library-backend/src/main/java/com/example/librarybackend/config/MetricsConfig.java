@@ -0,0 +1,135 @@
+package com.example.librarybackend.config;
+
+import com.example.librarybackend.service.AuthTokenService;
+import com.example.librarybackend.service.NotificationCountService;
+import com.example.librarybackend.service.PasswordHashingService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hibernate.cfg.AvailableSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Application metrics on top of what Spring Boot Actuator records by itself.
+ *
+ * Actuator already times every request (http.server.requests, per URI template) and every
+ * repository method (spring.data.repository.invocations), and publishes Hibernate statistics
+ * (hibernate.*) and connection pool gauges (hikaricp.connections.*); application.properties
+ * turns on their percentiles. Here we add the number of SQL statements each request made
+ * (http.server.requests.sql.statements), which is what gives an N+1 query away, and gauges
+ * for the few in-memory resources the app manages itself.
+ */
+@Configuration
+public class MetricsConfig implements WebMvcConfigurer {
+
+    private static final Logger log = LoggerFactory.getLogger(MetricsConfig.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Requests that make more statements than this are logged, so a new N+1 shows up in the logs too
+    @Value("${library.metrics.statements-per-request-warn:100}")
+    private int statementsWarnThreshold;
+
+    @Bean
+    public HibernatePropertiesCustomizer statementCounterCustomizer() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new StatementCounter());
+    }
+
+    @Bean
+    public MeterBinder libraryGauges(NotificationCountService notificationCountService,
+                                     PasswordHashingService passwordHashingService,
+                                     AuthTokenService authTokenService,
+                                     ObjectProvider<FilterRegistrationBean<RequestAdmissionFilter>> admission,
+                                     ObjectProvider<VirtualThreadPinningMonitor> pinningMonitor,
+                                     ObjectProvider<ReplicaLagMonitor> replicaLagMonitor) {
+        return registry -> {
+            Gauge.builder("library.notifications.streams.open", notificationCountService,
+                            NotificationCountService::getOpenConnections)
+                    .description("Open Server-Sent Event streams for unread counts")
+                    .register(registry);
+            Gauge.builder("library.auth.password-checks.queued", passwordHashingService, PasswordHashingService::getQueued)
+                    .description("Password hashes and checks waiting for a worker")
+                    .register(registry);
+            Gauge.builder("library.auth.tokens.revoked", authTokenService, AuthTokenService::getRevokedCount)
+                    .description("Revoked tokens remembered until they expire")
+                    .register(registry);
+            // Only registered when running on virtual threads
+            admission.ifAvailable(registration -> {
+                RequestAdmissionFilter filter = registration.getFilter();
+                Gauge.builder("library.requests.in-flight", filter, RequestAdmissionFilter::getInFlight)
+                        .description("API requests admitted and not finished yet")
+                        .register(registry);
+                Gauge.builder("library.requests.rejected", filter, RequestAdmissionFilter::getRejectedCount)
+                        .description("API requests turned away with 503 since startup")
+                        .register(registry);
+            });
+            pinningMonitor.ifAvailable(monitor ->
+                    Gauge.builder("library.virtual-threads.pinned", monitor, VirtualThreadPinningMonitor::getPinnedCount)
+                            .description("Pinned virtual thread waits longer than the threshold since startup")
+                            .register(registry));
+            // Only registered when read replicas are configured
+            replicaLagMonitor.ifAvailable(monitor -> monitor.getReplicas().forEach(replica ->
+                    Gauge.builder("library.datasource.replica.lag", replica,
+                                    r -> r.getLagMs() == Long.MAX_VALUE ? Double.NaN : r.getLagMs())
+                            .tag("replica", replica.getName())
+                            .baseUnit("milliseconds")
+                            .description("How far the replica was behind the primary at the last heartbeat (NaN if unreachable)")
+                            .register(registry)));
+        };
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new AsyncHandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                StatementCounter.start();
+                return true;
+            }
+
+            // Streams (SSE) go async and finish on another thread; just stop counting on this one
+            @Override
+            public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                                       Object handler) {
+                StatementCounter.stop();
+            }
+
+            @Override
+            public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                        Exception ex) {
+                int statements = StatementCounter.stop();
+                if (statements < 0) {
+                    return;
+                }
+                Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+                DistributionSummary.builder("http.server.requests.sql.statements")
+                        .description("SQL statements Hibernate ran for one request")
+                        .tag("method", request.getMethod())
+                        .tag("uri", uri)
+                        .publishPercentiles(0.5, 0.95, 0.99)
+                        .register(meterRegistry)
+                        .record(statements);
+                if (statements > statementsWarnThreshold) {
+                    log.warn("{} {} ran {} SQL statements", request.getMethod(), uri, statements);
+                }
+            }
+        }).addPathPatterns("/api/**");
+    }
+}
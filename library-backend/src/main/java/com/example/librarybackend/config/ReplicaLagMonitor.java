@@ -0,0 +1,97 @@
+package com.example.librarybackend.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Measures how far behind the primary each read replica is. Every interval the time is written to
+// the replica_heartbeat row on the primary, and the row is read back from each replica: a replica
+// has every write up to the time it shows, so it is at most now minus that behind. A replica that
+// can't be read, or has no heartbeat row yet, counts as infinitely behind and gets no reads.
+// The writes and each replica's reads run as separate tasks on threads of their own, so neither
+// the shared @Scheduled thread nor the other replicas wait out the connection timeout of one that
+// is down. Registered by ReplicaRoutingConfig.
+public class ReplicaLagMonitor {
+
+    private static final String UPDATE_SQL = "UPDATE replica_heartbeat SET beat_at = ? WHERE id = 1";
+    private static final String INSERT_SQL = "INSERT INTO replica_heartbeat (id, beat_at) VALUES (1, ?)";
+    private static final String SELECT_SQL = "SELECT beat_at FROM replica_heartbeat WHERE id = 1";
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    private final JdbcTemplate primary;
+    private final List<ReplicaRoutingDataSource.Replica> replicas;
+    private final long maxStalenessMs;
+    private final long intervalMs;
+    private final ScheduledExecutorService executor;
+
+    public ReplicaLagMonitor(DataSource primary, List<ReplicaRoutingDataSource.Replica> replicas,
+                             long maxStalenessMs, long intervalMs) {
+        this.primary = new JdbcTemplate(primary);
+        this.replicas = replicas;
+        this.maxStalenessMs = maxStalenessMs;
+        this.intervalMs = intervalMs;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("replica-heartbeat-");
+        threadFactory.setDaemon(true);
+        this.executor = Executors.newScheduledThreadPool(1 + replicas.size(), threadFactory);
+    }
+
+    @PostConstruct
+    public void start() {
+        executor.scheduleWithFixedDelay(this::writeBeat, 0, intervalMs, TimeUnit.MILLISECONDS);
+        for (ReplicaRoutingDataSource.Replica replica : replicas) {
+            executor.scheduleWithFixedDelay(() -> measure(replica), intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public List<ReplicaRoutingDataSource.Replica> getReplicas() {
+        return replicas;
+    }
+
+    // Helper methods
+
+    private void writeBeat() {
+        long now = System.currentTimeMillis();
+        try {
+            if (primary.update(UPDATE_SQL, now) == 0) {
+                primary.update(INSERT_SQL, now);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not write the replica heartbeat: {}", e.getMessage());
+        }
+    }
+
+    private void measure(ReplicaRoutingDataSource.Replica replica) {
+        long lag;
+        try {
+            List<Long> beats = new JdbcTemplate(replica.getDataSource()).queryForList(SELECT_SQL, Long.class);
+            lag = beats.isEmpty() ? Long.MAX_VALUE : Math.max(System.currentTimeMillis() - beats.get(0), 0);
+        } catch (DataAccessException e) {
+            log.debug("Could not read the heartbeat from replica {}", replica.getName(), e);
+            lag = Long.MAX_VALUE;
+        }
+        boolean wasUsable = replica.getLagMs() <= maxStalenessMs;
+        replica.setLagMs(lag);
+        if (lag <= maxStalenessMs && !wasUsable) {
+            log.info("Replica {} is {} ms behind; using it for reads", replica.getName(), lag);
+        } else if (lag > maxStalenessMs && wasUsable) {
+            log.warn("Replica {} is {}; reads go to the primary until it catches up", replica.getName(),
+                    lag == Long.MAX_VALUE ? "unreachable" : lag + " ms behind");
+        }
+    }
+}
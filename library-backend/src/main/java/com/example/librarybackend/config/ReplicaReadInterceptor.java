@@ -0,0 +1,72 @@
+package com.example.librarybackend.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpMethod;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.time.Duration;
+
+// Decides which requests may read from a replica: GET handlers annotated
+// @Transactional(readOnly = true), unless the client changed something within the last
+// readYourWritesWindow. Those clients read from the primary until every replica in use is sure to
+// have their change, so a loan they have just issued or returned is in the next list they load.
+// Clients are told apart by the user in their login token, or by address when they send none.
+// Registered by ReplicaRoutingConfig.
+public class ReplicaReadInterceptor implements AsyncHandlerInterceptor {
+
+    private final Cache<String, Boolean> recentWriters;
+
+    public ReplicaReadInterceptor(Duration readYourWritesWindow, long maxTrackedClients) {
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(readYourWritesWindow).maximumSize(maxTrackedClients).build();
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String client = clientKey(request);
+        if (!isSafe(request.getMethod())) {
+            // Noted before the write runs, so a read sent as soon as its response arrives is covered
+            recentWriters.put(client, Boolean.TRUE);
+        } else if (handler instanceof HandlerMethod method && isReadOnly(method)
+                && recentWriters.getIfPresent(client) == null) {
+            ReplicaRoutingDataSource.allowReplicaReads();
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        ReplicaRoutingDataSource.clearReplicaReads();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        ReplicaRoutingDataSource.clearReplicaReads();
+    }
+
+    // Helper methods
+
+    private static String clientKey(HttpServletRequest request) {
+        return TokenAuthenticationFilter.principal(request)
+                .map(claims -> "user:" + claims.getUserId())
+                .orElseGet(() -> "address:" + request.getRemoteAddr());
+    }
+
+    private static boolean isSafe(String method) {
+        return HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method) || HttpMethod.OPTIONS.matches(method);
+    }
+
+    private static boolean isReadOnly(HandlerMethod method) {
+        Transactional transactional = AnnotatedElementUtils.findMergedAnnotation(method.getMethod(), Transactional.class);
+        if (transactional == null) {
+            transactional = AnnotatedElementUtils.findMergedAnnotation(method.getBeanType(), Transactional.class);
+        }
+        return transactional != null && transactional.readOnly();
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.librarybackend.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read replicas for the read-heavy endpoints, switched on by listing their JDBC URLs in
+ * library.datasource.replica-urls.
+ *
+ * The primary pool is built from spring.datasource.* as usual. Each replica gets a pool with the
+ * same settings and credentials, marked read-only. The application's DataSource picks between
+ * them per transaction (see ReplicaRoutingDataSource). GET handlers annotated
+ * @Transactional(readOnly = true) read from a replica; everything else, including repository calls
+ * that Spring Data runs read-only on their own, stays on the primary. Code that loads a row and
+ * saves it again, and the lookup caches, must never be handed a stale row.
+ *
+ * Replicas lag behind the primary. ReplicaLagMonitor measures by how much, and a replica more than
+ * library.datasource.max-staleness behind gets no reads until it has caught up. A client that
+ * changed something in the last max-staleness (plus one heartbeat) reads from the primary, so it
+ * always sees its own writes. Recent writers are only remembered in memory, so with several backend
+ * instances a client has to keep talking to the same one.
+ *
+ * To try it locally, run a second MySQL as a replica of the first (binlog replication) and put its
+ * URL in library.datasource.replica-urls. A replica that is down at startup doesn't stop the
+ * backend; it just gets no reads until it answers.
+ */
+@Configuration
+@ConditionalOnExpression("!'${library.datasource.replica-urls:}'.isBlank()")
+public class ReplicaRoutingConfig implements WebMvcConfigurer, DisposableBean {
+
+    // Clients remembered as having written recently; past this many the oldest are forgotten early
+    private static final long MAX_TRACKED_WRITERS = 100_000;
+    // Longest wait for a replica connection before the read goes to the primary instead
+    private static final long REPLICA_CONNECTION_TIMEOUT_MS = 1000;
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingConfig.class);
+
+    @Value("${library.datasource.replica-urls}")
+    private List<String> replicaUrls;
+
+    @Value("${library.datasource.max-staleness:PT5S}")
+    private Duration maxStaleness;
+
+    @Value("${library.datasource.replica-heartbeat-interval-ms:1000}")
+    private long heartbeatIntervalMs;
+
+    private final List<HikariDataSource> replicaPools = new ArrayList<>();
+
+    // The pool Spring Boot would otherwise have created, with the spring.datasource.hikari.* settings
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ObjectProvider<MeterRegistry> meterRegistry) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (String url : replicaUrls) {
+            HikariConfig config = new HikariConfig();
+            primaryDataSource.copyStateTo(config);
+            config.setJdbcUrl(url.trim());
+            config.setPoolName("replica-" + replicas.size());
+            config.setReadOnly(true);
+            config.setInitializationFailTimeout(-1); // Start even if the replica isn't reachable yet
+            // A replica that can't hand out a connection quickly is skipped for the primary, not waited on
+            config.setConnectionTimeout(Math.min(config.getConnectionTimeout(), REPLICA_CONNECTION_TIMEOUT_MS));
+            meterRegistry.ifAvailable(registry -> config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+            HikariDataSource pool = new HikariDataSource(config);
+            replicaPools.add(pool);
+            replicas.put(config.getPoolName(), pool);
+        }
+        log.info("Read replicas configured: {}; reads more than {} behind go to the primary", replicas.keySet(), maxStaleness);
+        // Lazy, so the routing decision is made at the first statement, once the transaction is marked read-only
+        return new LazyConnectionDataSourceProxy(
+                new ReplicaRoutingDataSource(primaryDataSource, replicas, maxStaleness.toMillis()));
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(HikariDataSource primaryDataSource, DataSource dataSource) throws Exception {
+        return new ReplicaLagMonitor(primaryDataSource, dataSource.unwrap(ReplicaRoutingDataSource.class).getReplicas(),
+                maxStaleness.toMillis(), heartbeatIntervalMs);
+    }
+
+    @Bean
+    public ReplicaReadInterceptor replicaReadInterceptor() {
+        // A replica in use is at most max-staleness behind as of the last heartbeat, so a write is on
+        // every replica in use by then, plus one heartbeat
+        return new ReplicaReadInterceptor(maxStaleness.plusMillis(heartbeatIntervalMs), MAX_TRACKED_WRITERS);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(replicaReadInterceptor()).addPathPatterns("/api/**");
+    }
+
+    // The replica pools aren't beans, so they are closed here
+    @Override
+    public void destroy() {
+        replicaPools.forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.librarybackend.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Hands out replica connections for read-only transactions and primary connections for
+// everything else. A replica is only used when both hold:
+//  - the thread is handling a request ReplicaReadInterceptor has cleared for replica reads, and
+//  - the transaction asking for the connection is read-only.
+// Replicas take turns. One whose last measured lag (see ReplicaLagMonitor) is over maxStalenessMs,
+// or not yet known, is skipped; with none left the primary serves the read. So does a read whose
+// replica can't hand out a connection, and that replica is skipped until the next heartbeat.
+// ReplicaRoutingConfig wraps this in a LazyConnectionDataSourceProxy, so the connection is only
+// picked at the first statement, after the transaction manager has marked the transaction read-only.
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final String PRIMARY = "primary";
+
+    // Set while a request that may read from a replica is being handled on this thread
+    private static final ThreadLocal<Boolean> replicaReadsAllowed = new ThreadLocal<>();
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final long maxStalenessMs;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, long maxStalenessMs) {
+        this.primary = primary;
+        this.maxStalenessMs = maxStalenessMs;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        replicas.forEach((name, dataSource) -> {
+            this.replicas.add(new Replica(name, dataSource));
+            targets.put(name, dataSource);
+        });
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    public static void allowReplicaReads() {
+        replicaReadsAllowed.set(Boolean.TRUE);
+    }
+
+    public static void clearReplicaReads() {
+        replicaReadsAllowed.remove();
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Replica replica = chooseReplica();
+        if (replica == null) {
+            return primary.getConnection();
+        }
+        try {
+            return replica.getDataSource().getConnection();
+        } catch (SQLException e) {
+            replica.setLagMs(Long.MAX_VALUE);
+            log.warn("No connection from replica {}, reading from the primary: {}", replica.getName(), e.getMessage());
+            return primary.getConnection();
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Replica replica = chooseReplica();
+        return replica != null ? replica.getName() : PRIMARY;
+    }
+
+    // Helper methods
+
+    // The replica for a connection asked for now, or null for the primary
+    private Replica chooseReplica() {
+        if (replicaReadsAllowed.get() == null || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return null;
+        }
+        int start = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.getLagMs() <= maxStalenessMs) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    public static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        // Upper bound on how far behind the primary it is; MAX_VALUE until measured or when unreachable
+        private volatile long lagMs = Long.MAX_VALUE;
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        public String getName() { return name; }
+        public DataSource getDataSource() { return dataSource; }
+        public long getLagMs() { return lagMs; }
+        public void setLagMs(long lagMs) { this.lagMs = lagMs; }
+    }
+}
@@ -0,0 +1,335 @@
+package com.example.librarybackend.config;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+// Gzips API responses for clients that accept it, once the body reaches minSize bytes.
+// The first minSize bytes are held back; a response that ends before then is sent as it is, with
+// its Content-Length, since compressing a few hundred bytes saves less than it costs.
+// Only the configured content types are compressed, and never a response that already has a
+// Content-Encoding. Encoders come from a GzipEncoderPool. Registered by EncodingConfig.
+public class ResponseCompressionFilter extends OncePerRequestFilter {
+
+    private static final String GZIP = "gzip";
+
+    private final GzipEncoderPool encoders;
+    private final int minSize;
+    private final List<MediaType> compressibleTypes;
+
+    public ResponseCompressionFilter(GzipEncoderPool encoders, int minSize, List<MediaType> compressibleTypes) {
+        this.encoders = encoders;
+        this.minSize = minSize;
+        this.compressibleTypes = compressibleTypes;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (HttpMethod.HEAD.matches(request.getMethod()) || !acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+            chain.doFilter(request, response);
+            return;
+        }
+        // The response differs with Accept-Encoding even when it ends up uncompressed
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        CompressingResponse compressing = new CompressingResponse(response);
+        boolean completed = false;
+        try {
+            chain.doFilter(request, compressing);
+            completed = true;
+        } finally {
+            if (!completed) {
+                compressing.body.abandon();
+            } else if (request.isAsyncStarted()) {
+                // The body is written later (SSE, async login), so stop holding bytes back now
+                compressing.body.passThroughOrFinishLater(request);
+            } else {
+                compressing.body.finish();
+            }
+        }
+    }
+
+    // Helper methods
+
+    // Whether gzip is listed in Accept-Encoding (directly or as *) without q=0
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        boolean wildcard = false;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            boolean refused = Arrays.stream(parts).skip(1)
+                    .map(parameter -> parameter.replace(" ", ""))
+                    .anyMatch(parameter -> parameter.matches("q=0(\\.0*)?"));
+            if (name.equals(GZIP)) {
+                return !refused;
+            }
+            if (name.equals("*")) {
+                wildcard = !refused;
+            }
+        }
+        return wildcard;
+    }
+
+    private boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        try {
+            MediaType type = MediaType.parseMediaType(contentType);
+            return compressibleTypes.stream().anyMatch(compressible -> compressible.includes(type));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private final class CompressingResponse extends HttpServletResponseWrapper {
+        private final HttpServletResponse response;
+        private final ThresholdOutputStream body;
+        private PrintWriter writer;
+        private long contentLength = -1;
+
+        CompressingResponse(HttpServletResponse response) {
+            super(response);
+            this.response = response;
+            this.body = new ThresholdOutputStream(this);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return body;
+        }
+
+        @Override
+        public PrintWriter getWriter() {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(body, Charset.forName(getCharacterEncoding())), false);
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            body.flush();
+        }
+
+        // The length is only known to be right for an uncompressed body, so it is held back until then
+        @Override
+        public void setContentLength(int length) {
+            contentLength = length;
+        }
+
+        @Override
+        public void setContentLengthLong(long length) {
+            contentLength = length;
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                contentLength = value != null ? Long.parseLong(value) : -1;
+            } else {
+                super.setHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                contentLength = Long.parseLong(value);
+            } else {
+                super.addHeader(name, value);
+            }
+        }
+
+        @Override
+        public void resetBuffer() {
+            body.discardHeldBack();
+            super.resetBuffer();
+        }
+
+        @Override
+        public void reset() {
+            body.discardHeldBack();
+            contentLength = -1;
+            super.reset();
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+
+        boolean shouldCompress() {
+            int status = response.getStatus();
+            return status != HttpServletResponse.SC_NO_CONTENT && status != HttpServletResponse.SC_NOT_MODIFIED
+                    && status != HttpServletResponse.SC_PARTIAL_CONTENT
+                    && response.getHeader(HttpHeaders.CONTENT_ENCODING) == null
+                    && isCompressible(response.getContentType());
+        }
+
+        void startCompressing() {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+        }
+
+        void applyContentLength(long heldBackLength, boolean complete) {
+            if (complete) {
+                response.setContentLengthLong(heldBackLength);
+            } else if (contentLength >= 0) {
+                response.setContentLengthLong(contentLength);
+            }
+        }
+    }
+
+    // Holds back the first minSize bytes, then decides once: gzip everything from there on, or
+    // pass everything through untouched
+    private final class ThresholdOutputStream extends ServletOutputStream {
+        private final CompressingResponse owner;
+        private byte[] heldBack = new byte[Math.max(minSize, 1)];
+        private int heldBackLength;
+        private OutputStream target; // null until decided
+        private GzipEncoderPool.GzipStream gzip;
+
+        ThresholdOutputStream(CompressingResponse owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (target == null && heldBackLength + len < heldBack.length) {
+                System.arraycopy(b, off, heldBack, heldBackLength, len);
+                heldBackLength += len;
+                return;
+            }
+            if (target == null) {
+                decide(owner.shouldCompress(), false);
+            }
+            target.write(b, off, len);
+        }
+
+        // Before the threshold a flush is ignored for compressible types (Jackson flushes at the end of
+        // every body, and a short body is better sent whole with its length). Anything else, such as
+        // an event stream, is being streamed and goes out as it is from the first flush.
+        @Override
+        public void flush() throws IOException {
+            if (target == null) {
+                if (owner.shouldCompress()) {
+                    return;
+                }
+                decide(false, false);
+            }
+            target.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener listener) {
+            throw new UnsupportedOperationException("Non-blocking writes are not supported by the compression filter");
+        }
+
+        void finish() throws IOException {
+            if (owner.writer != null) {
+                owner.writer.flush();
+            }
+            if (target == null && heldBackLength == 0) {
+                // No body (304, 204, sendError...): leave the stream alone for whoever writes the error page
+                owner.applyContentLength(0, false);
+                return;
+            }
+            if (target == null) {
+                // The whole body fitted below the threshold
+                decide(false, true);
+            }
+            if (gzip != null) {
+                gzip.finish();
+            }
+        }
+
+        void abandon() {
+            if (gzip != null) {
+                gzip.abandon();
+            }
+        }
+
+        void discardHeldBack() {
+            if (target == null) {
+                heldBackLength = 0;
+            }
+        }
+
+        void passThroughOrFinishLater(HttpServletRequest request) throws IOException {
+            if (target == null) {
+                decide(false, false);
+            } else if (gzip != null) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) throws IOException {
+                        finish();
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                        abandon();
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            }
+        }
+
+        private void decide(boolean compress, boolean complete) throws IOException {
+            OutputStream out = owner.response.getOutputStream();
+            if (compress) {
+                owner.startCompressing();
+                gzip = encoders.open(out);
+                target = gzip;
+            } else {
+                owner.applyContentLength(heldBackLength, complete);
+                target = out;
+            }
+            target.write(heldBack, 0, heldBackLength);
+            heldBack = null;
+        }
+    }
+}
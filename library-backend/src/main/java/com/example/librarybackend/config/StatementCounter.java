@@ -0,0 +1,31 @@
+package com.example.librarybackend.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+// Counts the SQL statements Hibernate prepares on the current thread between start() and stop().
+// Registered as Hibernate's statement inspector by MetricsConfig; it leaves the SQL unchanged.
+// Statements sent through JdbcTemplate (bulk import, outbox) bypass Hibernate and aren't counted.
+public class StatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<int[]> COUNT = new ThreadLocal<>();
+
+    public static void start() {
+        COUNT.set(new int[1]);
+    }
+
+    // Statements counted since start(), or -1 if start() wasn't called on this thread
+    public static int stop() {
+        int[] count = COUNT.get();
+        COUNT.remove();
+        return count == null ? -1 : count[0];
+    }
+
+    @Override
+    public String inspect(String sql) {
+        int[] count = COUNT.get();
+        if (count != null) {
+            count[0]++;
+        }
+        return sql;
+    }
+}
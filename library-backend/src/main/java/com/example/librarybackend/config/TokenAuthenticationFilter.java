@@ -0,0 +1,79 @@
+package com.example.librarybackend.config;
+
+import com.example.librarybackend.service.AuthTokenService;
+import com.example.librarybackend.service.AuthTokenService.TokenClaims;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.Set;
+
+// Checks the bearer token on API requests and leaves its claims in the PRINCIPAL request attribute
+// for the controllers, without touching the database. A token that is present but invalid, expired
+// or revoked is answered 401. Requests without a token go through as anonymous unless requireToken
+// is set; login and CORS preflight requests always go through.
+// EventSource and <img> can't set headers, so the token may also come as ?access_token=.
+// Registered by AuthConfig.
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+
+    public static final String PRINCIPAL_ATTRIBUTE = TokenAuthenticationFilter.class.getName() + ".PRINCIPAL";
+
+    private static final String BEARER_PREFIX = "Bearer ";
+    private static final String TOKEN_PARAMETER = "access_token";
+    private static final Set<String> PUBLIC_PATHS = Set.of("/api/auth/login");
+
+    private final AuthTokenService authTokenService;
+    private final boolean requireToken;
+
+    public TokenAuthenticationFilter(AuthTokenService authTokenService, boolean requireToken) {
+        this.authTokenService = authTokenService;
+        this.requireToken = requireToken;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String token = findToken(request);
+        if (token != null) {
+            Optional<TokenClaims> claims = authTokenService.verify(token);
+            if (claims.isEmpty()) {
+                unauthorized(response, "Bearer error=\"invalid_token\"");
+                return;
+            }
+            request.setAttribute(PRINCIPAL_ATTRIBUTE, claims.get());
+        } else if (requireToken && !HttpMethod.OPTIONS.matches(request.getMethod())
+                && !PUBLIC_PATHS.contains(request.getRequestURI())) {
+            unauthorized(response, "Bearer");
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    // The claims of the request's token, if it came with a valid one
+    public static Optional<TokenClaims> principal(HttpServletRequest request) {
+        return Optional.ofNullable((TokenClaims) request.getAttribute(PRINCIPAL_ATTRIBUTE));
+    }
+
+    // Helper methods
+
+    private static String findToken(HttpServletRequest request) {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())) {
+            return header.substring(BEARER_PREFIX.length()).trim();
+        }
+        String parameter = request.getParameter(TOKEN_PARAMETER);
+        return parameter != null && !parameter.isBlank() ? parameter : null;
+    }
+
+    private static void unauthorized(HttpServletResponse response, String challenge) {
+        response.setStatus(HttpStatus.UNAUTHORIZED.value());
+        response.setHeader(HttpHeaders.WWW_AUTHENTICATE, challenge);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.librarybackend.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * Extra setup for running on virtual threads (spring.threads.virtual.enabled=true, Java 21+).
+ *
+ * Spring Boot then runs Tomcat requests, @Async methods and @Scheduled jobs on virtual threads,
+ * so a burst of requests no longer queues for one of Tomcat's 200 worker threads. The
+ * connection pool becomes the real limit instead: every request that reaches the database
+ * waits for one of its connections. To keep thousands of waiting requests from timing out
+ * inside Hikari, requests are admitted up to a multiple of the pool size and the rest get a
+ * quick 503. Growing the pool to match the burst would only move the pile-up into MySQL, so
+ * startup fails if the pool is larger than library.virtual-threads.max-pool-size.
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadConfig {
+
+    // Admitted requests per pooled connection: part of a request's time is spent without one
+    // (JSON, cache hits, images), so a few requests can share each connection without waiting long
+    private static final int REQUESTS_PER_CONNECTION = 4;
+    // Used if the pool size can't be read (a DataSource that isn't Hikari)
+    private static final int FALLBACK_MAX_CONCURRENT_REQUESTS = 200;
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    @Value("${library.virtual-threads.max-concurrent-requests:0}")
+    private int maxConcurrentRequests;
+
+    @Value("${library.virtual-threads.admission-timeout-ms:2000}")
+    private long admissionTimeoutMs;
+
+    @Value("${library.virtual-threads.max-pool-size:50}")
+    private int maxPoolSize;
+
+    @Bean
+    public FilterRegistrationBean<RequestAdmissionFilter> requestAdmissionFilter(DataSource dataSource) throws SQLException {
+        int poolSize = dataSource.isWrapperFor(HikariDataSource.class)
+                ? dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize() : -1;
+        if (poolSize > maxPoolSize) {
+            throw new IllegalStateException("Connection pool size " + poolSize + " is above library.virtual-threads.max-pool-size ("
+                    + maxPoolSize + "). With virtual threads the pool is what protects the database; "
+                    + "lower spring.datasource.hikari.maximum-pool-size or raise the limit deliberately.");
+        }
+
+        int permits = maxConcurrentRequests > 0 ? maxConcurrentRequests
+                : poolSize > 0 ? poolSize * REQUESTS_PER_CONNECTION : FALLBACK_MAX_CONCURRENT_REQUESTS;
+        log.info("Virtual threads enabled: up to {} concurrent API requests share {} database connections",
+                permits, poolSize > 0 ? poolSize : "?");
+
+        FilterRegistrationBean<RequestAdmissionFilter> registration =
+                new FilterRegistrationBean<>(new RequestAdmissionFilter(permits, admissionTimeoutMs));
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.librarybackend.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reports virtual threads that block while pinned to their carrier thread.
+ *
+ * A virtual thread that blocks inside a synchronized block (or a native frame) can't unmount,
+ * so it holds one of the few carrier threads for as long as it waits. Enough of those and the
+ * whole server stalls. The JDK records each such wait as a jdk.VirtualThreadPinned flight
+ * recorder event; we stream those events in-process and log the stack of every distinct place
+ * that pins for longer than the threshold, once, so it can be fixed (usually by swapping
+ * synchronized for a ReentrantLock). Every occurrence is counted.
+ *
+ * For a quick look during development, -Djdk.tracePinnedThreads=short (set by the java21
+ * Maven profile for spring-boot:run) prints the same information on stdout.
+ */
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadPinningMonitor {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int MAX_FRAMES = 12;
+    // Distinct pinning sites we remember, so a noisy one can't grow the set without bound
+    private static final int MAX_REPORTED_SITES = 1000;
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+
+    @Value("${library.virtual-threads.pinning-threshold-ms:20}")
+    private long thresholdMs;
+
+    private final AtomicLong pinnedCount = new AtomicLong();
+    private final Set<String> reportedSites = ConcurrentHashMap.newKeySet();
+    private RecordingStream stream;
+
+    @PostConstruct
+    public void start() {
+        stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(Duration.ofMillis(thresholdMs)).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::report);
+        stream.startAsync();
+    }
+
+    @PreDestroy
+    public void stop() {
+        stream.close();
+    }
+
+    public long getPinnedCount() {
+        return pinnedCount.get();
+    }
+
+    // Helper methods
+
+    private void report(RecordedEvent event) {
+        long count = pinnedCount.incrementAndGet();
+        String stack = format(event.getStackTrace());
+        if (reportedSites.size() < MAX_REPORTED_SITES && reportedSites.add(stack)) {
+            log.warn("Virtual thread pinned for {} ms ({} pinned waits so far):\n{}",
+                    event.getDuration().toMillis(), count, stack);
+        }
+    }
+
+    private String format(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "\t(no stack trace)";
+        }
+        StringBuilder sb = new StringBuilder();
+        List<RecordedFrame> frames = stackTrace.getFrames();
+        for (int i = 0; i < Math.min(frames.size(), MAX_FRAMES); i++) {
+            RecordedFrame frame = frames.get(i);
+            sb.append("\tat ").append(frame.getMethod().getType().getName()).append('.')
+                    .append(frame.getMethod().getName()).append(':').append(frame.getLineNumber()).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.librarybackend.config;
 
+import com.example.librarybackend.service.ChangeVersionService;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -11,7 +13,9 @@ public class WebConfig implements WebMvcConfigurer {
     public void addCorsMappings(CorsRegistry registry) {
         registry.addMapping("/api/**") // Allow CORS for all /api endpoints
                 .allowedOrigins("http://localhost:3000") // Allow your React app's origin
-                .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS");
+                .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
+                // Let the React app read the list versions, for If-None-Match and ?since=
+                .exposedHeaders(HttpHeaders.ETAG, ChangeVersionService.CHANGE_VERSION_HEADER);
     }
 }
 
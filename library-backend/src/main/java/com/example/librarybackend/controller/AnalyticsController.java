@@ -0,0 +1,95 @@
+package com.example.librarybackend.controller;
+
+import com.example.librarybackend.model.CirculationRollup;
+import com.example.librarybackend.service.CirculationBackfillJob;
+import com.example.librarybackend.service.CirculationRollupService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@CrossOrigin(origins = "http://localhost:3000")
+@RequestMapping("/api/analytics")
+public class AnalyticsController {
+
+    // Widest range one request may ask for, so a single call stays small
+    private static final long MAX_DAYS = 366;
+    private static final long MAX_MONTHS = 120;
+
+    @Autowired private CirculationRollupService rollupService;
+    @Autowired private CirculationBackfillJob backfillJob;
+
+    // GET issues/returns/fines per genre
+    // e.g. /api/analytics/genres?period=day&from=2025-09-01&to=2025-09-30
+    @GetMapping("/genres")
+    @Transactional(readOnly = true)
+    public ResponseEntity<List<CirculationRollup>> getGenreRollups(
+            @RequestParam(defaultValue = "day") String period,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return getRollups(CirculationRollupService.DIMENSION_GENRE, period, from, to);
+    }
+
+    // GET issues/returns/fines per student cohort
+    @GetMapping("/cohorts")
+    @Transactional(readOnly = true)
+    public ResponseEntity<List<CirculationRollup>> getCohortRollups(
+            @RequestParam(defaultValue = "day") String period,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return getRollups(CirculationRollupService.DIMENSION_COHORT, period, from, to);
+    }
+
+    // POST - Rebuild all rollups from the transactions table in the background
+    @PostMapping("/backfill")
+    public ResponseEntity<Map<String, String>> startBackfill() {
+        if (backfillJob.isRunning()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("message", "Backfill already running"));
+        }
+        backfillJob.run();
+        return ResponseEntity.accepted().body(Map.of("message", "Backfill started"));
+    }
+
+    // GET whether a backfill is in progress
+    @GetMapping("/backfill")
+    public Map<String, Boolean> getBackfillStatus() {
+        return Map.of("running", backfillJob.isRunning());
+    }
+
+    // Helper method shared by the genre and cohort endpoints
+    private ResponseEntity<List<CirculationRollup>> getRollups(String dimension, String period,
+                                                               LocalDate from, LocalDate to) {
+        boolean monthly = "month".equalsIgnoreCase(period);
+        if (!monthly && !"day".equalsIgnoreCase(period)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        // Default to the last 30 days, or the last 12 months
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : (monthly ? end.minusMonths(11) : end.minusDays(29));
+        if (monthly) {
+            start = start.withDayOfMonth(1);
+            end = end.withDayOfMonth(1);
+        }
+
+        if (start.isAfter(end)) {
+            return ResponseEntity.badRequest().build();
+        }
+        long span = monthly ? ChronoUnit.MONTHS.between(start, end) : ChronoUnit.DAYS.between(start, end);
+        if (span >= (monthly ? MAX_MONTHS : MAX_DAYS)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        String periodKey = monthly ? CirculationRollupService.PERIOD_MONTH : CirculationRollupService.PERIOD_DAY;
+        return ResponseEntity.ok(rollupService.findRange(periodKey, dimension, start, end));
+    }
+}
@@ -1,17 +1,25 @@
 package com.example.librarybackend.controller;
 
 //Purpose: Handles user login (librarian and students).
+import com.example.librarybackend.config.TokenAuthenticationFilter;
 import com.example.librarybackend.dto.LoginRequest;
 import com.example.librarybackend.dto.LoginResponse;
 import com.example.librarybackend.model.Student;
-import com.example.librarybackend.repository.StudentRepository;
+import com.example.librarybackend.service.AuthTokenService;
+import com.example.librarybackend.service.AuthTokenService.TokenClaims;
+import com.example.librarybackend.service.EntityCacheService;
+import com.example.librarybackend.service.PasswordHashingService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 //Combines @Controller + @ResponseBody
@@ -23,94 +31,103 @@ import java.util.Optional;
 public class AuthController {
 
 
-//    @Autowired: Spring automatically provides the repository
-//    No need to create new StudentRepository()
+//    @Autowired: Spring automatically provides the service
+//    No need to create new EntityCacheService()
 
+    // Cached email -> student lookup, so repeated logins don't hit the students table
     @Autowired
-    private StudentRepository studentRepository;
+    private EntityCacheService entityCacheService;
 
-    // Password encoder for hashing
-    private BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    // Signs the tokens handed out at login, and checks passwords with BCrypt off the request threads
+    @Autowired
+    private AuthTokenService authTokenService;
+    @Autowired
+    private PasswordHashingService passwordHashingService;
 
-    // Hardcoded librarian password (hashed)
-    // Original password: "admin123"
-    // Hashed using BCrypt
-    private static final String LIBRARIAN_PASSWORD_HASH =
-            "$2a$10$xLzKcF4dDQKLLLzKcF4dDO9qj6kqJ8dQKLLLzKcF4dDO9qj6kqJ8d";
+    // The librarian account comes from configuration: its email and a BCrypt hash of its password
+    @Value("${library.auth.librarian-email:librarian@library.com}")
+    private String librarianEmail;
+    @Value("${library.auth.librarian-password-hash:}")
+    private String librarianPasswordHash;
 
+    // Students with no password set can log in with any password, as before passwords existed.
+    // On by default, since students have no way to get a password yet. Such logins get no token,
+    // since a token would let whoever knows the student's email set their password and lock them out
+    @Value("${library.auth.allow-passwordless-students:true}")
+    private boolean allowPasswordlessStudents;
+
+    // The password check runs on the hashing pool; the request thread is free until it is done
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody LoginRequest loginRequest) { //Deserializes JSON to LoginRequest object
+    public CompletableFuture<ResponseEntity<?>> login(@RequestBody LoginRequest loginRequest) { //Deserializes JSON to LoginRequest object
         String email = loginRequest.getEmail();
         String password = loginRequest.getPassword();
 
         // Validate input
         if (email == null || email.trim().isEmpty()) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .body("Email is required");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Email is required"));
         }
 
         if (password == null || password.trim().isEmpty()) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .body("Password is required");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Password is required"));
         }
 
-        // Check for the hardcoded Librarian user
-        if ("librarian@library.com".equalsIgnoreCase(email)) {
-            // Validate password
-            // For demo: accept "admin123" as password
-            if ("admin123".equals(password)) {
-                LoginResponse response = new LoginResponse(
-                        "L001",
-                        "Librarian",
-                        email,
-                        "librarian"
-                );
-                return ResponseEntity.ok(response);
-            } else {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body("Invalid credentials");
-            }
+        // Check for the Librarian user
+        if (librarianEmail.equalsIgnoreCase(email)) {
+            return checkPassword(password, librarianPasswordHash, false,
+                    new LoginResponse("L001", "Librarian", email, AuthTokenService.ROLE_LIBRARIAN));
         }
 
         // If not the librarian, check if it's a student in the database
-        Optional<Student> studentOptional = studentRepository.findByEmail(email);
+        Optional<Student> studentOptional = entityCacheService.findStudentByEmail(email);
 
         if (studentOptional.isPresent()) {
             Student student = studentOptional.get();
-
-            // In production, validate password here:
-            // if (!passwordEncoder.matches(password, student.getPasswordHash())) {
-            //     return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-            //         .body("Invalid credentials");
-            // }
-
-            // For now, accept any password for students (demo mode)
-            LoginResponse response = new LoginResponse(
-                    student.getId(),
-                    student.getName(),
-                    student.getEmail(),
-                    "student"
-            );
-            return ResponseEntity.ok(response);
+            return checkPassword(password, student.getPasswordHash(), allowPasswordlessStudents,
+                    new LoginResponse(student.getId(), student.getName(), student.getEmail(), AuthTokenService.ROLE_STUDENT));
         }
 
         // If the email doesn't match the librarian or any student, it's invalid
-        return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                .body("Invalid credentials");
+        return CompletableFuture.completedFuture(invalidCredentials());
     }
 
-    /**
-     * Helper method to hash passwords (for testing/setup)
-     * In production, this would be used during registration
-     */
-    public String hashPassword(String plainPassword) {
-        return passwordEncoder.encode(plainPassword);
+    // Revokes the token the request came with; its holder has to log in again
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(HttpServletRequest request) {
+        TokenAuthenticationFilter.principal(request).ifPresent(authTokenService::revoke);
+        return ResponseEntity.noContent().build();
     }
 
-    /**
-     * Helper method to verify passwords
-     */
-    public boolean verifyPassword(String plainPassword, String hashedPassword) {
-        return passwordEncoder.matches(plainPassword, hashedPassword);
+    // Helper methods
+
+    // Logs the user in if the password matches the hash. Without a hash, passwordless decides,
+    // and the user is logged in without a token: nothing proves who they are.
+    private CompletableFuture<ResponseEntity<?>> checkPassword(String password, String hash, boolean passwordless,
+                                                              LoginResponse user) {
+        if (hash == null || hash.isEmpty()) {
+            return CompletableFuture.completedFuture(passwordless ? ResponseEntity.ok(user) : invalidCredentials());
+        }
+        try {
+            return passwordHashingService.matches(password, hash)
+                    .thenApply(matches -> matches ? loggedIn(user) : invalidCredentials());
+        } catch (RejectedExecutionException e) {
+            // Too many logins waiting for a password check already
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body("Too many logins at once, please try again"));
+        }
+    }
+
+    private ResponseEntity<?> loggedIn(LoginResponse user) {
+        TokenClaims token = authTokenService.issue(user.getId(), user.getRole());
+        user.setToken(token.getToken());
+        user.setExpiresAt(token.getExpiresAt());
+        return ResponseEntity.ok(user);
+    }
+
+    private static ResponseEntity<?> invalidCredentials() {
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .body("Invalid credentials");
     }
-}
\ No newline at end of file
+}
@@ -1,12 +1,32 @@
 package com.example.librarybackend.controller;
 
+import com.example.librarybackend.dto.BookPageResponse;
+import com.example.librarybackend.dto.ChangeFeedResponse;
+import com.example.librarybackend.dto.ImportResult;
 import com.example.librarybackend.model.Book;
+import com.example.librarybackend.model.ChangeTracked;
 import com.example.librarybackend.repository.BookRepository;
+import com.example.librarybackend.service.BookImageService;
+import com.example.librarybackend.service.BookSearchIndex;
+import com.example.librarybackend.service.BulkImportService;
+import com.example.librarybackend.service.ChangeVersionService;
+import com.example.librarybackend.service.EntityCacheService;
+import com.example.librarybackend.service.LibraryStatsService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 @RestController
@@ -14,14 +34,106 @@ import java.util.Optional;
 @RequestMapping("/api/books")
 public class BookController {
 
+    // Page size used when the client doesn't ask for one, and the most we will ever return at once
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int DEFAULT_SEARCH_RESULTS = 10;
+    private static final int MAX_SEARCH_RESULTS = 50;
+
     @Autowired
     private BookRepository bookRepository;
+    @Autowired
+    private LibraryStatsService libraryStatsService;
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+    @Autowired
+    private EntityCacheService entityCacheService;
+    @Autowired
+    private BulkImportService bulkImportService;
+    @Autowired
+    private BookImageService bookImageService;
+    @Autowired
+    private ChangeVersionService changeVersionService;
 
     // === GET ALL BOOKS ===
     // Handles GET requests to /api/books
+    // Answers 304 to an If-None-Match that still matches, without reading the table.
+    // X-Change-Version is where to start polling /changes from.
     @GetMapping
-    public List<Book> getAllBooks() {
-        return bookRepository.findAll();
+    public ResponseEntity<List<Book>> getAllBooks(WebRequest request) {
+        long version = changeVersionService.stableVersion();
+        if (request.checkNotModified(changeVersionService.etag(ChangeTracked.BOOK))) {
+            return null; // 304 Not Modified, already written
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .header(ChangeVersionService.CHANGE_VERSION_HEADER, Long.toString(version))
+                .body(bookRepository.findAll());
+    }
+
+    // === GET BOOK CHANGES ===
+    // Handles GET requests to /api/books/changes?since=...&limit=...
+    // The books added, changed or deleted since a change version
+    @GetMapping("/changes")
+    public ChangeFeedResponse<Book> getBookChanges(@RequestParam long since,
+                                                   @RequestParam(required = false) Integer limit) {
+        return changeVersionService.changesSince(ChangeTracked.BOOK, since, changeVersionService.feedLimit(limit),
+                bookRepository::findChangedBetween, Book::getId);
+    }
+
+    // === GET ONE PAGE OF BOOKS ===
+    // Handles GET requests to /api/books/page?cursor=...&limit=...&genre=...&author=...&available=...
+    // Books are ordered by id (ISBN). Pass the nextCursor from the previous response to continue.
+    @GetMapping("/page")
+    @Transactional(readOnly = true)
+    public ResponseEntity<BookPageResponse> getBookPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String genre,
+            @RequestParam(required = false) String author,
+            @RequestParam(required = false) Boolean available) {
+
+        int pageSize = (limit == null || limit <= 0) ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+
+        String afterId;
+        try {
+            afterId = decodeCursor(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        // Ask for one extra row so we know whether another page exists without a COUNT query
+        List<Book> books = bookRepository.findPage(afterId, blankToNull(genre), blankToNull(author),
+                available, Limit.of(pageSize + 1));
+
+        String nextCursor = null;
+        if (books.size() > pageSize) {
+            books = books.subList(0, pageSize);
+            nextCursor = encodeCursor(books.get(pageSize - 1).getId());
+        }
+
+        return ResponseEntity.ok(new BookPageResponse(books, nextCursor, pageSize));
+    }
+
+    // === SEARCH BOOKS ===
+    // Handles GET requests to /api/books/search?q=...&limit=...
+    // Matches title, author, genre and ISBN, including prefixes (for typeahead) and small typos.
+    // Answered from the in-memory search index, best matches first.
+    @GetMapping("/search")
+    public List<Book> searchBooks(@RequestParam(name = "q", defaultValue = "") String query,
+                                  @RequestParam(required = false) Integer limit) {
+        int maxResults = (limit == null || limit <= 0) ? DEFAULT_SEARCH_RESULTS : Math.min(limit, MAX_SEARCH_RESULTS);
+        return bookSearchIndex.search(query, maxResults);
+    }
+
+    // === BULK IMPORT BOOKS ===
+    // Handles POST requests to /api/books/import with a CSV (text/csv) or JSON array (application/json) body.
+    // Columns: id, title, author, genre, copies, imagePath. Existing books with the same id are updated.
+    // Invalid rows are skipped and listed in the response; the rest are imported.
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.APPLICATION_JSON_VALUE})
+    public ImportResult importBooks(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                    InputStream body) {
+        return bulkImportService.importBooks(body, importFormat(contentType));
     }
 
     // === GET A SINGLE BOOK BY ID ===
@@ -29,7 +141,8 @@ public class BookController {
     @GetMapping("/{id}")
     public ResponseEntity<Book> getBookById(@PathVariable String id) {
         // Find the book by its ID. It returns an Optional in case the book doesn't exist.
-        Optional<Book> book = bookRepository.findById(id);
+        // Popular books are served from the lookup cache.
+        Optional<Book> book = entityCacheService.findBook(id);
 
         // We use ResponseEntity to have more control over the HTTP response.
         // If the book is present, we return it with a 200 OK status.
@@ -41,18 +154,40 @@ public class BookController {
     // === CREATE A NEW BOOK ===
     // Handles POST requests to /api/books
     @PostMapping
+    @Transactional
     public Book addBook(@RequestBody Book book) {
         // The save() method handles both creating new items and updating existing ones.
+        // save() overwrites an existing book with the same id, so remember its old cover and copies
+        Book previous = book.getId() == null ? null : bookRepository.findById(book.getId()).orElse(null);
+        boolean isNew = previous == null;
+        String previousImage = isNew ? null : previous.getImagePath();
+        int previousCopies = isNew ? 0 : previous.getCopies();
+        String previousTitle = isNew ? null : previous.getTitle();
         //save() inserts into database
-        return bookRepository.save(book);
+        Book savedBook = bookRepository.save(book);
+        bookImageService.onReferenceChanged(previousImage, savedBook.getImagePath());
+        if (isNew) {
+            libraryStatsService.onBookAdded(savedBook.getCopies());
+        } else {
+            libraryStatsService.onBookCopiesChanged(previousCopies, savedBook.getCopies());
+            if (!Objects.equals(previousTitle, savedBook.getTitle())) {
+                changeVersionService.onBooksRenamed(List.of(savedBook.getId()));
+            }
+        }
+        bookSearchIndex.put(savedBook);
+        entityCacheService.evictBook(savedBook.getId());
+        return savedBook;
     }
 
     // === UPDATE AN EXISTING BOOK ===
     // Handles PUT requests to /api/books/{id}
     @PutMapping("/{id}")
+    @Transactional
     public ResponseEntity<Book> updateBook(@PathVariable String id, @RequestBody Book bookDetails) {
         return bookRepository.findById(id)
                 .map(existingBook -> {
+                    int oldCopies = existingBook.getCopies();
+                    String oldTitle = existingBook.getTitle();
                     // Update the fields of the existing book with the new details
                     existingBook.setTitle(bookDetails.getTitle());
                     existingBook.setAuthor(bookDetails.getAuthor());
@@ -60,6 +195,12 @@ public class BookController {
                     existingBook.setCopies(bookDetails.getCopies());
                     // Save the updated book back to the database
                     Book updatedBook = bookRepository.save(existingBook);
+                    libraryStatsService.onBookCopiesChanged(oldCopies, updatedBook.getCopies());
+                    if (!Objects.equals(oldTitle, updatedBook.getTitle())) {
+                        changeVersionService.onBooksRenamed(List.of(id));
+                    }
+                    bookSearchIndex.put(updatedBook);
+                    entityCacheService.evictBook(updatedBook.getId());
                     // Return the updated book with a 200 OK status
                     return ResponseEntity.ok(updatedBook);
                 })
@@ -75,10 +216,39 @@ public class BookController {
                 .map(book -> {
                     // If the book exists, delete it
                     bookRepository.delete(book);
+                    bookImageService.onReferenceChanged(book.getImagePath(), null);
+                    libraryStatsService.onBookDeleted(book.getCopies());
+                    bookSearchIndex.remove(book.getId());
+                    entityCacheService.evictBook(book.getId());
                     // Return a 204 No Content status, which is standard for successful deletions
                     return ResponseEntity.noContent().build();
                 })
                 // If the book to be deleted was not found, return 404 Not Found
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
+
+    // Helper methods
+
+    // The cursor is the last book id of the previous page, Base64 (URL-safe) encoded
+    // so clients treat it as an opaque token and ISBNs with odd characters survive the query string.
+    private String encodeCursor(String lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(lastId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    }
+
+    private String importFormat(String contentType) {
+        return MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.APPLICATION_JSON)
+                ? BulkImportService.FORMAT_JSON : BulkImportService.FORMAT_CSV;
+    }
+
+    private String blankToNull(String value) {
+        return (value == null || value.isBlank()) ? null : value.trim();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,22 @@
+package com.example.librarybackend.controller;
+
+import com.example.librarybackend.service.EntityCacheService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@CrossOrigin(origins = "http://localhost:3000")
+@RequestMapping("/api/cache")
+public class CacheController {
+
+    @Autowired
+    private EntityCacheService entityCacheService;
+
+    // GET hit ratio, eviction and size statistics of the Book/Student lookup caches
+    @GetMapping("/stats")
+    public Map<String, Map<String, Object>> getCacheStats() {
+        return entityCacheService.getStats();
+    }
+}
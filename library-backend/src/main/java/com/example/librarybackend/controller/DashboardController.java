@@ -0,0 +1,22 @@
+package com.example.librarybackend.controller;
+
+import com.example.librarybackend.dto.DashboardSummaryResponse;
+import com.example.librarybackend.service.LibraryStatsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@CrossOrigin(origins = "http://localhost:3000")
+@RequestMapping("/api/dashboard")
+public class DashboardController {
+
+    @Autowired
+    private LibraryStatsService libraryStatsService;
+
+    // GET the dashboard totals (books on loan, overdue, reservations, ...)
+    // Served from in-memory counters, so this never scans a table
+    @GetMapping("/summary")
+    public DashboardSummaryResponse getSummary() {
+        return libraryStatsService.getSummary();
+    }
+}
@@ -1,39 +1,50 @@
 package com.example.librarybackend.controller;
 
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import com.example.librarybackend.service.BookImageService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @CrossOrigin(origins = "http://localhost:3000")
 @RequestMapping("/api")
 public class FileUploadController {
 
-    // Upload directory - relative to project root
-    private final Path uploadDir = Paths.get("uploads/books").toAbsolutePath().normalize();
+    private static final String IMAGE_CACHE_CONTROL =
+            CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable().getHeaderValue();
 
-    public FileUploadController() {
-        try {
-            // Create upload directory if it doesn't exist
-            Files.createDirectories(uploadDir);
-        } catch (IOException e) {
-            throw new RuntimeException("Could not create upload directory!", e);
-        }
-    }
+    // Request attributes of Tomcat's sendfile support (see its DefaultServlet)
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+    // Same threshold as Tomcat's DefaultServlet: below it the extra syscalls aren't worth it
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+    // Owns the upload directory and the thumbnail/medium copies of every cover
+    @Autowired
+    private BookImageService bookImageService;
 
     /**
      * Upload a book image
@@ -64,18 +75,18 @@ public class FileUploadController {
                 return ResponseEntity.badRequest().body(response);
             }
 
-            // Generate unique filename to avoid conflicts
-            String fileExtension = getFileExtension(originalFilename);
-            String newFilename = UUID.randomUUID().toString() + fileExtension;
+            // Store under the hash of the content; uploading the same image again reuses the stored copy
+            String newFilename = bookImageService.store(file.getInputStream(), contentType);
 
-            // Save file
-            Path targetLocation = uploadDir.resolve(newFilename);
-            Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
+            // Make the catalog-sized copies now, so the first visitor doesn't wait for them
+            bookImageService.createDerivatives(newFilename);
 
             // Return success response with filename
             response.put("message", "File uploaded successfully");
             response.put("filename", newFilename);
             response.put("url", "/api/uploads/books/" + newFilename);
+            response.put("thumbnailUrl", "/api/uploads/books/" + newFilename + "?size=" + BookImageService.SIZE_THUMB);
+            response.put("mediumUrl", "/api/uploads/books/" + newFilename + "?size=" + BookImageService.SIZE_MEDIUM);
 
             return ResponseEntity.ok(response);
 
@@ -87,46 +98,90 @@ public class FileUploadController {
 
     /**
      * Serve uploaded book images
-     * GET /api/uploads/books/{filename}
+     * GET /api/uploads/books/{filename}?size=thumb|medium|original (default original)
+     * Catalog tiles should ask for thumb: a few KB instead of the full upload.
+     * Supports If-None-Match (304) and a single byte range (206), so an interrupted download resumes.
      */
     @GetMapping("/uploads/books/{filename:.+}")
-    public ResponseEntity<Resource> serveFile(@PathVariable String filename) {
+    public void serveFile(@PathVariable String filename,
+                          @RequestParam(defaultValue = BookImageService.SIZE_ORIGINAL) String size,
+                          HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!BookImageService.isKnownSize(size)) {
+            response.setStatus(HttpStatus.BAD_REQUEST.value());
+            return;
+        }
+        Path filePath;
+        String etag;
+        long length;
         try {
-            Path filePath = uploadDir.resolve(filename).normalize();
-            Resource resource = new UrlResource(filePath.toUri());
-
-            if (resource.exists() && resource.isReadable()) {
-                // Determine content type
-                String contentType = Files.probeContentType(filePath);
-                if (contentType == null) {
-                    contentType = "application/octet-stream";
-                }
-
-                return ResponseEntity.ok()
-                        .contentType(MediaType.parseMediaType(contentType))
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + resource.getFilename() + "\"")
-                        .body(resource);
-            } else {
-                return ResponseEntity.notFound().build();
+            Optional<Path> file = bookImageService.resolve(filename, size);
+            if (file.isEmpty()) {
+                response.setStatus(HttpStatus.NOT_FOUND.value());
+                return;
             }
+            filePath = file.get();
+            etag = bookImageService.etagOf(filename, size, filePath);
+            length = Files.size(filePath);
         } catch (IOException e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            return;
         }
+
+        // An image never changes under the same name (a new upload gets a new name), so browsers
+        // may keep it for a year
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, IMAGE_CACHE_CONTROL);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (matchesAny(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        // If-Range: only honour the range if the client's partial copy is of this very file
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] bounds = parseRange(range, length);
+            if (bounds == null) {
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                return;
+            }
+            if (bounds.length == 2) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        response.setContentType(bookImageService.contentTypeOf(filePath).toString());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + filename + "\"");
+        response.setContentLengthLong(end - start + 1);
+        if (HttpMethod.HEAD.matches(request.getMethod()) || end < start) {
+            return;
+        }
+        sendFile(filePath, start, end - start + 1, request, response);
     }
 
     /**
      * Delete a book image
      * DELETE /api/uploads/books/{filename}
+     * Refused with 409 while a book still uses the image.
      */
     @DeleteMapping("/uploads/books/{filename:.+}")
     public ResponseEntity<Map<String, String>> deleteFile(@PathVariable String filename) {
         Map<String, String> response = new HashMap<>();
 
         try {
-            Path filePath = uploadDir.resolve(filename).normalize();
-
-            if (Files.exists(filePath)) {
-                Files.delete(filePath);
+            long books = bookImageService.countReferences(filename);
+            if (books > 0) {
+                response.put("error", "Image is still used by " + books + " book(s)");
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+            }
+            if (bookImageService.delete(filename)) {
                 response.put("message", "File deleted successfully");
                 return ResponseEntity.ok(response);
             } else {
@@ -147,11 +202,95 @@ public class FileUploadController {
                 contentType.equals("image/png");
     }
 
-    private String getFileExtension(String filename) {
-        int lastDotIndex = filename.lastIndexOf('.');
-        if (lastDotIndex > 0) {
-            return filename.substring(lastDotIndex);
+    // Bodies of SENDFILE_MIN_SIZE and up are handed to Tomcat's sendfile support, which writes them
+    // from the page cache straight to the socket after the request returns, without a copy on the heap.
+    // Smaller bodies (every thumbnail and most medium covers) are copied: read into one array and
+    // written with one write, so they pass through the heap once on their way to the container's
+    // buffer. Large bodies on containers without sendfile go through FileChannel.transferTo, which
+    // copies through temporary buffers, 8 KB at a time.
+    private void sendFile(Path file, long position, long count, HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
+        if (count >= SENDFILE_MIN_SIZE && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, position);
+            request.setAttribute(SENDFILE_END_ATTR, position + count);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (count < SENDFILE_MIN_SIZE) {
+                ByteBuffer body = ByteBuffer.allocate((int) count);
+                while (body.hasRemaining()) {
+                    if (channel.read(body, position + body.position()) < 0) {
+                        throw new EOFException("File shrank while it was being sent: " + file.getFileName());
+                    }
+                }
+                response.getOutputStream().write(body.array());
+                return;
+            }
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            while (count > 0) {
+                long sent = channel.transferTo(position, count, out);
+                if (sent <= 0) {
+                    throw new EOFException("File shrank while it was being sent: " + file.getFileName());
+                }
+                position += sent;
+                count -= sent;
+            }
+        }
+    }
+
+    // Whether an If-None-Match header lists this ETag (weak comparison, as RFC 9110 asks for)
+    private static boolean matchesAny(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Parse "bytes=a-b", "bytes=a-" or "bytes=-n" into {first, last}. Returns an empty array if the
+    // header should be ignored (not bytes, several ranges, malformed) and null if it can't be satisfied.
+    static long[] parseRange(String header, long length) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return new long[0];
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            long first;
+            long last;
+            if (dash == 0) {
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0) {
+                    return null;
+                }
+                first = Math.max(0, length - suffix);
+                last = length - 1;
+            } else {
+                first = Long.parseLong(spec.substring(0, dash));
+                last = dash == spec.length() - 1 ? length - 1
+                        : Math.min(Long.parseLong(spec.substring(dash + 1)), length - 1);
+                if (last < first) {
+                    return first >= length ? null : new long[0];
+                }
+            }
+            if (first >= length) {
+                return null;
+            }
+            return new long[]{first, last};
+        } catch (NumberFormatException e) {
+            return new long[0];
         }
-        return "";
     }
 }
@@ -2,10 +2,14 @@ package com.example.librarybackend.controller;
 
 import com.example.librarybackend.model.Notification;
 import com.example.librarybackend.repository.NotificationRepository;
+import com.example.librarybackend.service.NotificationCountService;
+import com.example.librarybackend.service.NotificationOutboxWriter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 import java.util.Map;
@@ -17,9 +21,14 @@ public class NotificationController {
 
     @Autowired
     private NotificationRepository notificationRepository;
+    @Autowired
+    private NotificationCountService notificationCountService;
+    @Autowired
+    private NotificationOutboxWriter notificationOutboxWriter;
 
     // Get all notifications for a user
     @GetMapping("/user/{userId}")
+    @Transactional(readOnly = true)
     public ResponseEntity<List<Notification>> getUserNotifications(@PathVariable String userId) {
         List<Notification> notifications = notificationRepository.findByUserIdOrderByCreatedAtDesc(userId);
         return ResponseEntity.ok(notifications);
@@ -27,6 +36,7 @@ public class NotificationController {
 
     // Get unread notifications for a user
     @GetMapping("/user/{userId}/unread")
+    @Transactional(readOnly = true)
     public ResponseEntity<List<Notification>> getUnreadNotifications(@PathVariable String userId) {
         List<Notification> notifications = notificationRepository
                 .findByUserIdAndIsReadFalseOrderByCreatedAtDesc(userId);
@@ -36,17 +46,35 @@ public class NotificationController {
     // Get unread count for a user
     @GetMapping("/user/{userId}/unread/count")
     public ResponseEntity<Map<String, Long>> getUnreadCount(@PathVariable String userId) {
-        Long count = notificationRepository.countByUserIdAndIsReadFalse(userId);
+        long count = notificationCountService.getUnreadCount(userId);
         return ResponseEntity.ok(Map.of("count", count));
     }
 
+    // Stream the unread count for a user (Server-Sent Events)
+    // Sends an "unread-count" event with {"count": n} on connect and whenever the count changes
+    @GetMapping(value = "/user/{userId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamUnreadCount(@PathVariable String userId) {
+        return notificationCountService.subscribe(userId);
+    }
+
+    // Notifications queued for delivery, e.g. {"pending": 0, "parked": 0}
+    // Parked events failed too many times and need someone to look at them
+    @GetMapping("/outbox")
+    public ResponseEntity<Map<String, Long>> getOutboxBacklog() {
+        return ResponseEntity.ok(notificationOutboxWriter.getBacklog());
+    }
+
     // Mark a notification as read
     @PutMapping("/{id}/read")
     public ResponseEntity<Notification> markAsRead(@PathVariable Integer id) {
         return notificationRepository.findById(id)
                 .map(notification -> {
+                    boolean wasUnread = !Boolean.TRUE.equals(notification.getIsRead());
                     notification.setIsRead(true);
                     Notification updated = notificationRepository.save(notification);
+                    if (wasUnread) {
+                        notificationCountService.onRemovedFromUnread(updated.getUserId(), 1);
+                    }
                     return ResponseEntity.ok(updated);
                 })
                 .orElse(ResponseEntity.notFound().build());
@@ -56,10 +84,9 @@ public class NotificationController {
     @PutMapping("/user/{userId}/read-all")
     @Transactional
     public ResponseEntity<Map<String, String>> markAllAsRead(@PathVariable String userId) {
-        List<Notification> notifications = notificationRepository
-                .findByUserIdAndIsReadFalseOrderByCreatedAtDesc(userId);
-        notifications.forEach(notification -> notification.setIsRead(true));
-        notificationRepository.saveAll(notifications);
+        // One UPDATE for all of them, however many there are
+        notificationRepository.markAllAsReadByUserId(userId);
+        notificationCountService.onAllRemovedFromUnread(userId);
         return ResponseEntity.ok(Map.of("message", "All notifications marked as read"));
     }
 
@@ -69,6 +96,9 @@ public class NotificationController {
         return notificationRepository.findById(id)
                 .map(notification -> {
                     notificationRepository.delete(notification);
+                    if (!Boolean.TRUE.equals(notification.getIsRead())) {
+                        notificationCountService.onRemovedFromUnread(notification.getUserId(), 1);
+                    }
                     return ResponseEntity.noContent().build();
                 })
                 .orElse(ResponseEntity.notFound().build());
@@ -78,7 +108,9 @@ public class NotificationController {
     @DeleteMapping("/user/{userId}/clear")
     @Transactional
     public ResponseEntity<Map<String, String>> clearAllNotifications(@PathVariable String userId) {
+        // One DELETE for all of them, without loading them first
         notificationRepository.deleteByUserId(userId);
+        notificationCountService.onAllRemovedFromUnread(userId);
         return ResponseEntity.ok(Map.of("message", "All notifications cleared"));
     }
 
@@ -86,6 +118,9 @@ public class NotificationController {
     @PostMapping
     public ResponseEntity<Notification> createNotification(@RequestBody Notification notification) {
         Notification saved = notificationRepository.save(notification);
+        if (!Boolean.TRUE.equals(saved.getIsRead())) {
+            notificationCountService.onCreated(saved.getUserId());
+        }
         return ResponseEntity.ok(saved);
     }
 }
@@ -1,21 +1,28 @@
 package com.example.librarybackend.controller;
 
+import com.example.librarybackend.dto.ChangeFeedResponse;
 import com.example.librarybackend.dto.ReservationResponse;
 import com.example.librarybackend.exception.ResourceNotFoundException;
 import com.example.librarybackend.model.Book;
+import com.example.librarybackend.model.ChangeTracked;
 import com.example.librarybackend.model.Reservation;
 import com.example.librarybackend.model.Student;
 import com.example.librarybackend.repository.BookRepository;
 import com.example.librarybackend.repository.ReservationRepository;
-import com.example.librarybackend.repository.StudentRepository;
+import com.example.librarybackend.service.ChangeVersionService;
+import com.example.librarybackend.service.EntityCacheService;
+import com.example.librarybackend.service.LibraryStatsService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Optional;
 
 @RestController
 @CrossOrigin(origins = "http://localhost:3000")
@@ -24,10 +31,13 @@ public class ReservationController {
 
     @Autowired private ReservationRepository reservationRepository;
     @Autowired private BookRepository bookRepository;
-    @Autowired private StudentRepository studentRepository;
+    @Autowired private LibraryStatsService libraryStatsService;
+    @Autowired private EntityCacheService entityCacheService;
+    @Autowired private ChangeVersionService changeVersionService;
 
     // Helper method to convert Reservation entity to DTO with flat structure
-    private ReservationResponse convertToDto(Reservation reservation) {
+    // Package-private so the JMH benchmarks in library-benchmarks can measure it
+    ReservationResponse convertToDto(Reservation reservation) {
         ReservationResponse dto = new ReservationResponse();
         dto.setId(reservation.getId());
         dto.setBookId(reservation.getBook().getId());
@@ -39,27 +49,87 @@ public class ReservationController {
     }
 
     // GET all reservations - Returns flat structure with bookId and studentId
+    // Rows come back grouped by book in queue order, so positions are numbered in one pass.
+    // Answers 304 to an If-None-Match that still matches; the ETag moves with any change to
+    // reservations, books or students (titles and names are in the rows).
     @GetMapping
-    public List<ReservationResponse> getAllReservations() {
-        return reservationRepository.findAll().stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+    public ResponseEntity<List<ReservationResponse>> getAllReservations(WebRequest request) {
+        long version = changeVersionService.stableVersion();
+        if (request.checkNotModified(changeVersionService.etag(
+                ChangeTracked.RESERVATION, ChangeTracked.BOOK, ChangeTracked.STUDENT))) {
+            return null; // 304 Not Modified, already written
+        }
+        List<ReservationResponse> reservations = reservationRepository.findAllResponsesInQueueOrder();
+        String currentBookId = null;
+        long position = 0;
+        for (ReservationResponse reservation : reservations) {
+            if (!reservation.getBookId().equals(currentBookId)) {
+                currentBookId = reservation.getBookId();
+                position = 0;
+            }
+            reservation.setQueuePosition(++position);
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .header(ChangeVersionService.CHANGE_VERSION_HEADER, Long.toString(version))
+                .body(reservations);
+    }
+
+    // GET the reservations added, changed or deleted since a change version
+    // e.g. /api/reservations/changes?since=1234&limit=500
+    // Queue positions are left out; they follow from the reservation dates
+    @GetMapping("/changes")
+    public ChangeFeedResponse<ReservationResponse> getReservationChanges(@RequestParam long since,
+                                                                         @RequestParam(required = false) Integer limit) {
+        return changeVersionService.changesSince(ChangeTracked.RESERVATION, since, changeVersionService.feedLimit(limit),
+                reservationRepository::findResponsesChangedBetween, item -> String.valueOf(item.getId()));
+    }
+
+    // GET the waiting queue for one book, next in line first
+    @GetMapping("/book/{bookId}")
+    @Transactional(readOnly = true)
+    public List<ReservationResponse> getQueueForBook(@PathVariable String bookId) {
+        List<ReservationResponse> queue = reservationRepository.findQueueForBook(bookId);
+        for (int i = 0; i < queue.size(); i++) {
+            queue.get(i).setQueuePosition((long) i + 1);
+        }
+        return queue;
+    }
+
+    // GET all reservations of one student, with their place in each book's queue
+    @GetMapping("/student/{studentId}")
+    @Transactional(readOnly = true)
+    public List<ReservationResponse> getReservationsForStudent(@PathVariable String studentId) {
+        return reservationRepository.findByStudentWithQueuePosition(studentId);
     }
 
     // POST - Create a new reservation
     @PostMapping
+    @Transactional
     public ReservationResponse createReservation(@RequestBody Map<String, String> payload) {
         String bookId = payload.get("bookId");
         String studentId = payload.get("studentId");
 
-        // Validate that book exists
-        Book book = bookRepository.findById(bookId)
+        // Validate that book exists, and lock its row before reading anything else: reservations
+        // for one book are then taken one at a time, so the duplicate check and the queue position
+        // below see every earlier reservation for it. (uk_reservations_book_student backs this up.)
+        Book book = bookRepository.findAllByIdForUpdate(List.of(bookId)).stream()
+                .findFirst()
                 .orElseThrow(() -> new ResourceNotFoundException("Book not found with id: " + bookId));
 
         // Validate that student exists
-        Student student = studentRepository.findById(studentId)
+        Student student = entityCacheService.findStudent(studentId)
                 .orElseThrow(() -> new ResourceNotFoundException("Student not found with id: " + studentId));
 
+        // A student only holds one place in a book's queue; reserving again returns that place
+        Optional<Reservation> existing = reservationRepository.findFirstByBookIdAndStudentId(bookId, studentId);
+        if (existing.isPresent()) {
+            return reservationRepository.findByStudentWithQueuePosition(studentId).stream()
+                    .filter(r -> r.getId().equals(existing.get().getId()))
+                    .findFirst()
+                    .orElseGet(() -> convertToDto(existing.get()));
+        }
+
         // Create reservation
         Reservation reservation = new Reservation();
         reservation.setBook(book);
@@ -67,9 +137,13 @@ public class ReservationController {
         reservation.setReservationDate(LocalDateTime.now());
 
         Reservation savedReservation = reservationRepository.save(reservation);
+        libraryStatsService.onReservationCreated();
 
-        // Return DTO with flat structure
-        return convertToDto(savedReservation);
+        // Return DTO with flat structure; a new reservation joins the back of the queue.
+        // Counted in this transaction, while the book is still locked, so it includes this one.
+        ReservationResponse response = convertToDto(savedReservation);
+        response.setQueuePosition(reservationRepository.countByBookId(bookId));
+        return response;
     }
 
     // DELETE a reservation (when fulfilled or cancelled)
@@ -78,6 +152,7 @@ public class ReservationController {
         return reservationRepository.findById(id)
                 .map(reservation -> {
                     reservationRepository.delete(reservation);
+                    libraryStatsService.onReservationDeleted();
                     return ResponseEntity.noContent().build();
                 })
                 .orElse(ResponseEntity.notFound().build());
@@ -1,61 +1,197 @@
 package com.example.librarybackend.controller;
 
+import com.example.librarybackend.config.TokenAuthenticationFilter;
+import com.example.librarybackend.dto.ChangeFeedResponse;
+import com.example.librarybackend.dto.ImportResult;
+import com.example.librarybackend.model.ChangeTracked;
 import com.example.librarybackend.model.Student;
 import com.example.librarybackend.repository.StudentRepository;
+import com.example.librarybackend.service.AuthTokenService.TokenClaims;
+import com.example.librarybackend.service.BulkImportService;
+import com.example.librarybackend.service.ChangeVersionService;
+import com.example.librarybackend.service.EntityCacheService;
+import com.example.librarybackend.service.LibraryStatsService;
+import com.example.librarybackend.service.PasswordHashingService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @CrossOrigin(origins = "http://localhost:3000")
 @RequestMapping("/api/students")
 public class StudentController {
 
+    private static final int MIN_PASSWORD_LENGTH = 8;
+
     @Autowired
     private StudentRepository studentRepository;
+    @Autowired
+    private LibraryStatsService libraryStatsService;
+    @Autowired
+    private EntityCacheService entityCacheService;
+    @Autowired
+    private BulkImportService bulkImportService;
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+    @Autowired
+    private ChangeVersionService changeVersionService;
+    // Where the hashed password is saved, so the hashing pool's threads never wait on the database
+    @Autowired
+    @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    private Executor applicationTaskExecutor;
 
     // GET all students
+    // Answers 304 to an If-None-Match that still matches, without reading the table.
+    // X-Change-Version is where to start polling /changes from.
     @GetMapping
-    public List<Student> getAllStudents() {
-        return studentRepository.findAll();
+    public ResponseEntity<List<Student>> getAllStudents(WebRequest request) {
+        long version = changeVersionService.stableVersion();
+        if (request.checkNotModified(changeVersionService.etag(ChangeTracked.STUDENT))) {
+            return null; // 304 Not Modified, already written
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .header(ChangeVersionService.CHANGE_VERSION_HEADER, Long.toString(version))
+                .body(studentRepository.findAll());
+    }
+
+    // GET the students added, changed or deleted since a change version
+    // e.g. /api/students/changes?since=1234&limit=500
+    @GetMapping("/changes")
+    public ChangeFeedResponse<Student> getStudentChanges(@RequestParam long since,
+                                                         @RequestParam(required = false) Integer limit) {
+        return changeVersionService.changesSince(ChangeTracked.STUDENT, since, changeVersionService.feedLimit(limit),
+                studentRepository::findChangedBetween, Student::getId);
     }
 
     // GET a single student by ID
     @GetMapping("/{id}")
     public ResponseEntity<Student> getStudentById(@PathVariable String id) {
-        return studentRepository.findById(id)
+        return entityCacheService.findStudent(id)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
 
     // CREATE a new student
     @PostMapping
+    @Transactional
     public Student addStudent(@RequestBody Student student) {
-        return studentRepository.save(student);
+        // save() overwrites an existing student with the same id, so remember their old email
+        // and keep their password, which is never part of the body
+        Student previous = student.getId() == null ? null : studentRepository.findById(student.getId()).orElse(null);
+        String previousEmail = previous != null ? previous.getEmail() : null;
+        String previousName = previous != null ? previous.getName() : null;
+        boolean isNew = previous == null;
+        if (previous != null) {
+            student.setPasswordHash(previous.getPasswordHash());
+        }
+        Student savedStudent = studentRepository.save(student);
+        if (isNew) {
+            libraryStatsService.onStudentAdded();
+        } else if (!Objects.equals(previousName, savedStudent.getName())) {
+            changeVersionService.onStudentsRenamed(List.of(savedStudent.getId()));
+        }
+        entityCacheService.evictStudent(savedStudent.getId(), previousEmail, savedStudent.getEmail());
+        return savedStudent;
+    }
+
+    // BULK IMPORT students from a CSV (text/csv) or JSON array (application/json) body
+    // Columns: id, name, email, contact, cohort. Existing students with the same id are updated.
+    // Invalid rows are skipped and listed in the response; the rest are imported.
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.APPLICATION_JSON_VALUE})
+    public ImportResult importStudents(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                       InputStream body) {
+        boolean json = MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.APPLICATION_JSON);
+        return bulkImportService.importStudents(body,
+                json ? BulkImportService.FORMAT_JSON : BulkImportService.FORMAT_CSV);
     }
 
     // UPDATE an existing student
     @PutMapping("/{id}")
+    @Transactional
     public ResponseEntity<Student> updateStudent(@PathVariable String id, @RequestBody Student studentDetails) {
         return studentRepository.findById(id)
                 .map(existingStudent -> {
+                    String oldEmail = existingStudent.getEmail();
+                    String oldName = existingStudent.getName();
                     existingStudent.setName(studentDetails.getName());
                     existingStudent.setEmail(studentDetails.getEmail());
                     existingStudent.setContact(studentDetails.getContact());
+                    existingStudent.setCohort(studentDetails.getCohort());
                     Student updatedStudent = studentRepository.save(existingStudent);
+                    if (!Objects.equals(oldName, updatedStudent.getName())) {
+                        changeVersionService.onStudentsRenamed(List.of(id));
+                    }
+                    entityCacheService.evictStudent(id, oldEmail, updatedStudent.getEmail());
                     return ResponseEntity.ok(updatedStudent);
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    // SET a student's password, stored as a BCrypt hash. Body: {"password": "..."}
+    // Needs a token: students may set their own password, the librarian anyone's
+    @PutMapping("/{id}/password")
+    public CompletableFuture<ResponseEntity<?>> setPassword(@PathVariable String id,
+                                                            @RequestBody Map<String, String> payload,
+                                                            HttpServletRequest request) {
+        Optional<TokenClaims> caller = TokenAuthenticationFilter.principal(request);
+        if (caller.isEmpty()) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
+        }
+        if (!caller.get().isLibrarian() && !caller.get().getUserId().equals(id)) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.FORBIDDEN).build());
+        }
+        String password = payload.get("password");
+        if (password == null || password.length() < MIN_PASSWORD_LENGTH) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                    .body("Password must be at least " + MIN_PASSWORD_LENGTH + " characters"));
+        }
+        if (!studentRepository.existsById(id)) {
+            return CompletableFuture.completedFuture(ResponseEntity.notFound().build());
+        }
+
+        try {
+            return passwordHashingService.hash(password).thenApplyAsync(hash -> studentRepository.findById(id)
+                    .map(student -> {
+                        student.setPasswordHash(hash);
+                        studentRepository.save(student);
+                        entityCacheService.evictStudent(id, student.getEmail());
+                        return ResponseEntity.noContent().build();
+                    })
+                    .orElse(ResponseEntity.notFound().build()), applicationTaskExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .build());
+        }
+    }
+
     // DELETE a student
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deleteStudent(@PathVariable String id) {
         return studentRepository.findById(id)
                 .map(student -> {
                     studentRepository.delete(student);
+                    libraryStatsService.onStudentDeleted();
+                    entityCacheService.evictStudent(student.getId(), student.getEmail());
                     return ResponseEntity.noContent().build();
                 })
                 .orElse(ResponseEntity.notFound().build());
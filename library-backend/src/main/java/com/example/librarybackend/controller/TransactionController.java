@@ -1,32 +1,60 @@
 package com.example.librarybackend.controller;
 
+import com.example.librarybackend.dto.BatchCirculationResponse;
+import com.example.librarybackend.dto.ChangeFeedResponse;
+import com.example.librarybackend.dto.ReturnItemDto;
 import com.example.librarybackend.dto.TransactionDto;
+import com.example.librarybackend.dto.TransactionPageResponse;
 import com.example.librarybackend.dto.TransactionResponse;
 import com.example.librarybackend.exception.ResourceNotFoundException;
 import com.example.librarybackend.model.Book;
-import com.example.librarybackend.model.Notification;
+import com.example.librarybackend.model.ChangeTracked;
 import com.example.librarybackend.model.Student;
 import com.example.librarybackend.model.Transaction;
 import com.example.librarybackend.repository.BookRepository;
-import com.example.librarybackend.repository.NotificationRepository;
 import com.example.librarybackend.repository.ReservationRepository;
 import com.example.librarybackend.repository.StudentRepository;
 import com.example.librarybackend.repository.TransactionRepository;
+import com.example.librarybackend.service.BookSearchIndex;
+import com.example.librarybackend.service.ChangeVersionService;
+import com.example.librarybackend.service.CirculationBatchService;
+import com.example.librarybackend.service.CirculationRollupService;
+import com.example.librarybackend.service.EntityCacheService;
+import com.example.librarybackend.service.LibraryStatsService;
+import com.example.librarybackend.service.NotificationOutbox;
+import com.example.librarybackend.service.TransactionExportService;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @RestController
 @CrossOrigin(origins = "http://localhost:3000")
 @RequestMapping("/api/transactions")
 public class TransactionController {
 
+    // Page size used when the client doesn't ask for one, and the most we will ever return at once
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+    // Most items accepted in one batch issue/return request
+    private static final int MAX_BATCH_SIZE = 100;
+
     @Autowired
     private TransactionRepository transactionRepository;
     @Autowired
@@ -36,14 +64,29 @@ public class TransactionController {
     @Autowired
     private ReservationRepository reservationRepository;
     @Autowired
-    private NotificationRepository notificationRepository;
+    private LibraryStatsService libraryStatsService;
+    @Autowired
+    private CirculationRollupService circulationRollupService;
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+    @Autowired
+    private NotificationOutbox notificationOutbox;
+    @Autowired
+    private EntityCacheService entityCacheService;
+    @Autowired
+    private CirculationBatchService circulationBatchService;
+    @Autowired
+    private ChangeVersionService changeVersionService;
+    @Autowired
+    private TransactionExportService transactionExportService;
 
     // Helper method to convert Transaction Entity to TransactionResponse DTO
     //Convert entity to DTO
     //
     //Flattens nested objects
     //Extracts book title and student name
-    private TransactionResponse convertToDto(Transaction transaction) {
+    // Package-private so the JMH benchmarks in library-benchmarks can measure it
+    TransactionResponse convertToDto(Transaction transaction) {
         TransactionResponse dto = new TransactionResponse();
         dto.setId(transaction.getId());
         dto.setBookId(transaction.getBook().getId());
@@ -58,33 +101,145 @@ public class TransactionController {
     }
 
     // GET all transactions
-    //Converts each transaction to DTO
+    // Built straight from a joined projection query, so no entities are loaded.
+    // Answers 304 to an If-None-Match that still matches; the ETag moves with any change to
+    // transactions, books or students (titles and names are in the rows). X-Change-Version is
+    // where to start polling /changes from.
     @GetMapping
-    public List<TransactionResponse> getAllTransactions() {
-        return transactionRepository.findAll().stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+    public ResponseEntity<List<TransactionResponse>> getAllTransactions(WebRequest request) {
+        long version = changeVersionService.stableVersion();
+        if (request.checkNotModified(changeVersionService.etag(
+                ChangeTracked.TRANSACTION, ChangeTracked.BOOK, ChangeTracked.STUDENT))) {
+            return null; // 304 Not Modified, already written
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .header(ChangeVersionService.CHANGE_VERSION_HEADER, Long.toString(version))
+                .body(transactionRepository.findAllResponses());
+    }
+
+    // GET the transactions added, changed or deleted since a change version
+    // e.g. /api/transactions/changes?since=1234&limit=500
+    @GetMapping("/changes")
+    public ChangeFeedResponse<TransactionResponse> getTransactionChanges(@RequestParam long since,
+                                                                         @RequestParam(required = false) Integer limit) {
+        return changeVersionService.changesSince(ChangeTracked.TRANSACTION, since, changeVersionService.feedLimit(limit),
+                transactionRepository::findResponsesChangedBetween, item -> String.valueOf(item.getId()));
+    }
+
+    // GET one page of transactions, newest first
+    // e.g. /api/transactions/page?status=overdue&studentId=S001&from=2025-09-01&to=2025-09-30&limit=50
+    // status: open (not returned), returned, or overdue (not returned and past due date)
+    // from/to filter on issue date and are both inclusive
+    @GetMapping("/page")
+    @Transactional(readOnly = true)
+    public ResponseEntity<TransactionPageResponse> getTransactionPage(
+            @RequestParam(required = false) Integer cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String studentId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+
+        int pageSize = (limit == null || limit <= 0) ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+
+        Boolean returned = null;
+        LocalDateTime dueBefore = null;
+        if (status != null && !status.isBlank()) {
+            switch (status.trim().toLowerCase()) {
+                case "open" -> returned = false;
+                case "returned" -> returned = true;
+                case "overdue" -> {
+                    returned = false;
+                    dueBefore = LocalDateTime.now();
+                }
+                default -> {
+                    return ResponseEntity.badRequest().build();
+                }
+            }
+        }
+
+        // Ask for one extra row so we know whether another page exists without a COUNT query
+        String student = (studentId == null || studentId.isBlank()) ? null : studentId.trim();
+        List<TransactionResponse> items;
+        if (Boolean.FALSE.equals(returned) && student == null && from == null && to == null) {
+            // The dashboard's open and overdue lists have queries of their own, with an index that serves them
+            int beforeId = cursor != null ? cursor : Integer.MAX_VALUE;
+            items = dueBefore == null
+                    ? transactionRepository.findOpenResponsePage(beforeId, Limit.of(pageSize + 1))
+                    : transactionRepository.findOverdueResponsePage(beforeId, dueBefore, Limit.of(pageSize + 1));
+        } else {
+            items = transactionRepository.findResponsePage(
+                    cursor,
+                    student,
+                    returned,
+                    dueBefore,
+                    from != null ? from.atStartOfDay() : null,
+                    to != null ? to.plusDays(1).atStartOfDay() : null,
+                    Limit.of(pageSize + 1));
+        }
+
+        Integer nextCursor = null;
+        if (items.size() > pageSize) {
+            items = items.subList(0, pageSize);
+            nextCursor = items.get(pageSize - 1).getId();
+        }
+
+        return ResponseEntity.ok(new TransactionPageResponse(items, nextCursor, pageSize));
+    }
+
+    // GET the whole transactions history as a download, oldest first
+    // e.g. /api/transactions/export?format=ndjson&from=2025-01-01&to=2025-12-31
+    // format: csv (default) or ndjson; from/to filter on issue date and are both inclusive
+    // Rows are streamed from the database as they are written, so any size of history can be exported.
+    // Read-only, so with read replicas configured the long scan runs on a replica, not the primary.
+    @GetMapping("/export")
+    @Transactional(readOnly = true)
+    public void exportTransactions(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            HttpServletResponse response) throws IOException {
+        TransactionExportService.Format exportFormat = switch (format.trim().toLowerCase()) {
+            case "csv" -> TransactionExportService.Format.CSV;
+            case "ndjson" -> TransactionExportService.Format.NDJSON;
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "format must be csv or ndjson");
+        };
+
+        try (TransactionExportService.Slot slot = transactionExportService.reserveSlot()) {
+            String filename = "transactions" + (from != null ? "-from-" + from : "") + (to != null ? "-to-" + to : "")
+                    + "." + exportFormat.getExtension();
+            response.setContentType(exportFormat.getContentType());
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                    ContentDisposition.attachment().filename(filename).build().toString());
+            // Written on this request thread, so the export keeps its request slot and isn't cut off
+            // by the async request timeout
+            transactionExportService.export(exportFormat, from, to, response.getOutputStream());
+        }
     }
 
     // POST - Issue a new book (Create Transaction)
+    // Runs in one DB transaction: the copy is only taken off the shelf if the loan is saved too.
     @PostMapping
+    @Transactional
     public ResponseEntity<TransactionResponse> issueBook(@RequestBody TransactionDto transactionDto) {
-        // Find book by ID from database
-        Book book = bookRepository.findById(transactionDto.getBookId())
-                .orElseThrow(() -> new ResourceNotFoundException("Book not found"));
-
-        // Find student by ID from database
-        Student student = studentRepository.findById(transactionDto.getStudentId())
+        // Find student by ID (usually from the lookup cache)
+        Student student = entityCacheService.findStudent(transactionDto.getStudentId())
                 .orElseThrow(() -> new ResourceNotFoundException("Student not found"));
 
-        // Check if book has available copies
-        if (book.getCopies() <= 0) {
+        // Check for an available copy and take it in one atomic UPDATE
+        if (bookRepository.decrementCopiesIfAvailable(transactionDto.getBookId(),
+                changeVersionService.next(ChangeTracked.BOOK)) == 0) {
+            if (!bookRepository.existsById(transactionDto.getBookId())) {
+                throw new ResourceNotFoundException("Book not found");
+            }
+            // No copies left
             return ResponseEntity.badRequest().body(null);
         }
 
-        // Decrease book copies by 1
-        book.setCopies(book.getCopies() - 1);
-        bookRepository.save(book);
+        // Load the book after the update so we see the new number of copies
+        Book book = bookRepository.findById(transactionDto.getBookId())
+                .orElseThrow(() -> new ResourceNotFoundException("Book not found"));
 
         // Create new transaction with
         //Issue date: now
@@ -96,28 +251,50 @@ public class TransactionController {
         transaction.setDueDate(LocalDateTime.now().plusDays(15)); // 15 days loan period
 
         Transaction savedTransaction = transactionRepository.save(transaction);
+        libraryStatsService.onBookIssued(book.getCopies());
+        bookSearchIndex.put(book); // Keep the copies shown in search results current
+        entityCacheService.evictBook(book.getId());
+        circulationRollupService.recordIssue(savedTransaction.getId(), book.getGenre(), student.getCohort(),
+                savedTransaction.getIssueDate());
 
-        // Create notification for student
-        Notification notification = new Notification();
-        notification.setUserId(student.getId());
-        notification.setMessage("Book issued: \"" + book.getTitle() + "\". Due date: " +
-                savedTransaction.getDueDate().toLocalDate());
-        notification.setType("BOOK_ISSUED");
-        notification.setRelatedBookId(book.getId());
-        notification.setRelatedTransactionId(savedTransaction.getId());
-        notificationRepository.save(notification);
+        // Queue a notification for the student; it is written to the notifications table in the background
+        notificationOutbox.enqueue(student.getId(), "BOOK_ISSUED",
+                "Book issued: \"" + book.getTitle() + "\". Due date: " + savedTransaction.getDueDate().toLocalDate(),
+                book.getId(), savedTransaction.getId());
 
         return ResponseEntity.ok(convertToDto(savedTransaction));
     }
 
+    // POST - Issue several books at once, e.g. a student's whole stack at the desk
+    // Body: [{"bookId": "...", "studentId": "..."}, ...]
+    // Each item succeeds or fails on its own; results come back in the same order as the items
+    @PostMapping("/batch/issue")
+    public ResponseEntity<BatchCirculationResponse> issueBooks(@RequestBody List<TransactionDto> items) {
+        if (items == null || items.isEmpty() || items.size() > MAX_BATCH_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(circulationBatchService.issueBooks(items));
+    }
+
+    // POST - Return several books at once
+    // Body: [{"transactionId": 1, "finePaid": 2.50, "reservationIdToFulfill": 7}, ...] (finePaid and reservation are optional)
+    @PostMapping("/batch/return")
+    public ResponseEntity<BatchCirculationResponse> returnBooks(@RequestBody List<ReturnItemDto> items) {
+        if (items == null || items.isEmpty() || items.size() > MAX_BATCH_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(circulationBatchService.returnBooks(items));
+    }
+
     // PUT - Return a book (Update Transaction)
     @PutMapping("/{id}")
+    @Transactional
     public ResponseEntity<TransactionResponse> returnBook(
             @PathVariable Integer id,
             @RequestBody Map<String, Object> payload) {
 
-        // Find the transaction
-        Transaction transaction = transactionRepository.findById(id)
+        // Find the transaction and lock it, so a double-submitted return is only processed once
+        Transaction transaction = transactionRepository.findByIdForUpdate(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Transaction not found"));
 
         // Check if already returned
@@ -126,7 +303,9 @@ public class TransactionController {
         }
 
         // Set return date to now
-        transaction.setReturnDate(LocalDateTime.now());
+        LocalDateTime now = LocalDateTime.now();
+        boolean wasOverdue = transaction.getDueDate().isBefore(now);
+        transaction.setReturnDate(now);
 
         // Set fine if provided in payload
         if (payload.containsKey("finePaid")) {
@@ -136,10 +315,14 @@ public class TransactionController {
             }
         }
 
+        // Save the return before touching the book; the copies update below clears the persistence context
+        transactionRepository.save(transaction);
+
         // Increase book copies by 1 (book is now available again)
-        Book book = transaction.getBook();
-        book.setCopies(book.getCopies() + 1);
-        bookRepository.save(book);
+        String bookId = transaction.getBook().getId();
+        bookRepository.incrementCopies(bookId, changeVersionService.next(ChangeTracked.BOOK));
+        Book book = bookRepository.findById(bookId)
+                .orElseThrow(() -> new ResourceNotFoundException("Book not found"));
 
         // Handle reservation fulfillment if reservation ID is provided
         if (payload.containsKey("reservationIdToFulfill")) {
@@ -148,26 +331,28 @@ public class TransactionController {
                 Integer reservationId = Integer.valueOf(resIdObj.toString());
                 reservationRepository.findById(reservationId).ifPresent(reservation -> {
                     reservationRepository.delete(reservation);
+                    libraryStatsService.onReservationDeleted();
                 });
             }
         }
 
-        Transaction updatedTransaction = transactionRepository.save(transaction);
+        Transaction updatedTransaction = transactionRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Transaction not found"));
+        libraryStatsService.onBookReturned(book.getCopies(), wasOverdue);
+        bookSearchIndex.put(book);
+        entityCacheService.evictBook(book.getId());
+        circulationRollupService.recordReturn(id, book.getGenre(), updatedTransaction.getStudent().getCohort(),
+                updatedTransaction.getDueDate(), updatedTransaction.getReturnDate(), updatedTransaction.getFinePaid());
 
-        // Create notification for student
-        Student student = transaction.getStudent();
+        // Queue a notification for the student
+        Student student = updatedTransaction.getStudent();
         String notificationMessage = "Book returned: \"" + book.getTitle() + "\"";
-        if (transaction.getFinePaid() != null && transaction.getFinePaid().compareTo(BigDecimal.ZERO) > 0) {
-            notificationMessage += ". Fine paid: $" + transaction.getFinePaid();
+        if (updatedTransaction.getFinePaid() != null && updatedTransaction.getFinePaid().compareTo(BigDecimal.ZERO) > 0) {
+            notificationMessage += ". Fine paid: $" + updatedTransaction.getFinePaid();
         }
 
-        Notification notification = new Notification();
-        notification.setUserId(student.getId());
-        notification.setMessage(notificationMessage);
-        notification.setType("BOOK_RETURNED");
-        notification.setRelatedBookId(book.getId());
-        notification.setRelatedTransactionId(updatedTransaction.getId());
-        notificationRepository.save(notification);
+        notificationOutbox.enqueue(student.getId(), "BOOK_RETURNED", notificationMessage,
+                book.getId(), updatedTransaction.getId());
 
         return ResponseEntity.ok(convertToDto(updatedTransaction));
     }
@@ -0,0 +1,49 @@
+package com.example.librarybackend.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//Sends the outcome of a batch issue/return to frontend.
+// results[i] belongs to item i of the request; items that failed have an error and no transaction.
+public class BatchCirculationResponse {
+    private int succeeded;
+    private int failed;
+    private List<ItemResult> results = new ArrayList<>();
+
+    public void addSuccess(TransactionResponse transaction) {
+        succeeded++;
+        results.add(new ItemResult(true, transaction, null));
+    }
+
+    public void addFailure(String error) {
+        failed++;
+        results.add(new ItemResult(false, null, error));
+    }
+
+    // --- Getters and Setters ---
+    public int getSucceeded() { return succeeded; }
+    public void setSucceeded(int succeeded) { this.succeeded = succeeded; }
+    public int getFailed() { return failed; }
+    public void setFailed(int failed) { this.failed = failed; }
+    public List<ItemResult> getResults() { return results; }
+    public void setResults(List<ItemResult> results) { this.results = results; }
+
+    public static class ItemResult {
+        private boolean success;
+        private TransactionResponse transaction;
+        private String error;
+
+        public ItemResult(boolean success, TransactionResponse transaction, String error) {
+            this.success = success;
+            this.transaction = transaction;
+            this.error = error;
+        }
+
+        public boolean isSuccess() { return success; }
+        public void setSuccess(boolean success) { this.success = success; }
+        public TransactionResponse getTransaction() { return transaction; }
+        public void setTransaction(TransactionResponse transaction) { this.transaction = transaction; }
+        public String getError() { return error; }
+        public void setError(String error) { this.error = error; }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.librarybackend.dto;
+
+import com.example.librarybackend.model.Book;
+
+import java.util.List;
+
+//Sends one page of the book catalog to frontend.
+// nextCursor is an opaque token; pass it back as ?cursor= to get the following page.
+// It is null when there are no more books to read.
+public class BookPageResponse {
+    private List<Book> items;
+    private String nextCursor;
+    private int limit;
+
+    public BookPageResponse(List<Book> items, String nextCursor, int limit) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.limit = limit;
+    }
+
+    // --- Getters and Setters ---
+    public List<Book> getItems() { return items; }
+    public void setItems(List<Book> items) { this.items = items; }
+    public String getNextCursor() { return nextCursor; }
+    public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
+    public int getLimit() { return limit; }
+    public void setLimit(int limit) { this.limit = limit; }
+}
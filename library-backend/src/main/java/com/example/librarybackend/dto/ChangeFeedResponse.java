@@ -0,0 +1,30 @@
+package com.example.librarybackend.dto;
+
+import java.util.List;
+
+// One page of a change feed (GET /api/.../changes?since=).
+// items are the rows added or changed since then, deleted the ids of rows removed since then.
+// Pass version back as ?since= for the next page; hasMore says whether there already is one.
+public class ChangeFeedResponse<T> {
+    private List<T> items;
+    private List<String> deleted;
+    private long version;
+    private boolean hasMore;
+
+    public ChangeFeedResponse(List<T> items, List<String> deleted, long version, boolean hasMore) {
+        this.items = items;
+        this.deleted = deleted;
+        this.version = version;
+        this.hasMore = hasMore;
+    }
+
+    // --- Getters and Setters ---
+    public List<T> getItems() { return items; }
+    public void setItems(List<T> items) { this.items = items; }
+    public List<String> getDeleted() { return deleted; }
+    public void setDeleted(List<String> deleted) { this.deleted = deleted; }
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+    public boolean isHasMore() { return hasMore; }
+    public void setHasMore(boolean hasMore) { this.hasMore = hasMore; }
+}
@@ -0,0 +1,36 @@
+package com.example.librarybackend.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+//Flat, read-only view of one transaction with the book genre and student cohort.
+//Used by the analytics backfill so it doesn't have to load Transaction/Book/Student entities.
+public class CirculationRow {
+    private final Integer id;
+    private final LocalDateTime issueDate;
+    private final LocalDateTime dueDate;
+    private final LocalDateTime returnDate;
+    private final BigDecimal finePaid;
+    private final String genre;
+    private final String cohort;
+
+    public CirculationRow(Integer id, LocalDateTime issueDate, LocalDateTime dueDate, LocalDateTime returnDate,
+                          BigDecimal finePaid, String genre, String cohort) {
+        this.id = id;
+        this.issueDate = issueDate;
+        this.dueDate = dueDate;
+        this.returnDate = returnDate;
+        this.finePaid = finePaid;
+        this.genre = genre;
+        this.cohort = cohort;
+    }
+
+    // --- Getters ---
+    public Integer getId() { return id; }
+    public LocalDateTime getIssueDate() { return issueDate; }
+    public LocalDateTime getDueDate() { return dueDate; }
+    public LocalDateTime getReturnDate() { return returnDate; }
+    public BigDecimal getFinePaid() { return finePaid; }
+    public String getGenre() { return genre; }
+    public String getCohort() { return cohort; }
+}
@@ -0,0 +1,39 @@
+package com.example.librarybackend.dto;
+
+import java.time.LocalDateTime;
+
+//Sends the librarian dashboard totals to frontend.
+public class DashboardSummaryResponse {
+    private long totalTitles;
+    private long totalCopies;
+    private long availableTitles;
+    private long totalMembers;
+    private long issuedBooks;
+    private long overdueBooks;
+    private long reservedBooks;
+    private long returnedBooks;
+    private double returnRate;
+    private LocalDateTime lastReconciledAt;
+
+    // --- Getters and Setters ---
+    public long getTotalTitles() { return totalTitles; }
+    public void setTotalTitles(long totalTitles) { this.totalTitles = totalTitles; }
+    public long getTotalCopies() { return totalCopies; }
+    public void setTotalCopies(long totalCopies) { this.totalCopies = totalCopies; }
+    public long getAvailableTitles() { return availableTitles; }
+    public void setAvailableTitles(long availableTitles) { this.availableTitles = availableTitles; }
+    public long getTotalMembers() { return totalMembers; }
+    public void setTotalMembers(long totalMembers) { this.totalMembers = totalMembers; }
+    public long getIssuedBooks() { return issuedBooks; }
+    public void setIssuedBooks(long issuedBooks) { this.issuedBooks = issuedBooks; }
+    public long getOverdueBooks() { return overdueBooks; }
+    public void setOverdueBooks(long overdueBooks) { this.overdueBooks = overdueBooks; }
+    public long getReservedBooks() { return reservedBooks; }
+    public void setReservedBooks(long reservedBooks) { this.reservedBooks = reservedBooks; }
+    public long getReturnedBooks() { return returnedBooks; }
+    public void setReturnedBooks(long returnedBooks) { this.returnedBooks = returnedBooks; }
+    public double getReturnRate() { return returnRate; }
+    public void setReturnRate(double returnRate) { this.returnRate = returnRate; }
+    public LocalDateTime getLastReconciledAt() { return lastReconciledAt; }
+    public void setLastReconciledAt(LocalDateTime lastReconciledAt) { this.lastReconciledAt = lastReconciledAt; }
+}
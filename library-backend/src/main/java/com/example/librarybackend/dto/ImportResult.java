@@ -0,0 +1,51 @@
+package com.example.librarybackend.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//Sends the outcome of a bulk import to frontend.
+// Only the first MAX_ERRORS row errors are listed, so a badly broken file can't produce a huge response.
+public class ImportResult {
+    public static final int MAX_ERRORS = 1000;
+
+    private long rowsRead;
+    private long rowsImported;
+    private long rowsFailed;
+    private long durationMs;
+    private List<RowError> errors = new ArrayList<>();
+
+    public void addError(long row, String message) {
+        rowsFailed++;
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(new RowError(row, message));
+        }
+    }
+
+    // --- Getters and Setters ---
+    public long getRowsRead() { return rowsRead; }
+    public void setRowsRead(long rowsRead) { this.rowsRead = rowsRead; }
+    public long getRowsImported() { return rowsImported; }
+    public void setRowsImported(long rowsImported) { this.rowsImported = rowsImported; }
+    public long getRowsFailed() { return rowsFailed; }
+    public void setRowsFailed(long rowsFailed) { this.rowsFailed = rowsFailed; }
+    public long getDurationMs() { return durationMs; }
+    public void setDurationMs(long durationMs) { this.durationMs = durationMs; }
+    public List<RowError> getErrors() { return errors; }
+    public void setErrors(List<RowError> errors) { this.errors = errors; }
+
+    // One rejected row; row numbers start at 1 for the first data row
+    public static class RowError {
+        private long row;
+        private String message;
+
+        public RowError(long row, String message) {
+            this.row = row;
+            this.message = message;
+        }
+
+        public long getRow() { return row; }
+        public void setRow(long row) { this.row = row; }
+        public String getMessage() { return message; }
+        public void setMessage(String message) { this.message = message; }
+    }
+}
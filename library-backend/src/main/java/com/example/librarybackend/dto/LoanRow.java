@@ -0,0 +1,32 @@
+package com.example.librarybackend.dto;
+
+import java.time.LocalDateTime;
+
+//Flat view of one loan's own columns, with its book and student as ids only.
+//Used by the batch return so that locking the loans doesn't load (or lock) their books and students.
+public class LoanRow {
+    private final Integer transactionId;
+    private final String bookId;
+    private final String studentId;
+    private final LocalDateTime issueDate;
+    private final LocalDateTime dueDate;
+    private final LocalDateTime returnDate;
+
+    public LoanRow(Integer transactionId, String bookId, String studentId, LocalDateTime issueDate,
+                   LocalDateTime dueDate, LocalDateTime returnDate) {
+        this.transactionId = transactionId;
+        this.bookId = bookId;
+        this.studentId = studentId;
+        this.issueDate = issueDate;
+        this.dueDate = dueDate;
+        this.returnDate = returnDate;
+    }
+
+    // --- Getters ---
+    public Integer getTransactionId() { return transactionId; }
+    public String getBookId() { return bookId; }
+    public String getStudentId() { return studentId; }
+    public LocalDateTime getIssueDate() { return issueDate; }
+    public LocalDateTime getDueDate() { return dueDate; }
+    public LocalDateTime getReturnDate() { return returnDate; }
+}
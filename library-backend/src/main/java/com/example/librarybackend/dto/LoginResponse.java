@@ -1,5 +1,7 @@
 package com.example.librarybackend.dto;
 
+import java.time.Instant;
+
 //Sends login result back to frontend.
 // This class represents the JSON response we send back on successful login.
 // The frontend will use these fields (especially 'role') to decide what to do next.
@@ -8,6 +10,9 @@ public class LoginResponse {
     private String name;
     private String email;
     private String role;
+    // Signed token to send back as "Authorization: Bearer <token>", and when it stops being accepted
+    private String token;
+    private Instant expiresAt;
 
     // Constructor to make creating new responses easy
     //new LoginResponse("S001", "John", "john@example.com", "student") backend send these in JSON format
@@ -44,4 +49,16 @@ public class LoginResponse {
     public void setRole(String role) {
         this.role = role;
     }
-}
\ No newline at end of file
+    public String getToken() {
+        return token;
+    }
+    public void setToken(String token) {
+        this.token = token;
+    }
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.librarybackend.dto;
+
+import java.time.LocalDateTime;
+
+//Flat, read-only view of one open loan that is past its due date.
+//Used by the overdue scanner so it doesn't have to load Transaction/Book/Student entities.
+public class OverdueLoanRow {
+    private final Integer transactionId;
+    private final LocalDateTime dueDate;
+    private final String bookId;
+    private final String bookTitle;
+    private final String studentId;
+
+    public OverdueLoanRow(Integer transactionId, LocalDateTime dueDate, String bookId, String bookTitle,
+                          String studentId) {
+        this.transactionId = transactionId;
+        this.dueDate = dueDate;
+        this.bookId = bookId;
+        this.bookTitle = bookTitle;
+        this.studentId = studentId;
+    }
+
+    // --- Getters ---
+    public Integer getTransactionId() { return transactionId; }
+    public LocalDateTime getDueDate() { return dueDate; }
+    public String getBookId() { return bookId; }
+    public String getBookTitle() { return bookTitle; }
+    public String getStudentId() { return studentId; }
+}
@@ -9,6 +9,27 @@ public class ReservationResponse {
     private String studentId;
     private String studentName;
     private LocalDateTime reservationDate;
+    private Long queuePosition; // 1 = next in line for this book
+
+    public ReservationResponse() {
+    }
+
+    // Used by the JPQL "SELECT new ..." projections in ReservationRepository
+    public ReservationResponse(Integer id, String bookId, String bookTitle, String studentId,
+                               String studentName, LocalDateTime reservationDate) {
+        this.id = id;
+        this.bookId = bookId;
+        this.bookTitle = bookTitle;
+        this.studentId = studentId;
+        this.studentName = studentName;
+        this.reservationDate = reservationDate;
+    }
+
+    public ReservationResponse(Integer id, String bookId, String bookTitle, String studentId,
+                               String studentName, LocalDateTime reservationDate, Long queuePosition) {
+        this(id, bookId, bookTitle, studentId, studentName, reservationDate);
+        this.queuePosition = queuePosition;
+    }
 
     // Getters and Setters
     public Integer getId() { return id; }
@@ -30,4 +51,7 @@ public class ReservationResponse {
     public void setReservationDate(LocalDateTime reservationDate) {
         this.reservationDate = reservationDate;
     }
+
+    public Long getQueuePosition() { return queuePosition; }
+    public void setQueuePosition(Long queuePosition) { this.queuePosition = queuePosition; }
 }
\ No newline at end of file
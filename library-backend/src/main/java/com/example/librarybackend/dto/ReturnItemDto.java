@@ -0,0 +1,18 @@
+package com.example.librarybackend.dto;
+
+import java.math.BigDecimal;
+
+//Receives one book return of a batch return request from frontend.
+public class ReturnItemDto {
+    private Integer transactionId;
+    private BigDecimal finePaid;
+    private Integer reservationIdToFulfill;
+
+    // --- Getters and Setters ---
+    public Integer getTransactionId() { return transactionId; }
+    public void setTransactionId(Integer transactionId) { this.transactionId = transactionId; }
+    public BigDecimal getFinePaid() { return finePaid; }
+    public void setFinePaid(BigDecimal finePaid) { this.finePaid = finePaid; }
+    public Integer getReservationIdToFulfill() { return reservationIdToFulfill; }
+    public void setReservationIdToFulfill(Integer reservationIdToFulfill) { this.reservationIdToFulfill = reservationIdToFulfill; }
+}
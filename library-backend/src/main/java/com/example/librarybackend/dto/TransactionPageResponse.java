@@ -0,0 +1,25 @@
+package com.example.librarybackend.dto;
+
+import java.util.List;
+
+//Sends one page of transactions (newest first) to frontend.
+// nextCursor is the id to pass back as ?cursor= for the next (older) page, or null on the last page.
+public class TransactionPageResponse {
+    private List<TransactionResponse> items;
+    private Integer nextCursor;
+    private int limit;
+
+    public TransactionPageResponse(List<TransactionResponse> items, Integer nextCursor, int limit) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.limit = limit;
+    }
+
+    // --- Getters and Setters ---
+    public List<TransactionResponse> getItems() { return items; }
+    public void setItems(List<TransactionResponse> items) { this.items = items; }
+    public Integer getNextCursor() { return nextCursor; }
+    public void setNextCursor(Integer nextCursor) { this.nextCursor = nextCursor; }
+    public int getLimit() { return limit; }
+    public void setLimit(int limit) { this.limit = limit; }
+}
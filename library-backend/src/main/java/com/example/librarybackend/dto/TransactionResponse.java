@@ -14,6 +14,24 @@ public class TransactionResponse {
     private LocalDateTime returnDate;
     private BigDecimal finePaid;
 
+    public TransactionResponse() {
+    }
+
+    // Used by the JPQL "SELECT new ..." projections in TransactionRepository
+    public TransactionResponse(Integer id, String bookId, String bookTitle, String studentId, String studentName,
+                               LocalDateTime issueDate, LocalDateTime dueDate, LocalDateTime returnDate,
+                               BigDecimal finePaid) {
+        this.id = id;
+        this.bookId = bookId;
+        this.bookTitle = bookTitle;
+        this.studentId = studentId;
+        this.studentName = studentName;
+        this.issueDate = issueDate;
+        this.dueDate = dueDate;
+        this.returnDate = returnDate;
+        this.finePaid = finePaid;
+    }
+
     // --- Getters and Setters ---
     public Integer getId() { return id; }
     public void setId(Integer id) { this.id = id; }
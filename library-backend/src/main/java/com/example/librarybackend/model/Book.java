@@ -1,13 +1,26 @@
 package com.example.librarybackend.model;
 
+import com.example.librarybackend.service.ChangeVersionListener;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
+import org.hibernate.annotations.ColumnDefault;
 
 @Entity // Tells JPA this class is an entity that maps to a database table or create a database table for this class
-@Table(name = "books") // Specifies the table name
-public class Book {
+@Table(name = "books", indexes = { // Specifies the table name
+        // Composite indexes so filtered catalog pages can seek by (filter, id) instead of scanning
+        @Index(name = "idx_books_genre_id", columnList = "genre, id"),
+        @Index(name = "idx_books_author_id", columnList = "author, id"),
+        // Which books use a cover image, before it is deleted
+        @Index(name = "idx_books_image_path", columnList = "image_path"),
+        // The change feed reads books in change_version order
+        @Index(name = "idx_books_change_version", columnList = "change_version")
+})
+@EntityListeners(ChangeVersionListener.class)
+public class Book implements ChangeTracked {
     @Id // Marks this field as the primary key
     private String id; // ISBN
 
@@ -19,6 +32,10 @@ public class Book {
     @Column(name = "image_path", length = 500)
     private String imagePath; // Stores the filename of the uploaded image
 
+    @ColumnDefault("0")
+    @Column(name = "change_version", nullable = false)
+    private long changeVersion; // Stamped on every write, see ChangeTracked
+
     // Getters and Setters are required by JPA Used to read/write private fields
     public String getId() {
         return id;
@@ -67,4 +84,23 @@ public class Book {
     public void setImagePath(String imagePath) {
         this.imagePath = imagePath;
     }
-}
\ No newline at end of file
+
+    public long getChangeVersion() {
+        return changeVersion;
+    }
+
+    @Override
+    public void setChangeVersion(long changeVersion) {
+        this.changeVersion = changeVersion;
+    }
+
+    @Override
+    public String changeType() {
+        return BOOK;
+    }
+
+    @Override
+    public String changeId() {
+        return id;
+    }
+}
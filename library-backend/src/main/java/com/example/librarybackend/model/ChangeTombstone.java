@@ -0,0 +1,43 @@
+package com.example.librarybackend.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// Marks that a row was deleted, so the change feeds can tell clients to drop it.
+// Written and read with plain SQL by ChangeVersionService; pruned once older than
+// library.sync.tombstone-retention.
+@Entity
+@Table(name = "change_tombstones", indexes = {
+        @Index(name = "idx_change_tombstones_type_version", columnList = "entity_type, version"),
+        @Index(name = "idx_change_tombstones_deleted_at", columnList = "deleted_at")
+})
+public class ChangeTombstone {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "entity_type", nullable = false, length = 20)
+    private String entityType; // One of the ChangeTracked types, e.g. "book"
+
+    @Column(name = "entity_id", nullable = false)
+    private String entityId;
+
+    @Column(nullable = false)
+    private long version; // The change version the delete was given
+
+    @Column(name = "deleted_at", nullable = false)
+    private LocalDateTime deletedAt;
+
+    // --- Getters and Setters ---
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public String getEntityType() { return entityType; }
+    public void setEntityType(String entityType) { this.entityType = entityType; }
+    public String getEntityId() { return entityId; }
+    public void setEntityId(String entityId) { this.entityId = entityId; }
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+    public LocalDateTime getDeletedAt() { return deletedAt; }
+    public void setDeletedAt(LocalDateTime deletedAt) { this.deletedAt = deletedAt; }
+}
@@ -0,0 +1,20 @@
+package com.example.librarybackend.model;
+
+// An entity whose changes are numbered for the ?since= change feeds. Every insert and update
+// stamps the row with a new change version, and deleting it leaves a tombstone with one.
+// The stamping is done by ChangeVersionListener; see ChangeVersionService for the numbering.
+public interface ChangeTracked {
+
+    // The change types, as they appear in tombstones and ETags
+    String BOOK = "book";
+    String STUDENT = "student";
+    String TRANSACTION = "transaction";
+    String RESERVATION = "reservation";
+
+    String changeType();
+
+    // The id, as a tombstone stores it
+    String changeId();
+
+    void setChangeVersion(long changeVersion);
+}
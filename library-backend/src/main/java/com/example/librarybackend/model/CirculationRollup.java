@@ -0,0 +1,63 @@
+package com.example.librarybackend.model;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// One row of pre-aggregated circulation numbers, e.g.
+// "on 2025-09-01 (DAY), genre 'Fiction' (GENRE): 12 issues, 9 returns, 3 late, $4.50 in fines".
+// Rows are bumped on every issue/return and can be rebuilt from transactions by the backfill job.
+@Entity
+@Table(name = "circulation_rollups",
+        uniqueConstraints = @UniqueConstraint(name = "uk_rollup_bucket",
+                columnNames = {"period", "dimension", "period_start", "dimension_value"}))
+public class CirculationRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 10)
+    private String period; // "DAY" or "MONTH"
+
+    @Column(name = "period_start", nullable = false)
+    private LocalDate periodStart; // The day itself, or the first day of the month
+
+    @Column(nullable = false, length = 20)
+    private String dimension; // "GENRE" or "COHORT"
+
+    @Column(name = "dimension_value", nullable = false)
+    private String dimensionValue; // The genre name or the cohort name
+
+    @Column(nullable = false)
+    private long issues;
+
+    @Column(nullable = false)
+    private long returns;
+
+    @Column(name = "overdue_returns", nullable = false)
+    private long overdueReturns; // Returns that came back after their due date
+
+    @Column(name = "fines_collected", nullable = false, precision = 12, scale = 2)
+    private BigDecimal finesCollected = BigDecimal.ZERO;
+
+    // --- Getters and Setters ---
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public String getPeriod() { return period; }
+    public void setPeriod(String period) { this.period = period; }
+    public LocalDate getPeriodStart() { return periodStart; }
+    public void setPeriodStart(LocalDate periodStart) { this.periodStart = periodStart; }
+    public String getDimension() { return dimension; }
+    public void setDimension(String dimension) { this.dimension = dimension; }
+    public String getDimensionValue() { return dimensionValue; }
+    public void setDimensionValue(String dimensionValue) { this.dimensionValue = dimensionValue; }
+    public long getIssues() { return issues; }
+    public void setIssues(long issues) { this.issues = issues; }
+    public long getReturns() { return returns; }
+    public void setReturns(long returns) { this.returns = returns; }
+    public long getOverdueReturns() { return overdueReturns; }
+    public void setOverdueReturns(long overdueReturns) { this.overdueReturns = overdueReturns; }
+    public BigDecimal getFinesCollected() { return finesCollected; }
+    public void setFinesCollected(BigDecimal finesCollected) { this.finesCollected = finesCollected; }
+}
@@ -0,0 +1,47 @@
+package com.example.librarybackend.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// How far a background job got, so its next run can carry on from there instead of starting over.
+// The position is a (timestamp, id) pair, the same keyset the job walks its rows by, or a change
+// version for jobs that walk by those.
+@Entity
+@Table(name = "job_checkpoints")
+public class JobCheckpoint {
+
+    @Id
+    @Column(length = 100)
+    private String name; // The job, e.g. "overdue-scan"
+
+    @Column(name = "position_time")
+    private LocalDateTime positionTime;
+
+    @Column(name = "position_id")
+    private Integer positionId;
+
+    @Column(name = "position_version")
+    private Long positionVersion;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public JobCheckpoint() {
+    }
+
+    public JobCheckpoint(String name) {
+        this.name = name;
+    }
+
+    // --- Getters and Setters ---
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+    public LocalDateTime getPositionTime() { return positionTime; }
+    public void setPositionTime(LocalDateTime positionTime) { this.positionTime = positionTime; }
+    public Integer getPositionId() { return positionId; }
+    public void setPositionId(Integer positionId) { this.positionId = positionId; }
+    public Long getPositionVersion() { return positionVersion; }
+    public void setPositionVersion(Long positionVersion) { this.positionVersion = positionVersion; }
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -4,7 +4,14 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "notifications")
+@Table(name = "notifications", indexes = {
+        // A user's (unread) notifications newest first, and the set-based mark-all-read
+        @Index(name = "idx_notifications_user_read_created", columnList = "user_id, is_read, created_at"),
+        // Lets the retention job find the oldest notifications without a full scan
+        @Index(name = "idx_notifications_created_at", columnList = "created_at"),
+        // Lets the overdue scanner check which loans already have a notice
+        @Index(name = "idx_notifications_related_tx", columnList = "related_transaction_id, type")
+})
 public class Notification {
 
     @Id
@@ -0,0 +1,61 @@
+package com.example.librarybackend.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// A notification moved out of the live notifications table by the retention job.
+// Same columns as Notification (and the same id), plus when it was archived. Nothing in the
+// app reads this table; it is kept for audits and reporting.
+@Entity
+@Table(name = "notifications_archive", indexes = {
+        @Index(name = "idx_notifications_archive_user_created", columnList = "user_id, created_at")
+})
+public class NotificationArchive {
+
+    @Id
+    private Integer id; // The id the notification had in the notifications table
+
+    @Column(name = "user_id", nullable = false)
+    private String userId;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String message;
+
+    @Column(nullable = false, length = 50)
+    private String type;
+
+    @Column(name = "is_read", nullable = false)
+    private Boolean isRead;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "related_book_id")
+    private String relatedBookId;
+
+    @Column(name = "related_transaction_id")
+    private Integer relatedTransactionId;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+
+    // --- Getters and Setters ---
+    public Integer getId() { return id; }
+    public void setId(Integer id) { this.id = id; }
+    public String getUserId() { return userId; }
+    public void setUserId(String userId) { this.userId = userId; }
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+    public Boolean getIsRead() { return isRead; }
+    public void setIsRead(Boolean isRead) { this.isRead = isRead; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    public String getRelatedBookId() { return relatedBookId; }
+    public void setRelatedBookId(String relatedBookId) { this.relatedBookId = relatedBookId; }
+    public Integer getRelatedTransactionId() { return relatedTransactionId; }
+    public void setRelatedTransactionId(Integer relatedTransactionId) { this.relatedTransactionId = relatedTransactionId; }
+    public LocalDateTime getArchivedAt() { return archivedAt; }
+    public void setArchivedAt(LocalDateTime archivedAt) { this.archivedAt = archivedAt; }
+}
@@ -0,0 +1,63 @@
+package com.example.librarybackend.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// A notification that has been committed together with the circulation change that caused it,
+// but not yet written to the notifications table. NotificationOutboxWriter moves these rows
+// across in batches and deletes them once delivered.
+@Entity
+@Table(name = "notification_outbox", indexes = {
+        // The writer drains events in (next_attempt_at, id) order
+        @Index(name = "idx_outbox_next_attempt", columnList = "next_attempt_at, id")
+})
+public class NotificationOutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private String userId;
+
+    @Column(nullable = false, length = 50)
+    private String type;
+
+    @Column(nullable = false, length = 1000)
+    private String message;
+
+    @Column(name = "related_book_id")
+    private String relatedBookId;
+
+    @Column(name = "related_transaction_id")
+    private Integer relatedTransactionId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt; // Becomes the notification's createdAt
+
+    @Column(nullable = false)
+    private int attempts; // Failed delivery attempts so far
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt; // null once the event has failed too often and is parked
+
+    // --- Getters and Setters ---
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public String getUserId() { return userId; }
+    public void setUserId(String userId) { this.userId = userId; }
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+    public String getRelatedBookId() { return relatedBookId; }
+    public void setRelatedBookId(String relatedBookId) { this.relatedBookId = relatedBookId; }
+    public Integer getRelatedTransactionId() { return relatedTransactionId; }
+    public void setRelatedTransactionId(Integer relatedTransactionId) { this.relatedTransactionId = relatedTransactionId; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+    public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+}
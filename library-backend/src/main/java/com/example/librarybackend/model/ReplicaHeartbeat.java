@@ -0,0 +1,23 @@
+package com.example.librarybackend.model;
+
+import jakarta.persistence.*;
+
+// A single row the backend updates on the primary every second or so. Reading it back from a
+// replica shows how far behind that replica is. Written and read with plain SQL by
+// ReplicaLagMonitor; only used when read replicas are configured.
+@Entity
+@Table(name = "replica_heartbeat")
+public class ReplicaHeartbeat {
+
+    @Id
+    private Integer id;
+
+    @Column(name = "beat_at", nullable = false)
+    private long beatAt; // Epoch millis on the backend's clock, so no clock skew between servers matters
+
+    // --- Getters and Setters ---
+    public Integer getId() { return id; }
+    public void setId(Integer id) { this.id = id; }
+    public long getBeatAt() { return beatAt; }
+    public void setBeatAt(long beatAt) { this.beatAt = beatAt; }
+}
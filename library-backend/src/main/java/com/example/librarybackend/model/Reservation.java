@@ -1,11 +1,24 @@
 package com.example.librarybackend.model;
 
+import com.example.librarybackend.service.ChangeVersionListener;
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
+
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "reservations")
-public class Reservation {
+@Table(name = "reservations",
+        // A student holds at most one place in a book's queue
+        uniqueConstraints = @UniqueConstraint(name = "uk_reservations_book_student", columnNames = {"book_id", "student_id"}),
+        indexes = {
+                // The waiting queue for a book is read in (reservation_date, id) order straight off this index
+                @Index(name = "idx_reservations_book_date", columnList = "book_id, reservation_date, id"),
+                @Index(name = "idx_reservations_student_id", columnList = "student_id"),
+                // The change feed reads reservations in change_version order
+                @Index(name = "idx_reservations_change_version", columnList = "change_version")
+        })
+@EntityListeners(ChangeVersionListener.class)
+public class Reservation implements ChangeTracked {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -22,6 +35,10 @@ public class Reservation {
     @Column(name = "reservation_date", nullable = false)
     private LocalDateTime reservationDate;
 
+    @ColumnDefault("0")
+    @Column(name = "change_version", nullable = false)
+    private long changeVersion; // Stamped on every write, see ChangeTracked
+
     // --- Getters and Setters ---
     public Integer getId() { return id; }
     public void setId(Integer id) { this.id = id; }
@@ -31,4 +48,9 @@ public class Reservation {
     public void setStudent(Student student) { this.student = student; }
     public LocalDateTime getReservationDate() { return reservationDate; }
     public void setReservationDate(LocalDateTime reservationDate) { this.reservationDate = reservationDate; }
-}
\ No newline at end of file
+    public long getChangeVersion() { return changeVersion; }
+    @Override public void setChangeVersion(long changeVersion) { this.changeVersion = changeVersion; }
+
+    @Override public String changeType() { return RESERVATION; }
+    @Override public String changeId() { return String.valueOf(id); }
+}
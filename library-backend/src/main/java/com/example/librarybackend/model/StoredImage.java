@@ -0,0 +1,42 @@
+package com.example.librarybackend.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// One stored cover image. The filename is the SHA-256 of the bytes plus the extension, so the
+// same picture uploaded twice is stored once. refCount is the number of books whose imagePath
+// points at it; images nobody uses are removed by BookImageService's orphan sweep.
+@Entity
+@Table(name = "stored_images", indexes = {
+        @Index(name = "idx_stored_images_refs_created", columnList = "ref_count, created_at")
+})
+public class StoredImage {
+
+    @Id
+    @Column(length = 100)
+    private String filename; // e.g. "9f86d081...0f00a08.png"
+
+    @Column(name = "content_type", nullable = false, length = 50)
+    private String contentType;
+
+    @Column(name = "size_bytes", nullable = false)
+    private long sizeBytes;
+
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // --- Getters and Setters ---
+    public String getFilename() { return filename; }
+    public void setFilename(String filename) { this.filename = filename; }
+    public String getContentType() { return contentType; }
+    public void setContentType(String contentType) { this.contentType = contentType; }
+    public long getSizeBytes() { return sizeBytes; }
+    public void setSizeBytes(long sizeBytes) { this.sizeBytes = sizeBytes; }
+    public int getRefCount() { return refCount; }
+    public void setRefCount(int refCount) { this.refCount = refCount; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
@@ -1,13 +1,22 @@
 package com.example.librarybackend.model;
 
+import com.example.librarybackend.service.ChangeVersionListener;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
+import org.hibernate.annotations.ColumnDefault;
 
 @Entity
-@Table(name = "students")
-public class Student {
+@Table(name = "students", indexes = {
+        // The change feed reads students in change_version order
+        @Index(name = "idx_students_change_version", columnList = "change_version")
+})
+@EntityListeners(ChangeVersionListener.class)
+public class Student implements ChangeTracked {
     @Id
     private String id;
 
@@ -18,6 +27,16 @@ public class Student {
 
     private String contact;
 
+    private String cohort; // Intake/batch the student belongs to, e.g. "2024" - used to group analytics
+
+    @JsonIgnore // Never sent to or read from clients; set through PUT /api/students/{id}/password
+    @Column(name = "password_hash", length = 60)
+    private String passwordHash; // BCrypt hash, or null if the student has no password yet
+
+    @ColumnDefault("0")
+    @Column(name = "change_version", nullable = false)
+    private long changeVersion; // Stamped on every write, see ChangeTracked
+
     // --- Getters and Setters ---
     // (Required for JPA/Hibernate to function correctly)
 
@@ -52,4 +71,39 @@ public class Student {
     public void setContact(String contact) {
         this.contact = contact;
     }
-}
\ No newline at end of file
+
+    public String getCohort() {
+        return cohort;
+    }
+
+    public void setCohort(String cohort) {
+        this.cohort = cohort;
+    }
+
+    public String getPasswordHash() {
+        return passwordHash;
+    }
+
+    public void setPasswordHash(String passwordHash) {
+        this.passwordHash = passwordHash;
+    }
+
+    public long getChangeVersion() {
+        return changeVersion;
+    }
+
+    @Override
+    public void setChangeVersion(long changeVersion) {
+        this.changeVersion = changeVersion;
+    }
+
+    @Override
+    public String changeType() {
+        return STUDENT;
+    }
+
+    @Override
+    public String changeId() {
+        return id;
+    }
+}
@@ -1,12 +1,26 @@
 package com.example.librarybackend.model;
 
+import com.example.librarybackend.service.ChangeVersionListener;
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
+
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "transactions")
-public class Transaction {
+@Table(name = "transactions", indexes = {
+        // A student's loans, newest first, and date-range listings without a full scan
+        @Index(name = "idx_transactions_student_id", columnList = "student_id, id"),
+        @Index(name = "idx_transactions_issue_date", columnList = "issue_date"),
+        // Open loans by due date, for the overdue scanner and the overdue counts
+        @Index(name = "idx_transactions_return_due", columnList = "return_date, due_date"),
+        // Open (and overdue) loans newest first, for the librarian's loan pages
+        @Index(name = "idx_transactions_return_id", columnList = "return_date, id, due_date"),
+        // The change feed reads loans in change_version order
+        @Index(name = "idx_transactions_change_version", columnList = "change_version")
+})
+@EntityListeners(ChangeVersionListener.class)
+public class Transaction implements ChangeTracked {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY) // Let MySQL auto-increment the ID
     private Integer id;
@@ -31,6 +45,10 @@ public class Transaction {
     @Column(name = "fine_paid")
     private BigDecimal finePaid;
 
+    @ColumnDefault("0")
+    @Column(name = "change_version", nullable = false)
+    private long changeVersion; // Stamped on every write, see ChangeTracked
+
     // --- Getters and Setters ---
     public Integer getId() { return id; }
     public void setId(Integer id) { this.id = id; }
@@ -46,4 +64,9 @@ public class Transaction {
     public void setReturnDate(LocalDateTime returnDate) { this.returnDate = returnDate; }
     public BigDecimal getFinePaid() { return finePaid; }
     public void setFinePaid(BigDecimal finePaid) { this.finePaid = finePaid; }
-}
\ No newline at end of file
+    public long getChangeVersion() { return changeVersion; }
+    @Override public void setChangeVersion(long changeVersion) { this.changeVersion = changeVersion; }
+
+    @Override public String changeType() { return TRANSACTION; }
+    @Override public String changeId() { return String.valueOf(id); }
+}
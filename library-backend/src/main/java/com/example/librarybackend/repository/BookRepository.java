@@ -1,12 +1,72 @@
 package com.example.librarybackend.repository;
 
 import com.example.librarybackend.model.Book;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface BookRepository extends JpaRepository<Book, String> {
     // Spring Data JPA provides findAll(), findById(), save(), deleteById(), etc.
     // The <Book, String> means it's a repository for the Book entity,
     // and the ID of the Book entity is of type String.
-}
\ No newline at end of file
+
+    // Keyset (cursor) pagination: returns the next books with id > afterId, ordered by id.
+    // Every filter is optional - a null parameter means "don't filter on this column".
+    // The database seeks straight to afterId on the primary key (or the genre/author indexes),
+    // so the cost of a page does not depend on how deep into the catalog we are.
+    @Query("SELECT b FROM Book b " +
+            "WHERE (:afterId IS NULL OR b.id > :afterId) " +
+            "AND (:genre IS NULL OR b.genre = :genre) " +
+            "AND (:author IS NULL OR b.author = :author) " +
+            "AND (:available IS NULL " +
+            "     OR (:available = true AND b.copies > 0) " +
+            "     OR (:available = false AND b.copies <= 0)) " +
+            "ORDER BY b.id ASC")
+    List<Book> findPage(@Param("afterId") String afterId,
+                        @Param("genre") String genre,
+                        @Param("author") String author,
+                        @Param("available") Boolean available,
+                        Limit limit);
+
+    // Take one copy off the shelf, but only if there is one left.
+    // The check and the decrement are a single UPDATE, so two desks issuing the last copy at the
+    // same moment can't both succeed: the row lock makes the second one see copies = 0.
+    // Returns 1 if a copy was taken, 0 if the book is out of stock (or doesn't exist).
+    // Bulk updates skip the entity listeners, so the caller passes the book's new change version.
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Book b SET b.copies = b.copies - 1, b.changeVersion = :version WHERE b.id = :id AND b.copies > 0")
+    int decrementCopiesIfAvailable(@Param("id") String id, @Param("version") long version);
+
+    // Load several books and lock their rows until the surrounding DB transaction ends.
+    // Always locked in id order, so two batches touching the same books can't deadlock.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM Book b WHERE b.id IN :ids ORDER BY b.id")
+    List<Book> findAllByIdForUpdate(@Param("ids") Collection<String> ids);
+
+    // Put one copy back on the shelf without a read-modify-write race
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Book b SET b.copies = b.copies + 1, b.changeVersion = :version WHERE b.id = :id")
+    int incrementCopies(@Param("id") String id, @Param("version") long version);
+
+    // Aggregates used by the dashboard stats service when it reconciles its counters
+    @Query("SELECT COALESCE(SUM(b.copies), 0) FROM Book b")
+    long sumCopies();
+
+    long countByCopiesGreaterThan(int copies);
+
+    // Books using a cover image, checked before the image file is deleted
+    long countByImagePath(String imagePath);
+
+    // Books changed in the (since, upTo] version range, for the change feed
+    @Query("SELECT b FROM Book b WHERE b.changeVersion > :since AND b.changeVersion <= :upTo ORDER BY b.changeVersion")
+    List<Book> findChangedBetween(@Param("since") long since, @Param("upTo") long upTo);
+}
@@ -0,0 +1,76 @@
+package com.example.librarybackend.repository;
+
+import com.example.librarybackend.model.CirculationRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface CirculationRollupRepository extends JpaRepository<CirculationRollup, Long> {
+
+    // Range read for the analytics endpoints. Served by the uk_rollup_bucket index
+    // (period, dimension, period_start, ...), so it only touches the rows in the range.
+    List<CirculationRollup> findByPeriodAndDimensionAndPeriodStartBetweenOrderByPeriodStartAscDimensionValueAsc(
+            String period, String dimension, LocalDate from, LocalDate to);
+
+    // Add the given amounts to a bucket, creating the bucket if it doesn't exist yet.
+    // A single upsert statement, so concurrent issues/returns never lose an increment.
+    @Modifying
+    @Query(value = "INSERT INTO circulation_rollups " +
+            "(period, period_start, dimension, dimension_value, issues, returns, overdue_returns, fines_collected) " +
+            "VALUES (:period, :periodStart, :dimension, :dimensionValue, :issues, :returns, :overdueReturns, :fines) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "issues = issues + :issues, " +
+            "returns = returns + :returns, " +
+            "overdue_returns = overdue_returns + :overdueReturns, " +
+            "fines_collected = fines_collected + :fines",
+            nativeQuery = true)
+    void addToBucket(@Param("period") String period,
+                     @Param("periodStart") LocalDate periodStart,
+                     @Param("dimension") String dimension,
+                     @Param("dimensionValue") String dimensionValue,
+                     @Param("issues") long issues,
+                     @Param("returns") long returns,
+                     @Param("overdueReturns") long overdueReturns,
+                     @Param("fines") BigDecimal fines);
+
+    // addToBucket for circulation_rollups_staging, where a rebuild collects its buckets
+    @Modifying
+    @Query(value = "INSERT INTO circulation_rollups_staging " +
+            "(period, period_start, dimension, dimension_value, issues, returns, overdue_returns, fines_collected) " +
+            "VALUES (:period, :periodStart, :dimension, :dimensionValue, :issues, :returns, :overdueReturns, :fines) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "issues = issues + :issues, " +
+            "returns = returns + :returns, " +
+            "overdue_returns = overdue_returns + :overdueReturns, " +
+            "fines_collected = fines_collected + :fines",
+            nativeQuery = true)
+    void addToStagingBucket(@Param("period") String period,
+                            @Param("periodStart") LocalDate periodStart,
+                            @Param("dimension") String dimension,
+                            @Param("dimensionValue") String dimensionValue,
+                            @Param("issues") long issues,
+                            @Param("returns") long returns,
+                            @Param("overdueReturns") long overdueReturns,
+                            @Param("fines") BigDecimal fines);
+
+    @Modifying
+    @Query(value = "DELETE FROM circulation_rollups_staging", nativeQuery = true)
+    void clearStaging();
+
+    // Copy the rebuilt buckets in. The caller deletes the old ones first, in the same DB transaction,
+    // so readers see either the old rollups or the new ones, never an empty or half-copied table.
+    @Modifying
+    @Query(value = "INSERT INTO circulation_rollups " +
+            "(period, period_start, dimension, dimension_value, issues, returns, overdue_returns, fines_collected) " +
+            "SELECT period, period_start, dimension, dimension_value, issues, returns, overdue_returns, fines_collected " +
+            "FROM circulation_rollups_staging",
+            nativeQuery = true)
+    void copyStagingIntoRollups();
+}
@@ -0,0 +1,42 @@
+package com.example.librarybackend.repository;
+
+import com.example.librarybackend.model.NotificationOutboxEvent;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface NotificationOutboxRepository extends JpaRepository<NotificationOutboxEvent, Long> {
+
+    // The next events due for delivery, oldest first, locked until the surrounding DB transaction
+    // ends. Rows another writer has locked are skipped (FOR UPDATE SKIP LOCKED, lock timeout -2),
+    // so several backend instances take different events instead of queueing on the same ones.
+    // Served by idx_outbox_next_attempt; parked events (next_attempt_at NULL) are never returned.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_SPEC_LOCK_TIMEOUT, value = "-2"))
+    @Query("SELECT e FROM NotificationOutboxEvent e WHERE e.nextAttemptAt <= :now ORDER BY e.nextAttemptAt, e.id")
+    List<NotificationOutboxEvent> findDueForUpdate(@Param("now") LocalDateTime now, Limit limit);
+
+    // One event, locked like findDueForUpdate; empty if it is gone or another writer holds it
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_SPEC_LOCK_TIMEOUT, value = "-2"))
+    @Query("SELECT e FROM NotificationOutboxEvent e WHERE e.id = :id")
+    Optional<NotificationOutboxEvent> findByIdForUpdate(@Param("id") Long id);
+
+    // Events waiting to be delivered, for the dashboard/monitoring
+    long countByNextAttemptAtIsNotNull();
+
+    // Events parked after too many failed attempts
+    long countByNextAttemptAtIsNull();
+}
@@ -2,8 +2,12 @@ package com.example.librarybackend.repository;
 
 import com.example.librarybackend.model.Notification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -18,6 +22,18 @@ public interface NotificationRepository extends JpaRepository<Notification, Inte
     // Count unread notifications for a user
     Long countByUserIdAndIsReadFalse(String userId);
 
-    // Delete all notifications for a user
-    void deleteByUserId(String userId);
+    // Unread counts of several users at once, as (userId, count) rows. Users with none are left out.
+    @Query("SELECT n.userId, COUNT(n) FROM Notification n WHERE n.userId IN :userIds AND n.isRead = false GROUP BY n.userId")
+    List<Object[]> countUnreadByUserIds(@Param("userIds") Collection<String> userIds);
+
+    // Mark all of a user's unread notifications as read with one UPDATE, without loading them.
+    // Returns how many were marked.
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Notification n SET n.isRead = true WHERE n.userId = :userId AND n.isRead = false")
+    int markAllAsReadByUserId(@Param("userId") String userId);
+
+    // Delete all notifications for a user with one DELETE, without loading them first
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM Notification n WHERE n.userId = :userId")
+    int deleteByUserId(@Param("userId") String userId);
 }
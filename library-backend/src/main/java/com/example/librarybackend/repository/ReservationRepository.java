@@ -1,10 +1,65 @@
 package com.example.librarybackend.repository;
 
+import com.example.librarybackend.dto.ReservationResponse;
 import com.example.librarybackend.model.Reservation;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface ReservationRepository extends JpaRepository<Reservation, Integer> {
     // JpaRepository provides all the necessary methods (findAll, save, deleteById, etc.)
-}
\ No newline at end of file
+
+    // Reservations are served first come, first served: a book's queue is ordered by
+    // reservation date, with the id breaking ties between reservations made in the same instant.
+
+    // Every reservation as a flat DTO, grouped by book and in queue order within each book,
+    // so the caller can number the queue positions in one pass
+    @Query("SELECT new com.example.librarybackend.dto.ReservationResponse(" +
+            "r.id, b.id, b.title, s.id, s.name, r.reservationDate) " +
+            "FROM Reservation r JOIN r.book b JOIN r.student s " +
+            "ORDER BY b.id ASC, r.reservationDate ASC, r.id ASC")
+    List<ReservationResponse> findAllResponsesInQueueOrder();
+
+    // Reservations changed in the (since, upTo] version range, for the change feed.
+    // No queue positions: deleting one reservation moves the others up without changing them.
+    @Query("SELECT new com.example.librarybackend.dto.ReservationResponse(" +
+            "r.id, b.id, b.title, s.id, s.name, r.reservationDate) " +
+            "FROM Reservation r JOIN r.book b JOIN r.student s " +
+            "WHERE r.changeVersion > :since AND r.changeVersion <= :upTo " +
+            "ORDER BY r.changeVersion ASC")
+    List<ReservationResponse> findResponsesChangedBetween(@Param("since") long since, @Param("upTo") long upTo);
+
+    // The waiting queue for one book, head first. Reads only this book's slice of
+    // idx_reservations_book_date, so the cost is the length of the queue.
+    @Query("SELECT new com.example.librarybackend.dto.ReservationResponse(" +
+            "r.id, b.id, b.title, s.id, s.name, r.reservationDate) " +
+            "FROM Reservation r JOIN r.book b JOIN r.student s " +
+            "WHERE b.id = :bookId " +
+            "ORDER BY r.reservationDate ASC, r.id ASC")
+    List<ReservationResponse> findQueueForBook(@Param("bookId") String bookId);
+
+    // One student's reservations with their place in each book's queue.
+    // The position is the number of reservations for the same book ahead of this one, plus one.
+    @Query("SELECT new com.example.librarybackend.dto.ReservationResponse(" +
+            "r.id, b.id, b.title, s.id, s.name, r.reservationDate, " +
+            "(SELECT COUNT(r2) + 1 FROM Reservation r2 " +
+            " WHERE r2.book = r.book " +
+            " AND (r2.reservationDate < r.reservationDate " +
+            "      OR (r2.reservationDate = r.reservationDate AND r2.id < r.id)))) " +
+            "FROM Reservation r JOIN r.book b JOIN r.student s " +
+            "WHERE s.id = :studentId " +
+            "ORDER BY r.reservationDate ASC, r.id ASC")
+    List<ReservationResponse> findByStudentWithQueuePosition(@Param("studentId") String studentId);
+
+    // Length of a book's queue
+    long countByBookId(String bookId);
+
+    // Used to stop a student from joining the same book's queue twice (uk_reservations_book_student
+    // rejects a second row anyway)
+    Optional<Reservation> findFirstByBookIdAndStudentId(String bookId, String studentId);
+}
@@ -0,0 +1,44 @@
+package com.example.librarybackend.repository;
+
+import com.example.librarybackend.model.StoredImage;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface StoredImageRepository extends JpaRepository<StoredImage, String> {
+
+    // Add delta to an image's reference count in one UPDATE (never below zero)
+    @Transactional
+    @Modifying
+    @Query("UPDATE StoredImage i SET i.refCount = i.refCount + :delta " +
+            "WHERE i.filename = :filename AND i.refCount + :delta >= 0")
+    int adjustRefCount(@Param("filename") String filename, @Param("delta") int delta);
+
+    // Set an image's createdAt, which the orphan sweep measures its grace period from
+    @Transactional
+    @Modifying
+    @Query("UPDATE StoredImage i SET i.createdAt = :now WHERE i.filename = :filename")
+    int touch(@Param("filename") String filename, @Param("now") LocalDateTime now);
+
+    // Recount references from the books table, for writes that don't know the old imagePath
+    // (bulk import) and as a safety net before an image is deleted
+    @Transactional
+    @Modifying
+    @Query("UPDATE StoredImage i SET i.refCount = " +
+            "(SELECT COUNT(b) FROM Book b WHERE b.imagePath = i.filename) " +
+            "WHERE i.filename IN :filenames")
+    int recount(@Param("filenames") Collection<String> filenames);
+
+    // Unreferenced images uploaded before the given time, oldest first
+    List<StoredImage> findByRefCountAndCreatedAtBeforeOrderByCreatedAtAsc(int refCount, LocalDateTime before,
+                                                                          Limit limit);
+}
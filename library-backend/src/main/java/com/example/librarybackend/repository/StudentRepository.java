@@ -2,8 +2,11 @@ package com.example.librarybackend.repository;
 
 import com.example.librarybackend.model.Student;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -15,4 +18,8 @@ public interface StudentRepository extends JpaRepository<Student, String> {
     //Returns Optional<Student> (may or may not find a student)
     //Method naming convention: findBy + FieldName
     Optional<Student> findByEmail(String email);
-}
\ No newline at end of file
+
+    // Students changed in the (since, upTo] version range, for the change feed
+    @Query("SELECT s FROM Student s WHERE s.changeVersion > :since AND s.changeVersion <= :upTo ORDER BY s.changeVersion")
+    List<Student> findChangedBetween(@Param("since") long since, @Param("upTo") long upTo);
+}
@@ -1,11 +1,140 @@
 package com.example.librarybackend.repository;
 
+import com.example.librarybackend.dto.CirculationRow;
+import com.example.librarybackend.dto.LoanRow;
+import com.example.librarybackend.dto.OverdueLoanRow;
+import com.example.librarybackend.dto.TransactionResponse;
 import com.example.librarybackend.model.Transaction;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Integer> {
-    // We don't need any custom methods for now. JpaRepository gives us everything.
     // The <Transaction, Integer> specifies the entity and its primary key type.
-}
\ No newline at end of file
+
+    // Load a transaction and lock its row until the surrounding DB transaction ends,
+    // so the same loan can't be returned twice by two concurrent requests
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM Transaction t WHERE t.id = :id")
+    Optional<Transaction> findByIdForUpdate(@Param("id") Integer id);
+
+    // Batch version of findByIdForUpdate: locks the loans in id order with one SELECT of the
+    // transactions table alone. No join, so no book or student row is locked with them: the batch
+    // return locks its books separately, in id order like everything else that locks books.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT new com.example.librarybackend.dto.LoanRow(" +
+            "t.id, t.book.id, t.student.id, t.issueDate, t.dueDate, t.returnDate) " +
+            "FROM Transaction t WHERE t.id IN :ids ORDER BY t.id")
+    List<LoanRow> findAllByIdForUpdate(@Param("ids") Collection<Integer> ids);
+
+    // Every transaction as a flat TransactionResponse, built by one joined SELECT of just the
+    // columns the DTO needs - no Transaction/Book/Student entities are loaded
+    @Query("SELECT new com.example.librarybackend.dto.TransactionResponse(" +
+            "t.id, b.id, b.title, s.id, s.name, t.issueDate, t.dueDate, t.returnDate, t.finePaid) " +
+            "FROM Transaction t JOIN t.book b JOIN t.student s " +
+            "ORDER BY t.id ASC")
+    List<TransactionResponse> findAllResponses();
+
+    // Transactions changed in the (since, upTo] version range, for the change feed
+    @Query("SELECT new com.example.librarybackend.dto.TransactionResponse(" +
+            "t.id, b.id, b.title, s.id, s.name, t.issueDate, t.dueDate, t.returnDate, t.finePaid) " +
+            "FROM Transaction t JOIN t.book b JOIN t.student s " +
+            "WHERE t.changeVersion > :since AND t.changeVersion <= :upTo " +
+            "ORDER BY t.changeVersion ASC")
+    List<TransactionResponse> findResponsesChangedBetween(@Param("since") long since, @Param("upTo") long upTo);
+
+    // One page of transactions, newest first, as flat DTOs. Keyset pagination on id:
+    // pass the last id of the previous page as beforeId. Null parameters mean "no filter".
+    //  - returned: true = returned only, false = still on loan only
+    //  - dueBefore: only loans whose due date is before this (used for "overdue")
+    //  - from/to: issue date range, from inclusive, to exclusive
+    @Query("SELECT new com.example.librarybackend.dto.TransactionResponse(" +
+            "t.id, b.id, b.title, s.id, s.name, t.issueDate, t.dueDate, t.returnDate, t.finePaid) " +
+            "FROM Transaction t JOIN t.book b JOIN t.student s " +
+            "WHERE (:beforeId IS NULL OR t.id < :beforeId) " +
+            "AND (:studentId IS NULL OR s.id = :studentId) " +
+            "AND (:returned IS NULL " +
+            "     OR (:returned = true AND t.returnDate IS NOT NULL) " +
+            "     OR (:returned = false AND t.returnDate IS NULL)) " +
+            "AND (:dueBefore IS NULL OR t.dueDate < :dueBefore) " +
+            "AND (:from IS NULL OR t.issueDate >= :from) " +
+            "AND (:to IS NULL OR t.issueDate < :to) " +
+            "ORDER BY t.id DESC")
+    List<TransactionResponse> findResponsePage(@Param("beforeId") Integer beforeId,
+                                               @Param("studentId") String studentId,
+                                               @Param("returned") Boolean returned,
+                                               @Param("dueBefore") LocalDateTime dueBefore,
+                                               @Param("from") LocalDateTime from,
+                                               @Param("to") LocalDateTime to,
+                                               Limit limit);
+
+    // One page of open loans, newest first: the librarian's "on loan" list. Kept apart from
+    // findResponsePage, whose catch-all filters leave the database no index to use; this one
+    // walks idx_transactions_return_id backwards from beforeId and stops after limit rows.
+    @Query("SELECT new com.example.librarybackend.dto.TransactionResponse(" +
+            "t.id, b.id, b.title, s.id, s.name, t.issueDate, t.dueDate, t.returnDate, t.finePaid) " +
+            "FROM Transaction t JOIN t.book b JOIN t.student s " +
+            "WHERE t.returnDate IS NULL AND t.id < :beforeId " +
+            "ORDER BY t.id DESC")
+    List<TransactionResponse> findOpenResponsePage(@Param("beforeId") int beforeId, Limit limit);
+
+    // One page of open loans due before dueBefore, newest first: the "overdue" list. Same index;
+    // the due date is in it too, so loans that aren't due yet are skipped without reading their rows.
+    @Query("SELECT new com.example.librarybackend.dto.TransactionResponse(" +
+            "t.id, b.id, b.title, s.id, s.name, t.issueDate, t.dueDate, t.returnDate, t.finePaid) " +
+            "FROM Transaction t JOIN t.book b JOIN t.student s " +
+            "WHERE t.returnDate IS NULL AND t.id < :beforeId AND t.dueDate < :dueBefore " +
+            "ORDER BY t.id DESC")
+    List<TransactionResponse> findOverdueResponsePage(@Param("beforeId") int beforeId,
+                                                      @Param("dueBefore") LocalDateTime dueBefore,
+                                                      Limit limit);
+
+    // Books currently on loan (not yet returned)
+    long countByReturnDateIsNull();
+
+    // Books on loan whose due date has already passed
+    long countByReturnDateIsNullAndDueDateBefore(LocalDateTime now);
+
+    // Highest transaction id so far (0 if there are none)
+    @Query("SELECT COALESCE(MAX(t.id), 0) FROM Transaction t")
+    int findMaxId();
+
+    // One chunk of transactions with id in (afterId, maxId], joined to the genre and cohort
+    // they are rolled up by. Walks the primary key, so each chunk costs the same however deep we are.
+    @Query("SELECT new com.example.librarybackend.dto.CirculationRow(" +
+            "t.id, t.issueDate, t.dueDate, t.returnDate, t.finePaid, b.genre, s.cohort) " +
+            "FROM Transaction t JOIN t.book b JOIN t.student s " +
+            "WHERE t.id > :afterId AND t.id <= :maxId " +
+            "ORDER BY t.id ASC")
+    List<CirculationRow> findCirculationRows(@Param("afterId") int afterId,
+                                             @Param("maxId") int maxId,
+                                             Limit limit);
+
+    // One chunk of open loans that fell due in (after, until], ordered by (dueDate, id).
+    // (afterDue, afterId) is the keyset position of the previous chunk. Served by the
+    // idx_transactions_return_due index: return_date IS NULL, then a range on due_date.
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.example.librarybackend.dto.OverdueLoanRow(t.id, t.dueDate, b.id, b.title, s.id) " +
+            "FROM Transaction t JOIN t.book b JOIN t.student s " +
+            "WHERE t.returnDate IS NULL " +
+            "AND t.dueDate <= :until " +
+            "AND (t.dueDate > :afterDue OR (t.dueDate = :afterDue AND t.id > :afterId)) " +
+            "ORDER BY t.dueDate ASC, t.id ASC")
+    List<OverdueLoanRow> findOverdueLoans(@Param("afterDue") LocalDateTime afterDue,
+                                          @Param("afterId") int afterId,
+                                          @Param("until") LocalDateTime until,
+                                          Limit limit);
+}
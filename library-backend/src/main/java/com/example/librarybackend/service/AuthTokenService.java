@@ -0,0 +1,296 @@
+package com.example.librarybackend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Issues and checks the signed tokens that identify a logged-in user on later requests.
+ *
+ * A token is "keyId.claims.signature": the claims (role, issued-at, expiry, token id and user id)
+ * are Base64url text, and the signature is an HMAC-SHA256 of the key id and the claims. Checking a
+ * token needs no database or cache lookup, only the signing keys and the revocation list, which
+ * are both in memory.
+ *
+ * Keys come from library.auth.token-keys as "id:base64-secret" pairs. The first key signs and the
+ * others are still accepted, so a key is rotated by putting a new one first and dropping the old
+ * one once its tokens have expired. Every instance behind a load balancer needs the same list.
+ * Without configured keys a random key is generated at startup and replaced every
+ * key-rotation-interval. A replaced key keeps verifying until the tokens it signed have expired.
+ * Tokens signed with generated keys do not survive a restart.
+ *
+ * A revoked token (logout) is remembered by this instance until it would have expired anyway, up
+ * to max-revoked-tokens entries. Past that, the oldest revocation is dropped and every token issued
+ * at or before it is rejected instead. That logs out a few more users, but never lets a revoked
+ * token back in.
+ */
+@Service
+public class AuthTokenService {
+
+    public static final String ROLE_LIBRARIAN = "librarian";
+    public static final String ROLE_STUDENT = "student";
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int MIN_KEY_BYTES = 32;
+    private static final int TOKEN_ID_BYTES = 12;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private static final Logger log = LoggerFactory.getLogger(AuthTokenService.class);
+
+    private final SecureRandom random = new SecureRandom();
+    private final Duration ttl;
+    private final Duration rotationInterval;
+    private final int maxRevoked;
+    private final boolean generatedKeys;
+
+    // Newest first; the first key signs new tokens
+    private volatile List<SigningKey> keys;
+
+    // Revoked token id -> expiry (epoch seconds), plus the order they were revoked in (guarded by this)
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+    private final Deque<TokenClaims> revocationOrder = new ArrayDeque<>();
+    // Tokens issued at or before this second are rejected; raised when a revocation has to be dropped
+    private volatile long rejectIssuedUpTo = Long.MIN_VALUE;
+
+    public AuthTokenService(@Value("${library.auth.token-keys:}") String configuredKeys,
+                            @Value("${library.auth.token-ttl:PT8H}") Duration ttl,
+                            @Value("${library.auth.key-rotation-interval:P1D}") Duration rotationInterval,
+                            @Value("${library.auth.max-revoked-tokens:100000}") int maxRevoked) {
+        this.ttl = ttl;
+        this.rotationInterval = rotationInterval;
+        this.maxRevoked = maxRevoked;
+        this.generatedKeys = configuredKeys.isBlank();
+        this.keys = generatedKeys ? List.of(generateKey(Instant.now())) : parseKeys(configuredKeys);
+        if (generatedKeys) {
+            log.info("No library.auth.token-keys configured; signing tokens with a generated key, rotated every {}", rotationInterval);
+        }
+    }
+
+    // A new token for this user, valid for the configured time to live
+    public TokenClaims issue(String userId, String role) {
+        SigningKey key = keys.get(0);
+        long issuedAt = Instant.now().getEpochSecond();
+        byte[] tokenId = new byte[TOKEN_ID_BYTES];
+        random.nextBytes(tokenId);
+        TokenClaims claims = new TokenClaims(null, userId, role, ENCODER.encodeToString(tokenId),
+                issuedAt, issuedAt + ttl.toSeconds());
+
+        String payload = ENCODER.encodeToString(String.join("|", claims.role, Long.toString(claims.issuedAt),
+                Long.toString(claims.expiresAt), claims.tokenId, claims.userId).getBytes(StandardCharsets.UTF_8));
+        String signed = key.id + "." + payload;
+        String token = signed + "." + ENCODER.encodeToString(key.sign(signed));
+        return new TokenClaims(token, claims.userId, claims.role, claims.tokenId, claims.issuedAt, claims.expiresAt);
+    }
+
+    // The token's claims if its signature checks out and it is neither expired nor revoked
+    public Optional<TokenClaims> verify(String token) {
+        int firstDot = token.indexOf('.');
+        int lastDot = token.lastIndexOf('.');
+        if (firstDot <= 0 || lastDot == firstDot) {
+            return Optional.empty();
+        }
+        SigningKey key = findKey(token.substring(0, firstDot));
+        if (key == null) {
+            return Optional.empty(); // Unknown or retired key
+        }
+
+        String signed = token.substring(0, lastDot);
+        try {
+            byte[] signature = DECODER.decode(token.substring(lastDot + 1));
+            if (!MessageDigest.isEqual(signature, key.sign(signed))) {
+                return Optional.empty();
+            }
+            String[] fields = new String(DECODER.decode(signed.substring(firstDot + 1)), StandardCharsets.UTF_8)
+                    .split("\\|", 5);
+            if (fields.length != 5) {
+                return Optional.empty();
+            }
+            TokenClaims claims = new TokenClaims(token, fields[4], fields[0], fields[3],
+                    Long.parseLong(fields[1]), Long.parseLong(fields[2]));
+            if (claims.expiresAt <= Instant.now().getEpochSecond()
+                    || claims.issuedAt <= rejectIssuedUpTo
+                    || revoked.containsKey(claims.tokenId)) {
+                return Optional.empty();
+            }
+            return Optional.of(claims);
+        } catch (IllegalArgumentException e) {
+            return Optional.empty(); // Not Base64, or not a number where one belongs
+        }
+    }
+
+    // Rejects this token from now on, e.g. on logout
+    public synchronized void revoke(TokenClaims claims) {
+        long now = Instant.now().getEpochSecond();
+        if (claims.expiresAt <= now || revoked.putIfAbsent(claims.tokenId, claims.expiresAt) != null) {
+            return;
+        }
+        revocationOrder.addLast(claims);
+        if (revocationOrder.size() > maxRevoked) {
+            purgeExpiredRevocations(now);
+        }
+        while (revocationOrder.size() > maxRevoked) {
+            TokenClaims dropped = revocationOrder.removeFirst();
+            revoked.remove(dropped.tokenId);
+            rejectIssuedUpTo = Math.max(rejectIssuedUpTo, dropped.issuedAt);
+        }
+    }
+
+    public int getRevokedCount() {
+        return revoked.size();
+    }
+
+    // Forgets revocations of tokens that have expired anyway, rotates a generated key that has
+    // been signing for longer than the rotation interval, and drops keys whose tokens have all expired
+    @Scheduled(fixedDelayString = "${library.auth.maintenance-interval-ms:60000}")
+    public void maintain() {
+        Instant now = Instant.now();
+        synchronized (this) {
+            purgeExpiredRevocations(now.getEpochSecond());
+        }
+        if (!generatedKeys) {
+            return;
+        }
+
+        List<SigningKey> current = keys;
+        List<SigningKey> next = new ArrayList<>(current.size() + 1);
+        if (current.get(0).createdAt.plus(rotationInterval).isBefore(now)) {
+            next.add(generateKey(now));
+            log.info("Rotated the token signing key");
+        }
+        // A key stopped signing when the key in front of it was created
+        Instant replacedAt = next.isEmpty() ? null : now;
+        for (SigningKey key : current) {
+            if (replacedAt == null || replacedAt.plus(ttl).isAfter(now)) {
+                next.add(key);
+            }
+            replacedAt = key.createdAt;
+        }
+        if (next.size() != current.size() || next.get(0) != current.get(0)) {
+            keys = List.copyOf(next);
+        }
+    }
+
+    // Helper methods
+
+    private SigningKey findKey(String id) {
+        for (SigningKey key : keys) {
+            if (key.id.equals(id)) {
+                return key;
+            }
+        }
+        return null;
+    }
+
+    private void purgeExpiredRevocations(long now) {
+        revocationOrder.removeIf(claims -> {
+            if (claims.expiresAt <= now) {
+                revoked.remove(claims.tokenId);
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private SigningKey generateKey(Instant createdAt) {
+        byte[] secret = new byte[MIN_KEY_BYTES];
+        random.nextBytes(secret);
+        return new SigningKey("g" + Long.toString(createdAt.toEpochMilli(), 36), secret, createdAt);
+    }
+
+    private static List<SigningKey> parseKeys(String configured) {
+        List<SigningKey> parsed = new ArrayList<>();
+        for (String entry : configured.split(",")) {
+            String[] parts = entry.trim().split(":", 2);
+            if (parts.length != 2 || parts[0].isBlank() || parts[0].contains(".")) {
+                throw new IllegalStateException("library.auth.token-keys entries must look like id:base64-secret (no dots in the id)");
+            }
+            byte[] secret = Base64.getDecoder().decode(parts[1].trim());
+            if (secret.length < MIN_KEY_BYTES) {
+                throw new IllegalStateException("Token key " + parts[0] + " is shorter than " + MIN_KEY_BYTES + " bytes");
+            }
+            parsed.add(new SigningKey(parts[0].trim(), secret, Instant.EPOCH));
+        }
+        return List.copyOf(parsed);
+    }
+
+    private static final class SigningKey {
+        private final String id;
+        private final SecretKeySpec secret;
+        private final Instant createdAt;
+
+        SigningKey(String id, byte[] secret, Instant createdAt) {
+            this.id = id;
+            this.secret = new SecretKeySpec(secret, HMAC_ALGORITHM);
+            this.createdAt = createdAt;
+        }
+
+        byte[] sign(String data) {
+            try {
+                Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+                mac.init(secret);
+                return mac.doFinal(data.getBytes(StandardCharsets.US_ASCII));
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC-SHA256 is not available", e);
+            }
+        }
+    }
+
+    // What a valid token says about its holder, and the token itself
+    public static final class TokenClaims {
+        private final String token;
+        private final String userId;
+        private final String role;
+        private final String tokenId;
+        private final long issuedAt;
+        private final long expiresAt;
+
+        TokenClaims(String token, String userId, String role, String tokenId, long issuedAt, long expiresAt) {
+            this.token = token;
+            this.userId = userId;
+            this.role = role;
+            this.tokenId = tokenId;
+            this.issuedAt = issuedAt;
+            this.expiresAt = expiresAt;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public String getRole() {
+            return role;
+        }
+
+        public boolean isLibrarian() {
+            return ROLE_LIBRARIAN.equals(role);
+        }
+
+        public Instant getExpiresAt() {
+            return Instant.ofEpochSecond(expiresAt);
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package com.example.librarybackend.service;
+
+import com.example.librarybackend.model.StoredImage;
+import com.example.librarybackend.repository.BookRepository;
+import com.example.librarybackend.repository.StoredImageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stores book cover uploads and the pre-sized copies the catalog actually displays.
+ *
+ * Uploads are content-addressed: the file is hashed (SHA-256) while it streams to disk and
+ * stored as {hash}.{ext}, so identical covers are kept once however often they are uploaded.
+ * stored_images counts how many books point at each image; images that no book uses are
+ * deleted by a daily sweep once they are older than a grace period (an upload comes before
+ * the book that uses it is saved).
+ *
+ * Next to every original in uploads/books there is a thumbnail (uploads/books/thumb) and a
+ * medium copy (uploads/books/medium), both JPEG and a few KB to a few tens of KB. They are made
+ * right after the upload, or on first request for covers uploaded before derivatives existed.
+ * A derivative is written to a temporary file and moved into place, so a concurrent request
+ * never sees half an image.
+ */
+@Service
+public class BookImageService {
+
+    public static final String SIZE_ORIGINAL = "original";
+    public static final String SIZE_THUMB = "thumb";
+    public static final String SIZE_MEDIUM = "medium";
+
+    // {64 hex digits}.{ext}: names given to content-addressed uploads
+    private static final Pattern HASHED_NAME = Pattern.compile("([0-9a-f]{64})\\.(jpg|png)");
+
+    // Width in pixels of each derivative; the height follows the aspect ratio
+    private static final Map<String, Integer> WIDTHS = Map.of(SIZE_THUMB, 160, SIZE_MEDIUM, 480);
+    private static final float JPEG_QUALITY = 0.82f;
+    private static final int ORPHAN_SWEEP_BATCH = 500;
+
+    private static final Logger log = LoggerFactory.getLogger(BookImageService.class);
+
+    private final Path uploadDir;
+
+    @Autowired
+    private StoredImageRepository storedImageRepository;
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Value("${library.images.orphan-grace-period:P1D}")
+    private Duration orphanGracePeriod;
+
+    public BookImageService(@Value("${library.images.upload-dir:uploads/books}") String uploadDir) {
+        this.uploadDir = Paths.get(uploadDir).toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(this.uploadDir);
+            for (String size : WIDTHS.keySet()) {
+                Files.createDirectories(this.uploadDir.resolve(size));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create upload directory!", e);
+        }
+    }
+
+    public Path getUploadDir() {
+        return uploadDir;
+    }
+
+    // Save an upload under the hash of its content and return the stored filename.
+    // If the same image is already stored, the new copy is simply discarded.
+    // Derivatives are not made here; call createDerivatives once the upload is accepted.
+    public String store(InputStream in, String contentType) throws IOException {
+        String extension = MediaType.IMAGE_PNG_VALUE.equals(contentType) ? ".png" : ".jpg";
+        Path temp = Files.createTempFile(uploadDir, ".upload-", extension);
+        try {
+            MessageDigest digest = newSha256();
+            long size;
+            try (InputStream hashing = new DigestInputStream(in, digest)) {
+                size = Files.copy(hashing, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String filename = HexFormat.of().formatHex(digest.digest()) + extension;
+            Path target = uploadDir.resolve(filename);
+
+            if (!Files.exists(target)) {
+                // Identical bytes under an identical name, so a concurrent upload of the same image
+                // replacing this one (or the other way round) is harmless
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            // Restart the grace period too: an unused image that is uploaded again is about to be used
+            if (storedImageRepository.touch(filename, LocalDateTime.now()) == 0) {
+                StoredImage image = new StoredImage();
+                image.setFilename(filename);
+                image.setContentType(contentTypeOf(target).toString());
+                image.setSizeBytes(size);
+                image.setCreatedAt(LocalDateTime.now());
+                try {
+                    storedImageRepository.save(image);
+                } catch (DataIntegrityViolationException e) {
+                    // Registered by a concurrent upload of the same image
+                }
+            }
+            return filename;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // A book's imagePath changed from oldFilename to newFilename (either may be null)
+    public void onReferenceChanged(String oldFilename, String newFilename) {
+        if (Objects.equals(oldFilename, newFilename)) {
+            return;
+        }
+        if (oldFilename != null) {
+            storedImageRepository.adjustRefCount(oldFilename, -1);
+        }
+        if (newFilename != null) {
+            storedImageRepository.adjustRefCount(newFilename, 1);
+        }
+    }
+
+    // Recount the references of these images from the books table
+    public void recountReferences(Collection<String> filenames) {
+        if (!filenames.isEmpty()) {
+            storedImageRepository.recount(filenames);
+        }
+    }
+
+    // How many books use an image right now, straight from the books table
+    public long countReferences(String filename) {
+        return bookRepository.countByImagePath(filename);
+    }
+
+    // Remove an image, its derivatives and its stored_images row. Returns false if there was no such image.
+    public boolean delete(String filename) throws IOException {
+        Path original = uploadDir.resolve(filename).normalize();
+        if (!original.getParent().equals(uploadDir)) {
+            return false;
+        }
+        boolean existed = Files.deleteIfExists(original);
+        deleteDerivatives(filename);
+        if (storedImageRepository.existsById(filename)) {
+            storedImageRepository.deleteById(filename);
+            existed = true;
+        }
+        return existed;
+    }
+
+    // Delete images that no book has used for at least the grace period.
+    // The count is re-checked against the books table first, so a drifted counter can't lose a cover.
+    @Scheduled(fixedDelayString = "${library.images.orphan-sweep-interval-ms:86400000}",
+            initialDelayString = "${library.images.orphan-sweep-initial-delay-ms:900000}")
+    public void sweepOrphans() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(orphanGracePeriod);
+        int deleted = 0;
+        try {
+            List<StoredImage> candidates;
+            do {
+                candidates = storedImageRepository.findByRefCountAndCreatedAtBeforeOrderByCreatedAtAsc(
+                        0, cutoff, Limit.of(ORPHAN_SWEEP_BATCH));
+                List<String> stillUsed = new ArrayList<>();
+                for (StoredImage image : candidates) {
+                    if (countReferences(image.getFilename()) > 0) {
+                        stillUsed.add(image.getFilename());
+                    } else if (delete(image.getFilename())) {
+                        deleted++;
+                    }
+                }
+                recountReferences(stillUsed);
+                if (stillUsed.size() == candidates.size()) {
+                    break; // Everything left is in use; the recount took it off the candidate list
+                }
+            } while (candidates.size() == ORPHAN_SWEEP_BATCH);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not finish the orphaned image sweep: {}", e.getMessage());
+        }
+        if (deleted > 0) {
+            log.info("Deleted {} cover images no book uses", deleted);
+        }
+    }
+
+    public static boolean isKnownSize(String size) {
+        return SIZE_ORIGINAL.equals(size) || WIDTHS.containsKey(size);
+    }
+
+    // Make all derivatives of a freshly uploaded image. A failure only means they are
+    // retried on first request, so it is logged rather than reported to the uploader.
+    public void createDerivatives(String filename) {
+        for (String size : WIDTHS.keySet()) {
+            try {
+                resolve(filename, size);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not create {} image for {}: {}", size, filename, e.getMessage());
+            }
+        }
+    }
+
+    // The file to serve for an image in the given size, creating the derivative if needed.
+    // Empty if the original doesn't exist (or the name tries to leave the upload directory).
+    public Optional<Path> resolve(String filename, String size) throws IOException {
+        Path original = uploadDir.resolve(filename).normalize();
+        if (!original.getParent().equals(uploadDir) || !Files.isRegularFile(original)) {
+            return Optional.empty();
+        }
+        if (SIZE_ORIGINAL.equals(size)) {
+            return Optional.of(original);
+        }
+
+        Path derivative = derivativePath(filename, size);
+        if (!Files.exists(derivative)) {
+            writeDerivative(original, derivative, WIDTHS.get(size));
+        }
+        return Optional.of(derivative);
+    }
+
+    public void deleteDerivatives(String filename) throws IOException {
+        for (String size : WIDTHS.keySet()) {
+            Files.deleteIfExists(derivativePath(filename, size));
+        }
+    }
+
+    // Strong validator for one size of an image. For content-addressed uploads the name already
+    // is the content hash (derivatives are computed from it deterministically), so nothing has
+    // to be read. Older uploads fall back to the file's size and modification time: files are
+    // never rewritten in place, so that changes whenever the bytes do.
+    public String etagOf(String filename, String size, Path file) throws IOException {
+        Matcher hashed = HASHED_NAME.matcher(filename);
+        if (hashed.matches()) {
+            return "\"" + hashed.group(1) + (SIZE_ORIGINAL.equals(size) ? "" : "-" + size) + "\"";
+        }
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        return "\"" + Long.toHexString(attributes.lastModifiedTime().toMillis()) + "-"
+                + Long.toHexString(attributes.size()) + "\"";
+    }
+
+    // Content type from the file extension, so serving doesn't have to sniff the file
+    public MediaType contentTypeOf(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".jpg") || name.endsWith(".jpeg")) {
+            return MediaType.IMAGE_JPEG;
+        }
+        if (name.endsWith(".png")) {
+            return MediaType.IMAGE_PNG;
+        }
+        return MediaType.APPLICATION_OCTET_STREAM;
+    }
+
+    // Helper methods
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); // Every JVM must have it
+        }
+    }
+
+    private Path derivativePath(String filename, String size) {
+        return uploadDir.resolve(size).resolve(filename + ".jpg");
+    }
+
+    private void writeDerivative(Path original, Path target, int width) throws IOException {
+        BufferedImage source = ImageIO.read(original.toFile());
+        if (source == null) {
+            throw new IOException("Not a readable image: " + original.getFileName());
+        }
+        BufferedImage scaled = scaleToWidth(source, Math.min(width, source.getWidth()));
+
+        Path temp = Files.createTempFile(target.getParent(), ".tmp-", ".jpg");
+        try {
+            ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(temp.toFile())) {
+                writer.setOutput(out);
+                ImageWriteParam params = writer.getDefaultWriteParam();
+                params.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                params.setCompressionQuality(JPEG_QUALITY);
+                writer.write(null, new IIOImage(scaled, null, null), params);
+            } finally {
+                writer.dispose();
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Scale down in steps of at most half the size, which looks much better than one big
+    // bilinear step. Transparent areas of PNGs become white, since JPEG has no alpha.
+    private BufferedImage scaleToWidth(BufferedImage source, int width) {
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            int nextWidth = Math.max(width, currentWidth / 2);
+            int nextHeight = Math.max(1, (int) Math.round((double) source.getHeight() * nextWidth / source.getWidth()));
+            BufferedImage next = new BufferedImage(nextWidth, nextHeight, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, nextWidth, nextHeight);
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, nextWidth, nextHeight, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+            currentWidth = nextWidth;
+            currentHeight = nextHeight;
+        } while (currentWidth > width);
+        return current;
+    }
+}
@@ -0,0 +1,528 @@
+package com.example.librarybackend.service;
+
+import com.example.librarybackend.model.Book;
+import com.example.librarybackend.repository.BookRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over the book catalog, used by GET /api/books/search.
+ *
+ * Title, author, genre and ISBN are split into lower-case terms. Each term points at the books
+ * it appears in, together with the fields it appeared in, so a title hit can rank above a genre
+ * hit. Every query word may match a term exactly, as a prefix (for typeahead), or within one
+ * typo. Typos are found through a table of "term minus one letter" variants rather than by
+ * comparing against every term, so a lookup only touches a handful of candidates.
+ *
+ * The index is built from the database once the application has started, and then kept in step
+ * by the controllers that change books. Searches never go to the database. A change made inside a
+ * DB transaction reaches the index only once that transaction commits, so searches never show a
+ * book (or a copy count) that was rolled back.
+ */
+@Service
+public class BookSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(BookSearchIndex.class);
+
+    // Which field a term was found in (bit flags, a term can be in several)
+    private static final int FIELD_ID = 1;
+    private static final int FIELD_TITLE = 2;
+    private static final int FIELD_AUTHOR = 4;
+    private static final int FIELD_GENRE = 8;
+
+    // How much each kind of match is worth; multiplied by the field weight
+    private static final double EXACT_MATCH = 1.0;
+    private static final double PREFIX_MATCH = 0.6;
+    private static final double FUZZY_MATCH = 0.4;
+
+    // Prefix matching starts at this many letters, and expands to at most this many terms
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    // Shorter words are too ambiguous to correct ("cat" is one letter away from dozens of words)
+    private static final int MIN_FUZZY_LENGTH = 4;
+
+    private static final int REBUILD_PAGE_SIZE = 1000;
+
+    // Anything that isn't a letter or a digit separates words
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Index index = new Index();
+
+    // Changes made while a rebuild is running; replayed on the new index before it goes live
+    private List<Consumer<Index>> changesDuringRebuild;
+
+    // Load every book from the database into a fresh index, then swap it in.
+    // Searches keep using the old index until the new one is complete.
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long started = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Index fresh = new Index();
+        try {
+            // Walk the catalog with the keyset query so only one page is in memory at a time
+            String afterId = null;
+            List<Book> page;
+            do {
+                page = bookRepository.findPage(afterId, null, null, null, Limit.of(REBUILD_PAGE_SIZE));
+                for (Book book : page) {
+                    fresh.add(copyOf(book));
+                }
+                if (!page.isEmpty()) {
+                    afterId = page.get(page.size() - 1).getId();
+                }
+            } while (page.size() == REBUILD_PAGE_SIZE);
+        } catch (RuntimeException e) {
+            log.error("Could not build the book search index", e);
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild.forEach(change -> change.accept(fresh));
+            changesDuringRebuild = null;
+            index = fresh;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Book search index built: {} books, {} terms in {} ms",
+                fresh.books.size(), fresh.postings.size(), System.currentTimeMillis() - started);
+    }
+
+    // Add a new book, or re-index an existing one after it changed
+    public void put(Book book) {
+        Book snapshot = copyOf(book);
+        apply(index -> {
+            index.remove(snapshot.getId());
+            index.add(snapshot);
+        });
+    }
+
+    public void remove(String bookId) {
+        apply(index -> index.remove(bookId));
+    }
+
+    // Best matches for a free-text query, highest score first.
+    // Every word of the query has to match the book somewhere.
+    public List<Book> search(String query, int limit) {
+        List<String> words = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (words.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            return index.search(words, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void apply(Consumer<Index> change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyNow(change);
+                }
+            });
+        } else {
+            applyNow(change);
+        }
+    }
+
+    private void applyNow(Consumer<Index> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(index);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Helper methods
+
+    // Lower-case words made of letters and digits; "Harry Potter & the Goblet" -> harry, potter, the, goblet
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : NON_WORD.split(text.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    // Every way of removing exactly one letter from a term
+    private static List<String> deletesOf(String term) {
+        List<String> deletes = new ArrayList<>(term.length());
+        for (int i = 0; i < term.length(); i++) {
+            deletes.add(term.substring(0, i) + term.substring(i + 1));
+        }
+        return deletes;
+    }
+
+    // True if the two terms differ by at most one insertion, deletion, substitution
+    // or swap of two neighbouring letters
+    private static boolean withinOneEdit(String a, String b) {
+        int lengthDiff = a.length() - b.length();
+        if (Math.abs(lengthDiff) > 1) {
+            return false;
+        }
+        if (lengthDiff == 0) {
+            int first = -1;
+            int differences = 0;
+            for (int i = 0; i < a.length(); i++) {
+                if (a.charAt(i) != b.charAt(i)) {
+                    if (++differences > 2) {
+                        return false;
+                    }
+                    if (first < 0) {
+                        first = i;
+                    }
+                }
+            }
+            if (differences <= 1) {
+                return true;
+            }
+            // Two differences are still one edit if they are neighbouring letters swapped
+            return first + 1 < a.length()
+                    && a.charAt(first) == b.charAt(first + 1)
+                    && a.charAt(first + 1) == b.charAt(first)
+                    && a.substring(first + 2).equals(b.substring(first + 2));
+        }
+        String longer = lengthDiff > 0 ? a : b;
+        String shorter = lengthDiff > 0 ? b : a;
+        int i = 0;
+        while (i < shorter.length() && shorter.charAt(i) == longer.charAt(i)) {
+            i++;
+        }
+        return shorter.substring(i).equals(longer.substring(i + 1));
+    }
+
+    private static double fieldWeight(int fields) {
+        if ((fields & FIELD_ID) != 0) return 10;
+        if ((fields & FIELD_TITLE) != 0) return 3;
+        if ((fields & FIELD_AUTHOR) != 0) return 2;
+        return 1;
+    }
+
+    // The index keeps its own copies so later changes to the entity don't leak in unannounced
+    private static Book copyOf(Book book) {
+        Book copy = new Book();
+        copy.setId(book.getId());
+        copy.setTitle(book.getTitle());
+        copy.setAuthor(book.getAuthor());
+        copy.setGenre(book.getGenre());
+        copy.setCopies(book.getCopies());
+        copy.setImagePath(book.getImagePath());
+        return copy;
+    }
+
+    // The books one term appears in. Each book is kept twice: in `fields` for quick membership
+    // lookups, and in the bucket for the best field it appears in, so single-word searches can
+    // walk the highest-scoring hits first and stop as soon as they have enough.
+    private static class Posting {
+        // bookId -> fields the term appears in
+        private final Map<String, Integer> fields = new HashMap<>();
+        // byBestField[0] = ISBN hits, [1] = title, [2] = author, [3] = genre
+        @SuppressWarnings("unchecked")
+        private final Set<String>[] byBestField = new Set[] {
+                new HashSet<String>(), new HashSet<String>(), new HashSet<String>(), new HashSet<String>()};
+
+        void add(String bookId, int bookFields) {
+            Integer previous = fields.put(bookId, bookFields);
+            if (previous != null) {
+                byBestField[bucketOf(previous)].remove(bookId);
+            }
+            byBestField[bucketOf(bookFields)].add(bookId);
+        }
+
+        void remove(String bookId) {
+            Integer previous = fields.remove(bookId);
+            if (previous != null) {
+                byBestField[bucketOf(previous)].remove(bookId);
+            }
+        }
+
+        int size() {
+            return fields.size();
+        }
+
+        private static int bucketOf(int bookFields) {
+            if ((bookFields & FIELD_ID) != 0) return 0;
+            if ((bookFields & FIELD_TITLE) != 0) return 1;
+            if ((bookFields & FIELD_AUTHOR) != 0) return 2;
+            return 3;
+        }
+    }
+
+    // The data structures behind one version of the index. Not thread-safe on its own;
+    // BookSearchIndex guards it with the read/write lock.
+    private static class Index {
+        private static final double[] BUCKET_WEIGHTS = {
+                fieldWeight(FIELD_ID), fieldWeight(FIELD_TITLE), fieldWeight(FIELD_AUTHOR), fieldWeight(FIELD_GENRE)};
+
+        // bookId -> the indexed copy of the book
+        private final Map<String, Book> books = new HashMap<>();
+        // term -> books it appears in. Sorted, so prefixes are a range scan.
+        private final TreeMap<String, Posting> postings = new TreeMap<>();
+        // term with one letter removed -> the terms it came from
+        private final Map<String, Set<String>> deletes = new HashMap<>();
+
+        void add(Book book) {
+            books.put(book.getId(), book);
+            termsOf(book).forEach((term, fields) -> {
+                Posting posting = postings.get(term);
+                if (posting == null) {
+                    posting = new Posting();
+                    postings.put(term, posting);
+                    if (term.length() >= MIN_FUZZY_LENGTH) {
+                        for (String delete : deletesOf(term)) {
+                            deletes.computeIfAbsent(delete, d -> new HashSet<>()).add(term);
+                        }
+                    }
+                }
+                posting.add(book.getId(), fields);
+            });
+        }
+
+        void remove(String bookId) {
+            Book book = books.remove(bookId);
+            if (book == null) {
+                return;
+            }
+            for (String term : termsOf(book).keySet()) {
+                Posting posting = postings.get(term);
+                if (posting == null) {
+                    continue;
+                }
+                posting.remove(bookId);
+                if (posting.size() == 0) {
+                    postings.remove(term);
+                    if (term.length() >= MIN_FUZZY_LENGTH) {
+                        for (String delete : deletesOf(term)) {
+                            Set<String> sources = deletes.get(delete);
+                            if (sources != null && sources.remove(term) && sources.isEmpty()) {
+                                deletes.remove(delete);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        List<Book> search(List<String> words, int limit) {
+            // For every query word, the postings it matches and how much each kind of match is worth
+            List<Map<Posting, Double>> matchesPerWord = new ArrayList<>();
+            for (String word : words) {
+                Map<Posting, Double> matches = matchesFor(word);
+                if (matches.isEmpty()) {
+                    return List.of(); // This word matches nothing, so no book matches every word
+                }
+                matchesPerWord.add(matches);
+            }
+
+            List<String> ranked = matchesPerWord.size() == 1
+                    ? topForOneWord(matchesPerWord.get(0), limit)
+                    : topForManyWords(matchesPerWord, limit);
+
+            List<Book> results = new ArrayList<>(ranked.size());
+            for (String bookId : ranked) {
+                results.add(copyOf(books.get(bookId)));
+            }
+            return results;
+        }
+
+        // A book's score for one word is its best single hit, so walk the (posting, field) buckets
+        // from the highest possible score down. The first `limit` books found can't be beaten by
+        // anything later, which keeps typeahead on very common prefixes cheap.
+        private List<String> topForOneWord(Map<Posting, Double> matches, int limit) {
+            List<Set<String>> buckets = new ArrayList<>();
+            List<Double> bucketScores = new ArrayList<>();
+            matches.forEach((posting, matchWeight) -> {
+                for (int bucket = 0; bucket < BUCKET_WEIGHTS.length; bucket++) {
+                    if (!posting.byBestField[bucket].isEmpty()) {
+                        buckets.add(posting.byBestField[bucket]);
+                        bucketScores.add(matchWeight * BUCKET_WEIGHTS[bucket]);
+                    }
+                }
+            });
+            Integer[] order = new Integer[buckets.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(bucketScores.get(b), bucketScores.get(a)));
+
+            Set<String> ranked = new LinkedHashSet<>();
+            for (int i : order) {
+                for (String bookId : buckets.get(i)) {
+                    ranked.add(bookId);
+                    if (ranked.size() == limit) {
+                        return new ArrayList<>(ranked);
+                    }
+                }
+            }
+            return new ArrayList<>(ranked);
+        }
+
+        // Every word has to match: enumerate the rarest word's books, then look each survivor
+        // up in the other words' postings, adding up the best hit per word
+        private List<String> topForManyWords(List<Map<Posting, Double>> matchesPerWord, int limit) {
+            matchesPerWord.sort(Comparator.comparingInt(Index::estimatedSize));
+
+            Map<String, Double> scores = new HashMap<>();
+            matchesPerWord.get(0).forEach((posting, matchWeight) -> posting.fields.forEach((bookId, fields) ->
+                    scores.merge(bookId, matchWeight * fieldWeight(fields), Math::max)));
+
+            for (int i = 1; i < matchesPerWord.size() && !scores.isEmpty(); i++) {
+                Map<Posting, Double> matches = matchesPerWord.get(i);
+                scores.entrySet().removeIf(entry -> {
+                    double best = 0;
+                    for (Map.Entry<Posting, Double> match : matches.entrySet()) {
+                        Integer fields = match.getKey().fields.get(entry.getKey());
+                        if (fields != null) {
+                            best = Math.max(best, match.getValue() * fieldWeight(fields));
+                        }
+                    }
+                    if (best == 0) {
+                        return true;
+                    }
+                    entry.setValue(entry.getValue() + best);
+                    return false;
+                });
+            }
+
+            // Keep the best `limit` books in a small min-heap instead of sorting every hit
+            Comparator<Map.Entry<String, Double>> ranking = Map.Entry.<String, Double>comparingByValue()
+                    .thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder()));
+            PriorityQueue<Map.Entry<String, Double>> top = new PriorityQueue<>(limit + 1, ranking);
+            for (Map.Entry<String, Double> entry : scores.entrySet()) {
+                top.offer(entry);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+
+            String[] ranked = new String[top.size()];
+            for (int i = ranked.length - 1; i >= 0; i--) {
+                ranked[i] = top.poll().getKey();
+            }
+            return List.of(ranked);
+        }
+
+        // Postings a query word hits: exactly, as a prefix of a longer term, or within one typo
+        private Map<Posting, Double> matchesFor(String word) {
+            // Keyed by identity: a posting's contents change, its identity doesn't
+            Map<Posting, Double> matches = new IdentityHashMap<>();
+
+            Posting exact = postings.get(word);
+            if (exact != null) {
+                matches.put(exact, EXACT_MATCH);
+            }
+
+            if (word.length() >= MIN_PREFIX_LENGTH) {
+                int expanded = 0;
+                for (Posting posting : postings.subMap(word, false, word + Character.MAX_VALUE, false).values()) {
+                    if (expanded++ >= MAX_PREFIX_EXPANSIONS) {
+                        break;
+                    }
+                    matches.putIfAbsent(posting, PREFIX_MATCH);
+                }
+            }
+
+            if (word.length() >= MIN_FUZZY_LENGTH) {
+                Set<String> candidates = new HashSet<>(deletes.getOrDefault(word, Set.of())); // one letter added
+                for (String delete : deletesOf(word)) {
+                    if (postings.containsKey(delete)) {
+                        candidates.add(delete);                                       // one letter removed
+                    }
+                    candidates.addAll(deletes.getOrDefault(delete, Set.of()));        // one letter changed or swapped
+                }
+                for (String candidate : candidates) {
+                    if (!candidate.equals(word) && withinOneEdit(word, candidate)) {
+                        matches.putIfAbsent(postings.get(candidate), FUZZY_MATCH);
+                    }
+                }
+            }
+            return matches;
+        }
+
+        private static int estimatedSize(Map<Posting, Double> matches) {
+            int size = 0;
+            for (Posting posting : matches.keySet()) {
+                size += posting.size();
+            }
+            return size;
+        }
+
+        // term -> fields it appears in, for one book
+        private static Map<String, Integer> termsOf(Book book) {
+            Map<String, Integer> terms = new HashMap<>();
+            if (book.getId() != null) {
+                String isbn = book.getId().toLowerCase(Locale.ROOT);
+                terms.merge(NON_WORD.matcher(isbn).replaceAll(""), FIELD_ID, (a, b) -> a | b);
+                for (String token : tokenize(isbn)) {
+                    terms.merge(token, FIELD_ID, (a, b) -> a | b);
+                }
+            }
+            for (String token : tokenize(book.getTitle())) {
+                terms.merge(token, FIELD_TITLE, (a, b) -> a | b);
+            }
+            for (String token : tokenize(book.getAuthor())) {
+                terms.merge(token, FIELD_AUTHOR, (a, b) -> a | b);
+            }
+            for (String token : tokenize(book.getGenre())) {
+                terms.merge(token, FIELD_GENRE, (a, b) -> a | b);
+            }
+            terms.remove("");
+            return terms;
+        }
+    }
+}
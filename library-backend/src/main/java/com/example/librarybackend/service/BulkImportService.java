@@ -0,0 +1,397 @@
+package com.example.librarybackend.service;
+
+import com.example.librarybackend.dto.ImportResult;
+import com.example.librarybackend.model.Book;
+import com.example.librarybackend.model.ChangeTracked;
+import com.example.librarybackend.model.Student;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Bulk import of books and students from CSV or JSON uploads.
+ *
+ * The upload is read one row at a time and valid rows are collected into chunks. Each chunk
+ * is written with a single JDBC batch upsert (insert, or update the row with the same id) in
+ * its own transaction, so memory stays flat however big the file is and a bad row only costs
+ * its own chunk a retry. If a chunk's batch fails, its rows are written one by one so the
+ * database error can be reported against the row that caused it.
+ *
+ * Committed rows are pushed to the search index and evicted from the lookup cache chunk by
+ * chunk; the dashboard counters are recounted once at the end. Every upserted row gets a new
+ * change version, as the entity listeners would have given it, and a row that renames a book or
+ * student restamps its loans and reservations in the same transaction.
+ */
+@Service
+public class BulkImportService {
+
+    public static final String FORMAT_CSV = "csv";
+    public static final String FORMAT_JSON = "json";
+
+    // Longest value the default VARCHAR(255) columns accept
+    private static final int MAX_TEXT_LENGTH = 255;
+    private static final int MAX_IMAGE_PATH_LENGTH = 500;
+
+    private static final String UPSERT_BOOK_SQL =
+            "INSERT INTO books (id, title, author, genre, copies, image_path, change_version) VALUES (?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE title = VALUES(title), author = VALUES(author), genre = VALUES(genre), " +
+            "copies = VALUES(copies), image_path = COALESCE(VALUES(image_path), image_path), " +
+            "change_version = VALUES(change_version)";
+    // MySQL treats both "id" and "email" as unique keys here, so a row whose email belongs to
+    // another student would silently update that student. We check emails before each chunk.
+    private static final String UPSERT_STUDENT_SQL =
+            "INSERT INTO students (id, name, email, contact, cohort, change_version) VALUES (?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE name = VALUES(name), email = VALUES(email), " +
+            "contact = VALUES(contact), cohort = VALUES(cohort), change_version = VALUES(change_version)";
+    private static final String FIND_BOOKS_SQL = "SELECT id, title, image_path FROM books WHERE id IN (:ids)";
+    private static final String FIND_STUDENTS_BY_ID_SQL = "SELECT id, name, email FROM students WHERE id IN (:ids)";
+    private static final String FIND_STUDENTS_BY_EMAIL_SQL = "SELECT id, email FROM students WHERE email IN (:emails)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+    @Autowired
+    private EntityCacheService entityCacheService;
+    @Autowired
+    private LibraryStatsService libraryStatsService;
+    @Autowired
+    private BookImageService bookImageService;
+    @Autowired
+    private ChangeVersionService changeVersionService;
+
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    public BulkImportService(PlatformTransactionManager transactionManager,
+                             @Value("${library.import.chunk-size:1000}") int chunkSize) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    // === BOOKS ===
+    // Columns: id (ISBN), title, author, genre, copies, imagePath (optional)
+    public ImportResult importBooks(InputStream in, String format) {
+        ImportResult result = new ImportResult();
+        long started = System.currentTimeMillis();
+        List<Row<Book>> chunk = new ArrayList<>(chunkSize);
+
+        try (ImportRowReader reader = openReader(in, format)) {
+            long rowNumber = 0;
+            Map<String, String> values;
+            while ((values = reader.next()) != null) {
+                rowNumber++;
+                result.setRowsRead(rowNumber);
+                try {
+                    chunk.add(new Row<>(rowNumber, toBook(values)));
+                } catch (IllegalArgumentException e) {
+                    result.addError(rowNumber, e.getMessage());
+                }
+                if (chunk.size() >= chunkSize) {
+                    writeBooks(chunk, result);
+                    chunk.clear();
+                }
+            }
+        } catch (IOException e) {
+            result.addError(result.getRowsRead() + 1, "Stopped reading file: " + e.getMessage());
+        }
+        writeBooks(chunk, result);
+
+        libraryStatsService.reconcile();
+        // Validation errors are found while reading and database errors while writing, so put them back in file order
+        result.getErrors().sort(Comparator.comparingLong(ImportResult.RowError::getRow));
+        result.setDurationMs(System.currentTimeMillis() - started);
+        return result;
+    }
+
+    // === STUDENTS ===
+    // Columns: id, name, email, contact (optional), cohort (optional)
+    public ImportResult importStudents(InputStream in, String format) {
+        ImportResult result = new ImportResult();
+        long started = System.currentTimeMillis();
+        List<Row<Student>> chunk = new ArrayList<>(chunkSize);
+
+        try (ImportRowReader reader = openReader(in, format)) {
+            long rowNumber = 0;
+            Map<String, String> values;
+            while ((values = reader.next()) != null) {
+                rowNumber++;
+                result.setRowsRead(rowNumber);
+                try {
+                    chunk.add(new Row<>(rowNumber, toStudent(values)));
+                } catch (IllegalArgumentException e) {
+                    result.addError(rowNumber, e.getMessage());
+                }
+                if (chunk.size() >= chunkSize) {
+                    writeStudents(chunk, result);
+                    chunk.clear();
+                }
+            }
+        } catch (IOException e) {
+            result.addError(result.getRowsRead() + 1, "Stopped reading file: " + e.getMessage());
+        }
+        writeStudents(chunk, result);
+
+        libraryStatsService.reconcile();
+        // Validation errors are found while reading and database errors while writing, so put them back in file order
+        result.getErrors().sort(Comparator.comparingLong(ImportResult.RowError::getRow));
+        result.setDurationMs(System.currentTimeMillis() - started);
+        return result;
+    }
+
+    // Helper methods
+
+    private ImportRowReader openReader(InputStream in, String format) throws IOException {
+        return FORMAT_JSON.equals(format) ? ImportRowReader.json(in, objectMapper) : ImportRowReader.csv(in);
+    }
+
+    private void writeBooks(List<Row<Book>> chunk, ImportResult result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        // Rows without an imagePath keep the book's current image, so fetch those for the search index.
+        // Rows that do change it need the old one too, for the image reference counts, and rows
+        // that rename a book need the old title, to restamp its loans and reservations.
+        Set<String> ids = new HashSet<>();
+        for (Row<Book> row : chunk) {
+            ids.add(row.value.getId());
+        }
+        Map<String, String> currentImages = new HashMap<>();
+        Map<String, String> currentTitles = new HashMap<>();
+        namedParameterJdbcTemplate.query(FIND_BOOKS_SQL, new MapSqlParameterSource("ids", ids),
+                rs -> {
+                    currentImages.put(rs.getString("id"), rs.getString("image_path"));
+                    currentTitles.put(rs.getString("id"), rs.getString("title"));
+                });
+
+        List<Row<Book>> written = writeChunk(chunk, UPSERT_BOOK_SQL, this::bindBook,
+                rows -> changeVersionService.onBooksRenamed(renamed(rows, currentTitles, Book::getId, Book::getTitle)),
+                result);
+        Set<String> changedImages = new HashSet<>();
+        for (Row<Book> row : written) {
+            String oldImage = currentImages.get(row.value.getId());
+            if (row.value.getImagePath() == null) {
+                row.value.setImagePath(oldImage);
+            } else if (!row.value.getImagePath().equals(oldImage)) {
+                changedImages.add(row.value.getImagePath());
+                if (oldImage != null) {
+                    changedImages.add(oldImage);
+                }
+            }
+            bookSearchIndex.put(row.value);
+            entityCacheService.evictBook(row.value.getId());
+        }
+        // Some rows of the chunk may have failed, so count from the table rather than from the rows
+        bookImageService.recountReferences(changedImages);
+    }
+
+    private void writeStudents(List<Row<Student>> chunk, ImportResult result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        // Look up who currently owns these ids and emails, so we can reject rows that would take
+        // another student's email and evict the old email of students whose email changes
+        Set<String> ids = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        for (Row<Student> row : chunk) {
+            ids.add(row.value.getId());
+            emails.add(row.value.getEmail());
+        }
+        Map<String, String> emailById = new HashMap<>();
+        Map<String, String> nameById = new HashMap<>();
+        Map<String, String> idByEmail = new HashMap<>();
+        // Two queries rather than "id IN (...) OR email IN (...)", so each one can use its index
+        namedParameterJdbcTemplate.query(FIND_STUDENTS_BY_ID_SQL, new MapSqlParameterSource("ids", ids),
+                rs -> {
+                    emailById.put(rs.getString("id"), rs.getString("email"));
+                    nameById.put(rs.getString("id"), rs.getString("name"));
+                });
+        namedParameterJdbcTemplate.query(FIND_STUDENTS_BY_EMAIL_SQL, new MapSqlParameterSource("emails", emails),
+                rs -> {
+                    idByEmail.put(rs.getString("email"), rs.getString("id"));
+                });
+
+        List<Row<Student>> accepted = new ArrayList<>(chunk.size());
+        for (Row<Student> row : chunk) {
+            Student student = row.value;
+            String owner = idByEmail.get(student.getEmail());
+            if (owner != null && !owner.equals(student.getId())) {
+                result.addError(row.number, "Email " + student.getEmail() + " is already used by student " + owner);
+                continue;
+            }
+            // Claim the email so a later row in the same chunk can't take it too
+            idByEmail.put(student.getEmail(), student.getId());
+            accepted.add(row);
+        }
+
+        List<Row<Student>> written = writeChunk(accepted, UPSERT_STUDENT_SQL, this::bindStudent,
+                rows -> changeVersionService.onStudentsRenamed(renamed(rows, nameById, Student::getId, Student::getName)),
+                result);
+        for (Row<Student> row : written) {
+            entityCacheService.evictStudent(row.value.getId(), emailById.get(row.value.getId()), row.value.getEmail());
+        }
+    }
+
+    // Write one chunk as a single batch in one transaction. If that fails, fall back to one
+    // transaction per row and record the failures. Returns the rows that were written.
+    // afterWrite runs in the same transaction as the rows it is given.
+    private <T> List<Row<T>> writeChunk(List<Row<T>> chunk, String sql, Binder<T> binder,
+                                        Consumer<List<Row<T>>> afterWrite, ImportResult result) {
+        if (chunk.isEmpty()) {
+            return chunk;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(sql, chunk, chunk.size(), (ps, row) -> binder.bind(ps, row.value));
+                afterWrite.accept(chunk);
+            });
+            result.setRowsImported(result.getRowsImported() + chunk.size());
+            return chunk;
+        } catch (DataAccessException batchFailure) {
+            List<Row<T>> written = new ArrayList<>(chunk.size());
+            for (Row<T> row : chunk) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        jdbcTemplate.update(sql, ps -> binder.bind(ps, row.value));
+                        afterWrite.accept(List.of(row));
+                    });
+                    result.setRowsImported(result.getRowsImported() + 1);
+                    written.add(row);
+                } catch (DataAccessException e) {
+                    result.addError(row.number, "Database rejected row: " + e.getMostSpecificCause().getMessage());
+                }
+            }
+            return written;
+        }
+    }
+
+    // Ids of the rows that already existed under another name
+    private <T> List<String> renamed(List<Row<T>> rows, Map<String, String> currentNames,
+                                     Function<T, String> id, Function<T, String> name) {
+        List<String> renamed = new ArrayList<>();
+        for (Row<T> row : rows) {
+            String current = currentNames.get(id.apply(row.value));
+            if (current != null && !current.equals(name.apply(row.value))) {
+                renamed.add(id.apply(row.value));
+            }
+        }
+        return renamed;
+    }
+
+    private void bindBook(PreparedStatement ps, Book book) throws SQLException {
+        ps.setString(1, book.getId());
+        ps.setString(2, book.getTitle());
+        ps.setString(3, book.getAuthor());
+        ps.setString(4, book.getGenre());
+        ps.setInt(5, book.getCopies());
+        ps.setString(6, book.getImagePath());
+        ps.setLong(7, changeVersionService.next(ChangeTracked.BOOK));
+    }
+
+    private void bindStudent(PreparedStatement ps, Student student) throws SQLException {
+        ps.setString(1, student.getId());
+        ps.setString(2, student.getName());
+        ps.setString(3, student.getEmail());
+        ps.setString(4, student.getContact());
+        ps.setString(5, student.getCohort());
+        ps.setLong(6, changeVersionService.next(ChangeTracked.STUDENT));
+    }
+
+    private Book toBook(Map<String, String> values) {
+        Book book = new Book();
+        book.setId(required(values, "id", MAX_TEXT_LENGTH));
+        book.setTitle(required(values, "title", MAX_TEXT_LENGTH));
+        book.setAuthor(optional(values, "author", MAX_TEXT_LENGTH));
+        book.setGenre(optional(values, "genre", MAX_TEXT_LENGTH));
+        book.setImagePath(optional(values, "imagepath", MAX_IMAGE_PATH_LENGTH));
+
+        String copies = required(values, "copies", MAX_TEXT_LENGTH);
+        try {
+            book.setCopies(Integer.parseInt(copies));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("copies must be a whole number, got '" + copies + "'");
+        }
+        if (book.getCopies() < 0) {
+            throw new IllegalArgumentException("copies cannot be negative");
+        }
+        return book;
+    }
+
+    private Student toStudent(Map<String, String> values) {
+        Student student = new Student();
+        student.setId(required(values, "id", MAX_TEXT_LENGTH));
+        student.setName(required(values, "name", MAX_TEXT_LENGTH));
+        student.setEmail(required(values, "email", MAX_TEXT_LENGTH));
+        student.setContact(optional(values, "contact", MAX_TEXT_LENGTH));
+        student.setCohort(optional(values, "cohort", MAX_TEXT_LENGTH));
+
+        int at = student.getEmail().indexOf('@');
+        if (at <= 0 || at == student.getEmail().length() - 1) {
+            throw new IllegalArgumentException("email '" + student.getEmail() + "' is not a valid address");
+        }
+        return student;
+    }
+
+    private String required(Map<String, String> values, String column, int maxLength) {
+        String value = optional(values, column, maxLength);
+        if (value == null) {
+            throw new IllegalArgumentException(column + " is required");
+        }
+        return value;
+    }
+
+    private String optional(Map<String, String> values, String column, int maxLength) {
+        String value = values.get(column);
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        value = value.trim();
+        if (value.length() > maxLength) {
+            throw new IllegalArgumentException(column + " is longer than " + maxLength + " characters");
+        }
+        return value;
+    }
+
+    // A parsed row and its position in the file, for error messages
+    private static class Row<T> {
+        final long number;
+        final T value;
+
+        Row(long number, T value) {
+            this.number = number;
+            this.value = value;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Binder<T> {
+        void bind(PreparedStatement ps, T value) throws SQLException;
+    }
+}
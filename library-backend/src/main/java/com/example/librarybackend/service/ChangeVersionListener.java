@@ -0,0 +1,34 @@
+package com.example.librarybackend.service;
+
+import com.example.librarybackend.model.ChangeTracked;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreRemove;
+import jakarta.persistence.PreUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+
+// Stamps ChangeTracked entities with a new change version whenever JPA inserts or updates them,
+// and writes a tombstone when it deletes one. Writes that go around JPA (the JPQL copy updates,
+// the batch circulation SQL and the bulk import) ask ChangeVersionService for a version themselves.
+// Hibernate gets this from Spring; the service is looked up lazily because it depends on the
+// entity manager factory, which creates this listener.
+public class ChangeVersionListener {
+
+    private final ObjectProvider<ChangeVersionService> changeVersionService;
+
+    public ChangeVersionListener(ObjectProvider<ChangeVersionService> changeVersionService) {
+        this.changeVersionService = changeVersionService;
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void stamp(Object entity) {
+        ChangeTracked tracked = (ChangeTracked) entity;
+        tracked.setChangeVersion(changeVersionService.getObject().next(tracked.changeType()));
+    }
+
+    @PreRemove
+    public void remove(Object entity) {
+        ChangeTracked tracked = (ChangeTracked) entity;
+        changeVersionService.getObject().recordDeletion(tracked.changeType(), tracked.changeId());
+    }
+}
@@ -0,0 +1,295 @@
+package com.example.librarybackend.service;
+
+import com.example.librarybackend.dto.ChangeFeedResponse;
+import com.example.librarybackend.model.ChangeTracked;
+import com.example.librarybackend.model.JobCheckpoint;
+import com.example.librarybackend.repository.JobCheckpointRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Numbers every change to books, students, transactions and reservations, for the ?since= change
+ * feeds and for the ETags of the full lists.
+ *
+ * Each insert or update stamps the row's change_version with the next number, and each delete
+ * writes a tombstone with one. The numbers come from a counter in memory, seeded from the tables
+ * at startup, so handing one out costs no database round trip. Like the dashboard counters, this
+ * assumes a single backend instance writes to the database.
+ *
+ * Numbers are handed out before their transaction commits, so they can become visible out of
+ * order: 41 may commit while 40 is still in flight. A feed that returned 41 and told the client to
+ * carry on from there would skip 40 for good, so feeds only go up to the stable version, the
+ * highest number below which nothing is still in flight.
+ *
+ * The transaction and reservation feeds send each row with its book's title and student's name
+ * joined in, so renaming a book or a student restamps the rows that mention it, to send them again.
+ *
+ * Tombstones older than library.sync.tombstone-retention are pruned. A client asking for changes
+ * since a version from before the oldest remaining tombstone gets 410 Gone and has to load the
+ * full list again.
+ */
+@Service
+@DependsOn("entityManagerFactory") // The tables must exist before the counters are seeded from them
+public class ChangeVersionService {
+
+    public static final String CHANGE_VERSION_HEADER = "X-Change-Version";
+
+    // Changes returned by one feed call when the client doesn't ask for a number, and the most ever
+    private static final int DEFAULT_FEED_LIMIT = 500;
+    private static final int MAX_FEED_LIMIT = 2000;
+
+    private static final Map<String, String> TABLES = Map.of(
+            ChangeTracked.BOOK, "books",
+            ChangeTracked.STUDENT, "students",
+            ChangeTracked.TRANSACTION, "transactions",
+            ChangeTracked.RESERVATION, "reservations");
+
+    private static final String INSERT_TOMBSTONE_SQL =
+            "INSERT INTO change_tombstones (entity_type, entity_id, version, deleted_at) VALUES (?, ?, ?, ?)";
+    private static final String CHANGED_TOMBSTONE_VERSIONS_SQL =
+            "SELECT version FROM change_tombstones WHERE entity_type = ? AND version > ? AND version <= ? " +
+            "ORDER BY version LIMIT ?";
+    private static final String CHANGED_TOMBSTONES_SQL =
+            "SELECT entity_id FROM change_tombstones WHERE entity_type = ? AND version > ? AND version <= ? " +
+            "ORDER BY version";
+    private static final String PRUNABLE_VERSION_SQL =
+            "SELECT MAX(version) FROM change_tombstones WHERE deleted_at < ?";
+    private static final String PRUNE_SQL = "DELETE FROM change_tombstones WHERE version <= ?";
+    private static final String PRUNE_CHECKPOINT = "change-tombstone-prune";
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeVersionService.class);
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    @Autowired private JobCheckpointRepository checkpointRepository;
+
+    @Value("${library.sync.tombstone-retention:P30D}")
+    private Duration tombstoneRetention;
+
+    // Handed-out numbers whose transaction hasn't finished yet (guarded by this)
+    private final TreeSet<Long> inFlight = new TreeSet<>();
+    private long lastAllocated; // guarded by this
+
+    // The newest committed change to each type, for the ETags
+    private final Map<String, AtomicLong> typeVersions = new HashMap<>();
+    // Tombstones up to here have been pruned, so a feed can't start below it
+    private volatile long horizon;
+    // Set per start, so an ETag from before a restart (or a reloaded database) never matches
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    @PostConstruct
+    public void init() {
+        long max = 0;
+        for (Map.Entry<String, String> table : TABLES.entrySet()) {
+            long rows = maxVersion("SELECT MAX(change_version) FROM " + table.getValue());
+            long tombstones = maxVersion("SELECT MAX(version) FROM change_tombstones WHERE entity_type = ?", table.getKey());
+            long version = Math.max(rows, tombstones);
+            typeVersions.put(table.getKey(), new AtomicLong(version));
+            max = Math.max(max, version);
+        }
+        synchronized (this) {
+            lastAllocated = max;
+        }
+        horizon = checkpointRepository.findById(PRUNE_CHECKPOINT)
+                .map(JobCheckpoint::getPositionVersion)
+                .orElse(0L);
+    }
+
+    // The number for a change of this type, in the current transaction
+    public long next(String type) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Change versions can only be handed out inside a transaction");
+        }
+        long version;
+        synchronized (this) {
+            version = ++lastAllocated;
+            inFlight.add(version);
+        }
+        pendingChanges().add(type, version);
+        return version;
+    }
+
+    // Writes the tombstone for a deleted row, in the current transaction
+    public void recordDeletion(String type, String id) {
+        jdbcTemplate.update(INSERT_TOMBSTONE_SQL, type, id, next(type), Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    // These books' titles changed, in the current transaction: restamp their loans and reservations
+    public void onBooksRenamed(Collection<String> bookIds) {
+        restampDependents("book_id", bookIds);
+    }
+
+    // These students' names changed, in the current transaction: restamp their loans and reservations
+    public void onStudentsRenamed(Collection<String> studentIds) {
+        restampDependents("student_id", studentIds);
+    }
+
+    // Every change up to this version has either committed or rolled back
+    public synchronized long stableVersion() {
+        return inFlight.isEmpty() ? lastAllocated : inFlight.first() - 1;
+    }
+
+    // A weak ETag that changes whenever a row of one of these types does
+    public String etag(String... types) {
+        StringBuilder etag = new StringBuilder("W/\"").append(epoch);
+        for (String type : types) {
+            etag.append('-').append(typeVersions.get(type).get());
+        }
+        return etag.append('"').toString();
+    }
+
+    // One page of the changes to a type after the since version: the rows changed since then (as
+    // loadChanged returns them for a (since, upTo] range) and the ids deleted since then, at most
+    // limit of the two together. The response's version is where the next call should carry on.
+    public <T> ChangeFeedResponse<T> changesSince(String type, long since, int limit,
+                                                  BiFunction<Long, Long, List<T>> loadChanged,
+                                                  Function<T, String> idOf) {
+        if (since < horizon) {
+            throw new ResponseStatusException(HttpStatus.GONE,
+                    "Changes before version " + horizon + " are no longer kept; reload the full list");
+        }
+        long stable = stableVersion();
+        if (since >= stable) {
+            return new ChangeFeedResponse<>(List.of(), List.of(), since, false);
+        }
+
+        // Find the limit-th change from the version columns alone, before loading anything
+        List<Long> versions = new ArrayList<>(jdbcTemplate.queryForList(
+                "SELECT change_version FROM " + TABLES.get(type) +
+                " WHERE change_version > ? AND change_version <= ? ORDER BY change_version LIMIT ?",
+                Long.class, since, stable, limit + 1));
+        versions.addAll(jdbcTemplate.queryForList(CHANGED_TOMBSTONE_VERSIONS_SQL, Long.class, type, since, stable, limit + 1));
+        boolean hasMore = versions.size() > limit;
+        long upTo = stable;
+        if (hasMore) {
+            versions.sort(null);
+            upTo = versions.get(limit - 1);
+        }
+
+        List<T> items = loadChanged.apply(since, upTo);
+        Set<String> present = new HashSet<>();
+        for (T item : items) {
+            present.add(idOf.apply(item));
+        }
+        // A row deleted and then added again is sent as a row, not as a deletion
+        Set<String> deleted = new LinkedHashSet<>(jdbcTemplate.queryForList(CHANGED_TOMBSTONES_SQL, String.class, type, since, upTo));
+        deleted.removeAll(present);
+        return new ChangeFeedResponse<>(items, new ArrayList<>(deleted), upTo, hasMore);
+    }
+
+    // The page size for a feed call that asked for this many changes (or didn't say)
+    public int feedLimit(Integer requested) {
+        return (requested == null || requested <= 0) ? DEFAULT_FEED_LIMIT : Math.min(requested, MAX_FEED_LIMIT);
+    }
+
+    public long getHorizon() {
+        return horizon;
+    }
+
+    // Drops tombstones older than the retention period. Clients that haven't synced since then
+    // get 410 Gone and reload, which they would have to do after that long anyway.
+    @Scheduled(fixedDelayString = "${library.sync.tombstone-prune-interval-ms:86400000}",
+            initialDelayString = "${library.sync.tombstone-prune-initial-delay-ms:600000}")
+    public void pruneTombstones() {
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minus(tombstoneRetention));
+        Long prunable = jdbcTemplate.queryForObject(PRUNABLE_VERSION_SQL, Long.class, cutoff);
+        if (prunable == null || prunable <= horizon) {
+            return;
+        }
+        // Raise the horizon before the tombstones go, so no feed answers from a half-pruned table
+        horizon = prunable;
+        JobCheckpoint checkpoint = checkpointRepository.findById(PRUNE_CHECKPOINT)
+                .orElseGet(() -> new JobCheckpoint(PRUNE_CHECKPOINT));
+        checkpoint.setPositionVersion(prunable);
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        checkpointRepository.save(checkpoint);
+        int pruned = jdbcTemplate.update(PRUNE_SQL, prunable);
+        log.info("Pruned {} change tombstones up to version {}", pruned, prunable);
+    }
+
+    // Helper methods
+
+    private long maxVersion(String sql, Object... args) {
+        Long max = jdbcTemplate.queryForObject(sql, Long.class, args);
+        return max != null ? max : 0;
+    }
+
+    // All the dependent rows of one type share a single new version. A feed page ends on a version
+    // boundary, so it can hold more than the limit when a popular book is renamed.
+    private void restampDependents(String column, Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        for (String type : List.of(ChangeTracked.TRANSACTION, ChangeTracked.RESERVATION)) {
+            namedParameterJdbcTemplate.update(
+                    "UPDATE " + TABLES.get(type) + " SET change_version = :version WHERE " + column + " IN (:ids)",
+                    new MapSqlParameterSource("version", next(type)).addValue("ids", ids));
+        }
+    }
+
+    // The numbers handed out in the current transaction. Kept in a synchronization registered on
+    // the first one, which releases them when the transaction finishes.
+    private PendingChanges pendingChanges() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingChanges pending && pending.owner() == this) {
+                return pending;
+            }
+        }
+        PendingChanges pending = new PendingChanges();
+        TransactionSynchronizationManager.registerSynchronization(pending);
+        return pending;
+    }
+
+    private final class PendingChanges implements TransactionSynchronization {
+        private final List<Long> versions = new ArrayList<>();
+        private final Map<String, Long> newestByType = new HashMap<>();
+
+        ChangeVersionService owner() {
+            return ChangeVersionService.this;
+        }
+
+        void add(String type, long version) {
+            versions.add(version);
+            newestByType.merge(type, version, Math::max);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (status == STATUS_COMMITTED) {
+                newestByType.forEach((type, version) -> typeVersions.get(type).accumulateAndGet(version, Math::max));
+            }
+            synchronized (ChangeVersionService.this) {
+                versions.forEach(inFlight::remove);
+            }
+        }
+    }
+}
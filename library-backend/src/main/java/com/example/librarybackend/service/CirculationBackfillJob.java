@@ -0,0 +1,101 @@
+package com.example.librarybackend.service;
+
+import com.example.librarybackend.dto.CirculationRow;
+import com.example.librarybackend.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Rebuilds circulation_rollups from the full transactions history.
+ *
+ * Transactions are read in primary-key chunks as flat rows, aggregated in memory and written
+ * to circulation_rollups_staging as one upsert per bucket, each chunk in its own database
+ * transaction. Memory use is bounded by the chunk size, not by the size of the history.
+ * Once every chunk is in, the staging table replaces the rollups in one DB transaction, so the
+ * analytics show the old numbers until then, never an empty or partial table.
+ *
+ * The desk keeps working meanwhile. An issue or return committed during the rebuild is counted
+ * once whether or not its row had already been read (see CirculationRollupService.Rebuild).
+ */
+@Component
+public class CirculationBackfillJob {
+
+    private static final Logger log = LoggerFactory.getLogger(CirculationBackfillJob.class);
+
+    @Autowired private TransactionRepository transactionRepository;
+    @Autowired private CirculationRollupService rollupService;
+
+    @Value("${library.analytics.backfill-chunk-size:5000}")
+    private int chunkSize;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    @Async
+    public void run() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.error("Circulation rollup backfill failed", e);
+        }
+    }
+
+    // Rebuilds the rollups on the calling thread and returns how many transactions were read,
+    // or -1 if another backfill is already in progress
+    public long rebuild() {
+        if (!running.compareAndSet(false, true)) {
+            return -1;
+        }
+        try {
+            long started = System.currentTimeMillis();
+            CirculationRollupService.Rebuild rebuild = rollupService.startRebuild();
+            long processed = 0;
+            try {
+                int maxId = transactionRepository.findMaxId();
+                int afterId = 0;
+                while (afterId < maxId) {
+                    List<CirculationRow> rows = transactionRepository
+                            .findCirculationRows(afterId, maxId, Limit.of(chunkSize));
+                    if (rows.isEmpty()) {
+                        break;
+                    }
+
+                    CirculationRollupService.Accumulator accumulator = new CirculationRollupService.Accumulator();
+                    for (CirculationRow row : rows) {
+                        accumulator.addIssue(row.getGenre(), row.getCohort(), row.getIssueDate());
+                        rebuild.readIssue(row.getId());
+                        if (row.getReturnDate() != null) {
+                            accumulator.addReturn(row.getGenre(), row.getCohort(), row.getDueDate(),
+                                    row.getReturnDate(), row.getFinePaid());
+                            rebuild.readReturn(row.getId());
+                        }
+                    }
+                    rollupService.addToRebuild(accumulator);
+
+                    afterId = rows.get(rows.size() - 1).getId();
+                    processed += rows.size();
+                }
+            } catch (RuntimeException e) {
+                rollupService.abandonRebuild(rebuild);
+                throw e;
+            }
+            rollupService.finishRebuild(rebuild);
+            log.info("Circulation rollup backfill finished: {} transactions in {} ms",
+                    processed, System.currentTimeMillis() - started);
+            return processed;
+        } finally {
+            running.set(false);
+        }
+    }
+}
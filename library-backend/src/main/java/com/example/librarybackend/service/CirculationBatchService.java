@@ -0,0 +1,375 @@
+package com.example.librarybackend.service;
+
+import com.example.librarybackend.dto.BatchCirculationResponse;
+import com.example.librarybackend.dto.LoanRow;
+import com.example.librarybackend.dto.ReturnItemDto;
+import com.example.librarybackend.dto.TransactionDto;
+import com.example.librarybackend.dto.TransactionResponse;
+import com.example.librarybackend.model.Book;
+import com.example.librarybackend.model.ChangeTracked;
+import com.example.librarybackend.model.NotificationOutboxEvent;
+import com.example.librarybackend.model.Reservation;
+import com.example.librarybackend.model.Student;
+import com.example.librarybackend.repository.BookRepository;
+import com.example.librarybackend.repository.ReservationRepository;
+import com.example.librarybackend.repository.StudentRepository;
+import com.example.librarybackend.repository.TransactionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Issues or returns a whole stack of books in one DB transaction.
+ *
+ * A batch issue locks all its books with a single SELECT; a batch return locks its loans, then
+ * their books, with one SELECT each. Each item is checked against that snapshot, and the
+ * accepted items are written with one JDBC batch per
+ * table: copies, transactions and queued notifications. Items that can't be processed (unknown
+ * student, no copies left, already returned...) are reported in the response and don't stop
+ * the rest of the batch.
+ *
+ * Rows are always locked in id order, one table at a time, so concurrent batches that share
+ * books wait for each other instead of deadlocking.
+ *
+ * The SQL goes around the JPA entity listeners, so every row it writes is given its change
+ * version here (see ChangeVersionService).
+ */
+@Service
+public class CirculationBatchService {
+
+    // Same loan period as a single issue
+    private static final int LOAN_DAYS = 15;
+
+    private static final String DECREMENT_COPIES_SQL =
+            "UPDATE books SET copies = copies - ?, change_version = ? WHERE id = ?";
+    private static final String INCREMENT_COPIES_SQL =
+            "UPDATE books SET copies = copies + ?, change_version = ? WHERE id = ?";
+    private static final String INSERT_TRANSACTION_SQL =
+            "INSERT INTO transactions (book_id, student_id, issue_date, due_date, change_version) VALUES (?, ?, ?, ?, ?)";
+    private static final String RETURN_TRANSACTION_SQL =
+            "UPDATE transactions SET return_date = ?, fine_paid = ?, change_version = ? WHERE id = ?";
+
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private TransactionRepository transactionRepository;
+    @Autowired
+    private StudentRepository studentRepository;
+    @Autowired
+    private ReservationRepository reservationRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EntityCacheService entityCacheService;
+    @Autowired
+    private LibraryStatsService libraryStatsService;
+    @Autowired
+    private CirculationRollupService circulationRollupService;
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+    @Autowired
+    private NotificationOutbox notificationOutbox;
+    @Autowired
+    private ChangeVersionService changeVersionService;
+
+    // === BATCH ISSUE ===
+    @Transactional
+    public BatchCirculationResponse issueBooks(List<TransactionDto> items) {
+        BatchCirculationResponse response = new BatchCirculationResponse();
+
+        // Lock every book in the batch with one SELECT
+        Set<String> bookIds = new TreeSet<>();
+        for (TransactionDto item : items) {
+            if (item.getBookId() != null) {
+                bookIds.add(item.getBookId());
+            }
+        }
+        Map<String, Book> books = new HashMap<>();
+        Map<String, Integer> copiesLeft = new HashMap<>();
+        for (Book book : bookRepository.findAllByIdForUpdate(bookIds)) {
+            books.put(book.getId(), book);
+            copiesLeft.put(book.getId(), book.getCopies());
+        }
+
+        LocalDateTime issueDate = LocalDateTime.now();
+        LocalDateTime dueDate = issueDate.plusDays(LOAN_DAYS);
+        Map<String, Optional<Student>> students = new HashMap<>();
+        List<Loan> loans = new ArrayList<>();
+
+        for (TransactionDto item : items) {
+            if (item.getBookId() == null || item.getStudentId() == null) {
+                response.addFailure("bookId and studentId are required");
+                continue;
+            }
+            Optional<Student> student = students.computeIfAbsent(item.getStudentId(), entityCacheService::findStudent);
+            if (student.isEmpty()) {
+                response.addFailure("Student not found");
+                continue;
+            }
+            Book book = books.get(item.getBookId());
+            if (book == null) {
+                response.addFailure("Book not found");
+                continue;
+            }
+            int left = copiesLeft.get(book.getId());
+            if (left <= 0) {
+                response.addFailure("No copies available");
+                continue;
+            }
+            copiesLeft.put(book.getId(), left - 1);
+
+            TransactionResponse dto = new TransactionResponse(null, book.getId(), book.getTitle(),
+                    student.get().getId(), student.get().getName(), issueDate, dueDate, null, null);
+            loans.add(new Loan(book, student.get(), dto, left - 1, false));
+            response.addSuccess(dto);
+        }
+
+        if (loans.isEmpty()) {
+            return response;
+        }
+
+        // Take the copies off the shelf: one UPDATE per distinct book, in id order
+        Map<String, Integer> taken = new TreeMap<>();
+        for (Loan loan : loans) {
+            taken.merge(loan.book.getId(), 1, Integer::sum);
+        }
+        batchUpdateCopies(DECREMENT_COPIES_SQL, taken);
+
+        // Insert the loans and read back their generated ids
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                con -> con.prepareStatement(INSERT_TRANSACTION_SQL, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Loan loan = loans.get(i);
+                        ps.setString(1, loan.book.getId());
+                        ps.setString(2, loan.student.getId());
+                        ps.setTimestamp(3, Timestamp.valueOf(issueDate));
+                        ps.setTimestamp(4, Timestamp.valueOf(dueDate));
+                        ps.setLong(5, changeVersionService.next(ChangeTracked.TRANSACTION));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return loans.size();
+                    }
+                },
+                keys);
+        List<Map<String, Object>> generated = keys.getKeyList();
+        for (int i = 0; i < loans.size(); i++) {
+            loans.get(i).dto.setId(((Number) generated.get(i).values().iterator().next()).intValue());
+        }
+
+        queueNotifications(loans, "BOOK_ISSUED");
+
+        for (Loan loan : loans) {
+            libraryStatsService.onBookIssued(loan.copiesAfter);
+            circulationRollupService.recordIssue(loan.dto.getId(), loan.book.getGenre(), loan.student.getCohort(), issueDate);
+        }
+        refreshBooks(books, copiesLeft, taken.keySet());
+        return response;
+    }
+
+    // === BATCH RETURN ===
+    @Transactional
+    public BatchCirculationResponse returnBooks(List<ReturnItemDto> items) {
+        BatchCirculationResponse response = new BatchCirculationResponse();
+
+        // Lock every loan in the batch with one SELECT
+        Set<Integer> transactionIds = new TreeSet<>();
+        for (ReturnItemDto item : items) {
+            if (item.getTransactionId() != null) {
+                transactionIds.add(item.getTransactionId());
+            }
+        }
+        Map<Integer, LoanRow> transactions = new HashMap<>();
+        Set<String> bookIds = new TreeSet<>();
+        Set<String> studentIds = new HashSet<>();
+        for (LoanRow row : transactionRepository.findAllByIdForUpdate(transactionIds)) {
+            transactions.put(row.getTransactionId(), row);
+            if (row.getReturnDate() == null) {
+                bookIds.add(row.getBookId());
+                studentIds.add(row.getStudentId());
+            }
+        }
+
+        // Then lock the books of the open loans, in id order like a batch issue, and read the
+        // students without locking them: only their names and cohorts are needed
+        Map<String, Book> books = new HashMap<>();
+        Map<String, Integer> copiesNow = new HashMap<>();
+        for (Book book : bookRepository.findAllByIdForUpdate(bookIds)) {
+            books.put(book.getId(), book);
+            copiesNow.put(book.getId(), book.getCopies());
+        }
+        Map<String, Student> students = new HashMap<>();
+        for (Student student : studentRepository.findAllById(studentIds)) {
+            students.put(student.getId(), student);
+        }
+
+        LocalDateTime returnDate = LocalDateTime.now();
+        Set<Integer> returnedInBatch = new HashSet<>();
+        Set<Integer> reservationIds = new HashSet<>();
+        List<Loan> loans = new ArrayList<>();
+
+        for (ReturnItemDto item : items) {
+            if (item.getTransactionId() == null) {
+                response.addFailure("transactionId is required");
+                continue;
+            }
+            LoanRow transaction = transactions.get(item.getTransactionId());
+            if (transaction == null) {
+                response.addFailure("Transaction not found");
+                continue;
+            }
+            if (transaction.getReturnDate() != null || !returnedInBatch.add(transaction.getTransactionId())) {
+                response.addFailure("Book already returned");
+                continue;
+            }
+            if (item.getFinePaid() != null && item.getFinePaid().signum() < 0) {
+                response.addFailure("finePaid cannot be negative");
+                continue;
+            }
+            if (item.getReservationIdToFulfill() != null) {
+                reservationIds.add(item.getReservationIdToFulfill());
+            }
+
+            Book book = books.get(transaction.getBookId());
+            Student student = students.get(transaction.getStudentId());
+            int copiesAfter = copiesNow.merge(book.getId(), 1, Integer::sum);
+            TransactionResponse dto = new TransactionResponse(transaction.getTransactionId(), book.getId(), book.getTitle(),
+                    student.getId(), student.getName(), transaction.getIssueDate(), transaction.getDueDate(),
+                    returnDate, item.getFinePaid());
+            loans.add(new Loan(book, student, dto, copiesAfter, transaction.getDueDate().isBefore(returnDate)));
+            response.addSuccess(dto);
+        }
+
+        if (loans.isEmpty()) {
+            return response;
+        }
+
+        jdbcTemplate.batchUpdate(RETURN_TRANSACTION_SQL, loans, loans.size(), (ps, loan) -> {
+            ps.setTimestamp(1, Timestamp.valueOf(returnDate));
+            ps.setBigDecimal(2, loan.dto.getFinePaid());
+            ps.setLong(3, changeVersionService.next(ChangeTracked.TRANSACTION));
+            ps.setInt(4, loan.dto.getId());
+        });
+
+        // Put the copies back on the shelf: one UPDATE per distinct book, in id order
+        Map<String, Integer> returned = new TreeMap<>();
+        for (Loan loan : loans) {
+            returned.merge(loan.book.getId(), 1, Integer::sum);
+        }
+        batchUpdateCopies(INCREMENT_COPIES_SQL, returned);
+
+        if (!reservationIds.isEmpty()) {
+            List<Reservation> fulfilled = reservationRepository.findAllById(reservationIds);
+            reservationRepository.deleteAllInBatch(fulfilled);
+            // deleteAllInBatch skips the entity listeners, so write the tombstones here
+            fulfilled.forEach(reservation -> changeVersionService.recordDeletion(
+                    ChangeTracked.RESERVATION, String.valueOf(reservation.getId())));
+            fulfilled.forEach(reservation -> libraryStatsService.onReservationDeleted());
+        }
+
+        queueNotifications(loans, "BOOK_RETURNED");
+
+        for (Loan loan : loans) {
+            libraryStatsService.onBookReturned(loan.copiesAfter, loan.wasOverdue);
+            circulationRollupService.recordReturn(loan.dto.getId(), loan.book.getGenre(), loan.student.getCohort(),
+                    loan.dto.getDueDate(), returnDate, loan.dto.getFinePaid());
+        }
+        refreshBooks(books, copiesNow, returned.keySet());
+        return response;
+    }
+
+    // Helper methods
+
+    private void batchUpdateCopies(String sql, Map<String, Integer> countsByBook) {
+        List<Map.Entry<String, Integer>> updates = new ArrayList<>(countsByBook.entrySet());
+        jdbcTemplate.batchUpdate(sql, updates, updates.size(), (ps, update) -> {
+            ps.setInt(1, update.getValue());
+            ps.setLong(2, changeVersionService.next(ChangeTracked.BOOK));
+            ps.setString(3, update.getKey());
+        });
+    }
+
+    // Same messages as a single issue/return, one notification per loan, queued with one JDBC batch
+    private void queueNotifications(List<Loan> loans, String type) {
+        List<NotificationOutboxEvent> events = new ArrayList<>(loans.size());
+        for (Loan loan : loans) {
+            String message;
+            if ("BOOK_ISSUED".equals(type)) {
+                message = "Book issued: \"" + loan.book.getTitle() + "\". Due date: " + loan.dto.getDueDate().toLocalDate();
+            } else {
+                message = "Book returned: \"" + loan.book.getTitle() + "\"";
+                BigDecimal fine = loan.dto.getFinePaid();
+                if (fine != null && fine.compareTo(BigDecimal.ZERO) > 0) {
+                    message += ". Fine paid: $" + fine;
+                }
+            }
+            NotificationOutboxEvent event = new NotificationOutboxEvent();
+            event.setUserId(loan.student.getId());
+            event.setType(type);
+            event.setMessage(message);
+            event.setRelatedBookId(loan.book.getId());
+            event.setRelatedTransactionId(loan.dto.getId());
+            events.add(event);
+        }
+        notificationOutbox.enqueueAll(events);
+    }
+
+    // Show the new number of copies in search results and drop the cached books.
+    // The index gets a copy: the locked Book entities are managed, and changing them would
+    // make Hibernate write the copies a second time at commit.
+    private void refreshBooks(Map<String, Book> books, Map<String, Integer> copies, Set<String> bookIds) {
+        for (String bookId : bookIds) {
+            Book book = books.get(bookId);
+            Book snapshot = new Book();
+            snapshot.setId(book.getId());
+            snapshot.setTitle(book.getTitle());
+            snapshot.setAuthor(book.getAuthor());
+            snapshot.setGenre(book.getGenre());
+            snapshot.setImagePath(book.getImagePath());
+            snapshot.setCopies(copies.getOrDefault(bookId, book.getCopies()));
+            bookSearchIndex.put(snapshot);
+            entityCacheService.evictBook(bookId);
+        }
+    }
+
+    // One accepted item of a batch
+    private static class Loan {
+        final Book book;
+        final Student student;
+        final TransactionResponse dto;
+        int copiesAfter; // copies on the shelf right after this item was processed
+        final boolean wasOverdue;
+
+        Loan(Book book, Student student, TransactionResponse dto, int copiesAfter, boolean wasOverdue) {
+            this.book = book;
+            this.student = student;
+            this.dto = dto;
+            this.copiesAfter = copiesAfter;
+            this.wasOverdue = wasOverdue;
+        }
+    }
+}
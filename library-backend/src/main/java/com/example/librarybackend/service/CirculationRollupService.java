@@ -0,0 +1,313 @@
+package com.example.librarybackend.service;
+
+import com.example.librarybackend.model.CirculationRollup;
+import com.example.librarybackend.repository.CirculationRollupRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Maintains the circulation_rollups table that the analytics endpoints read from.
+ *
+ * Every issue or return adds one to the matching DAY and MONTH buckets for the book's genre
+ * and the student's cohort. The backfill job feeds whole chunks of old transactions through
+ * the same {@link Accumulator}, so both paths agree on how an event is bucketed.
+ *
+ * A transaction's events are collected as it runs and written just before it commits, one upsert
+ * per bucket, always in the same order. All issues of a genre on a day share bucket rows, so they
+ * are locked only while the transaction commits, and two transactions can't deadlock on them.
+ * A transaction that rolls back writes nothing.
+ *
+ * A rebuild fills circulation_rollups_staging from the transactions table and then swaps it in
+ * (see {@link Rebuild}). Events committed while it runs are kept aside too, and the ones the
+ * rebuild didn't read are added before the swap. The swap waits for transactions that are
+ * writing their rollups and holds new ones back until it is done, so no event is lost or
+ * counted twice. That waiting happens within this backend instance only.
+ */
+@Service
+public class CirculationRollupService {
+
+    public static final String PERIOD_DAY = "DAY";
+    public static final String PERIOD_MONTH = "MONTH";
+    public static final String DIMENSION_GENRE = "GENRE";
+    public static final String DIMENSION_COHORT = "COHORT";
+
+    // Buckets for books without a genre or students without a cohort
+    private static final String UNKNOWN_GENRE = "Unknown";
+    private static final String UNASSIGNED_COHORT = "Unassigned";
+
+    // The order buckets are written in, the same as the uk_rollup_bucket index
+    private static final Comparator<Bucket> BUCKET_ORDER = Comparator.comparing(Bucket::period)
+            .thenComparing(Bucket::dimension)
+            .thenComparing(Bucket::periodStart)
+            .thenComparing(Bucket::dimensionValue);
+
+    @Autowired
+    private CirculationRollupRepository rollupRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    // Held for reading by transactions while they write their rollups and commit, and for
+    // writing while a rebuild starts or is swapped in
+    private final ReentrantReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+    private Rebuild rebuild; // The running rebuild, if any; guarded by rebuildLock
+
+    public CirculationRollupService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // Called after a book has been issued, in the transaction that issued it
+    @Transactional
+    public void recordIssue(int transactionId, String genre, String cohort, LocalDateTime issueDate) {
+        pendingRollups().add(new Event(transactionId, false,
+                accumulator -> accumulator.addIssue(genre, cohort, issueDate)));
+    }
+
+    // Called after a book has been returned, in the transaction that returned it
+    @Transactional
+    public void recordReturn(int transactionId, String genre, String cohort, LocalDateTime dueDate,
+                             LocalDateTime returnDate, BigDecimal finePaid) {
+        pendingRollups().add(new Event(transactionId, true,
+                accumulator -> accumulator.addReturn(genre, cohort, dueDate, returnDate, finePaid)));
+    }
+
+    public List<CirculationRollup> findRange(String period, String dimension, LocalDate from, LocalDate to) {
+        return rollupRepository
+                .findByPeriodAndDimensionAndPeriodStartBetweenOrderByPeriodStartAscDimensionValueAsc(
+                        period, dimension, from, to);
+    }
+
+    // Starts a rebuild: empties the staging table and keeps every event committed from now on.
+    // Events committed before it returns are already in the transactions table.
+    public Rebuild startRebuild() {
+        transactionTemplate.executeWithoutResult(status -> rollupRepository.clearStaging());
+        rebuildLock.writeLock().lock();
+        try {
+            if (rebuild != null) {
+                throw new IllegalStateException("A circulation rollup rebuild is already running");
+            }
+            rebuild = new Rebuild();
+            return rebuild;
+        } finally {
+            rebuildLock.writeLock().unlock();
+        }
+    }
+
+    // Adds buckets the rebuild has collected from the transactions table to the staging table
+    public void addToRebuild(Accumulator accumulator) {
+        transactionTemplate.executeWithoutResult(status -> write(accumulator, true));
+    }
+
+    // Adds the events the rebuild didn't read to the staging table, and replaces the rollups with
+    // it in one DB transaction. Ends the rebuild, also if the swap fails.
+    public void finishRebuild(Rebuild finished) {
+        rebuildLock.writeLock().lock();
+        try {
+            Accumulator missed = finished.missedEvents();
+            transactionTemplate.executeWithoutResult(status -> {
+                write(missed, true);
+                rollupRepository.deleteAllInBatch();
+                rollupRepository.copyStagingIntoRollups();
+            });
+        } finally {
+            endRebuild(finished);
+            rebuildLock.writeLock().unlock();
+        }
+        transactionTemplate.executeWithoutResult(status -> rollupRepository.clearStaging());
+    }
+
+    // Gives up on a rebuild; the rollups stay as they were
+    public void abandonRebuild(Rebuild abandoned) {
+        rebuildLock.writeLock().lock();
+        try {
+            endRebuild(abandoned);
+        } finally {
+            rebuildLock.writeLock().unlock();
+        }
+    }
+
+    // Helper methods
+
+    private void endRebuild(Rebuild ended) {
+        if (rebuild == ended) {
+            rebuild = null;
+        }
+    }
+
+    private void write(Accumulator accumulator, boolean staging) {
+        accumulator.deltas.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(BUCKET_ORDER))
+                .forEach(entry -> {
+                    Bucket bucket = entry.getKey();
+                    Delta delta = entry.getValue();
+                    if (staging) {
+                        rollupRepository.addToStagingBucket(bucket.period(), bucket.periodStart(), bucket.dimension(),
+                                bucket.dimensionValue(), delta.issues, delta.returns, delta.overdueReturns, delta.fines);
+                    } else {
+                        rollupRepository.addToBucket(bucket.period(), bucket.periodStart(), bucket.dimension(),
+                                bucket.dimensionValue(), delta.issues, delta.returns, delta.overdueReturns, delta.fines);
+                    }
+                });
+    }
+
+    // The events recorded in the current transaction. Kept in a synchronization registered on
+    // the first one, which writes them when the transaction commits.
+    private PendingRollups pendingRollups() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingRollups pending && pending.owner() == this) {
+                return pending;
+            }
+        }
+        PendingRollups pending = new PendingRollups();
+        TransactionSynchronizationManager.registerSynchronization(pending);
+        return pending;
+    }
+
+    private final class PendingRollups implements TransactionSynchronization {
+        private final List<Event> events = new ArrayList<>();
+        private boolean locked;
+
+        CirculationRollupService owner() {
+            return CirculationRollupService.this;
+        }
+
+        void add(Event event) {
+            events.add(event);
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            // Write the transaction's other changes first, so that while the lock is held only
+            // bucket rows are waited on: a rebuild waiting for the lock holds back other
+            // transactions, which may hold rows this one would otherwise need
+            rollupRepository.flush();
+            rebuildLock.readLock().lock();
+            locked = true;
+            Accumulator accumulator = new Accumulator();
+            events.forEach(event -> event.change().accept(accumulator));
+            write(accumulator, false);
+        }
+
+        @Override
+        public void afterCommit() {
+            if (rebuild != null) {
+                rebuild.committed.addAll(events);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (locked) {
+                rebuildLock.readLock().unlock();
+            }
+        }
+    }
+
+    // One issue or return, and how to add it to an accumulator
+    private record Event(int transactionId, boolean isReturn, Consumer<Accumulator> change) {
+    }
+
+    // One run of the rebuild: which issues and returns it has read from the transactions table,
+    // and the events committed since it started. Its reads are only made on the rebuilding thread.
+    public static final class Rebuild {
+        private final BitSet issuesRead = new BitSet();
+        private final BitSet returnsRead = new BitSet();
+        private final Queue<Event> committed = new ConcurrentLinkedQueue<>();
+
+        private Rebuild() {
+        }
+
+        public void readIssue(int transactionId) {
+            issuesRead.set(transactionId);
+        }
+
+        public void readReturn(int transactionId) {
+            returnsRead.set(transactionId);
+        }
+
+        // The committed events whose rows were read before the event or not at all
+        private Accumulator missedEvents() {
+            Accumulator accumulator = new Accumulator();
+            for (Event event : committed) {
+                BitSet read = event.isReturn() ? returnsRead : issuesRead;
+                if (!read.get(event.transactionId())) {
+                    event.change().accept(accumulator);
+                }
+            }
+            return accumulator;
+        }
+    }
+
+    // Collects the changes for many issue/return events so each bucket is written only once
+    public static class Accumulator {
+        private final Map<Bucket, Delta> deltas = new HashMap<>();
+
+        public void addIssue(String genre, String cohort, LocalDateTime issueDate) {
+            for (Delta delta : deltasFor(genre, cohort, issueDate.toLocalDate())) {
+                delta.issues++;
+            }
+        }
+
+        public void addReturn(String genre, String cohort, LocalDateTime dueDate,
+                              LocalDateTime returnDate, BigDecimal finePaid) {
+            boolean late = dueDate != null && returnDate.isAfter(dueDate);
+            BigDecimal fine = finePaid != null ? finePaid : BigDecimal.ZERO;
+            for (Delta delta : deltasFor(genre, cohort, returnDate.toLocalDate())) {
+                delta.returns++;
+                if (late) {
+                    delta.overdueReturns++;
+                }
+                delta.fines = delta.fines.add(fine);
+            }
+        }
+
+        public boolean isEmpty() {
+            return deltas.isEmpty();
+        }
+
+        // The four buckets one event lands in: day and month, by genre and by cohort
+        private Delta[] deltasFor(String genre, String cohort, LocalDate day) {
+            String genreKey = (genre == null || genre.isBlank()) ? UNKNOWN_GENRE : genre;
+            String cohortKey = (cohort == null || cohort.isBlank()) ? UNASSIGNED_COHORT : cohort;
+            LocalDate month = day.withDayOfMonth(1);
+            return new Delta[] {
+                    delta(new Bucket(PERIOD_DAY, day, DIMENSION_GENRE, genreKey)),
+                    delta(new Bucket(PERIOD_MONTH, month, DIMENSION_GENRE, genreKey)),
+                    delta(new Bucket(PERIOD_DAY, day, DIMENSION_COHORT, cohortKey)),
+                    delta(new Bucket(PERIOD_MONTH, month, DIMENSION_COHORT, cohortKey))
+            };
+        }
+
+        private Delta delta(Bucket bucket) {
+            return deltas.computeIfAbsent(bucket, b -> new Delta());
+        }
+    }
+
+    private record Bucket(String period, LocalDate periodStart, String dimension, String dimensionValue) {
+    }
+
+    private static class Delta {
+        private long issues;
+        private long returns;
+        private long overdueReturns;
+        private BigDecimal fines = BigDecimal.ZERO;
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.librarybackend.service;
+
+import com.example.librarybackend.model.Book;
+import com.example.librarybackend.model.Student;
+import com.example.librarybackend.repository.BookRepository;
+import com.example.librarybackend.repository.StudentRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Read-through cache for looking up books and students by id, and students by email.
+ *
+ * Almost all lookups hit a small set of popular textbooks and active students, so a few
+ * thousand entries absorb most of them. Entries expire after a fixed time and the caches are
+ * size-bounded (Caffeine evicts by frequency and recency), so memory stays flat.
+ *
+ * Callers get their own copy of the cached object, never the shared one, so changing a result
+ * can't corrupt the cache. Code that is about to modify and save an entity should load it from
+ * the repository instead, and every write path must call the matching evict method.
+ *
+ * Inside a DB transaction the eviction happens once the transaction has ended. Evicting earlier
+ * would let a concurrent lookup reload the row as it was before the commit and serve it until
+ * the entry expires.
+ */
+@Service
+public class EntityCacheService {
+
+    @Autowired private BookRepository bookRepository;
+    @Autowired private StudentRepository studentRepository;
+
+    private final Cache<String, Optional<Book>> booksById;
+    private final Cache<String, Optional<Student>> studentsById;
+    // Secondary index: email -> student id. The student itself lives in studentsById.
+    private final Cache<String, Optional<String>> studentIdsByEmail;
+
+    public EntityCacheService(@Value("${library.cache.books.max-size:10000}") long maxBooks,
+                              @Value("${library.cache.students.max-size:20000}") long maxStudents,
+                              @Value("${library.cache.ttl:PT10M}") Duration ttl) {
+        this.booksById = Caffeine.newBuilder()
+                .maximumSize(maxBooks).expireAfterWrite(ttl).recordStats().build();
+        this.studentsById = Caffeine.newBuilder()
+                .maximumSize(maxStudents).expireAfterWrite(ttl).recordStats().build();
+        this.studentIdsByEmail = Caffeine.newBuilder()
+                .maximumSize(maxStudents).expireAfterWrite(ttl).recordStats().build();
+    }
+
+    public Optional<Book> findBook(String id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return booksById.get(id, key -> bookRepository.findById(key).map(EntityCacheService::copyOf))
+                .map(EntityCacheService::copyOf);
+    }
+
+    public Optional<Student> findStudent(String id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return studentsById.get(id, key -> studentRepository.findById(key).map(EntityCacheService::copyOf))
+                .map(EntityCacheService::copyOf);
+    }
+
+    public Optional<Student> findStudentByEmail(String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        Optional<String> studentId = studentIdsByEmail.get(email, key -> {
+            Optional<Student> student = studentRepository.findByEmail(key);
+            // Seed the id cache too, so the login that caused this lookup doesn't query twice
+            student.ifPresent(s -> studentsById.put(s.getId(), Optional.of(copyOf(s))));
+            return student.map(Student::getId);
+        });
+        return studentId.flatMap(this::findStudent);
+    }
+
+    // Call after a book was created, changed (including its copies) or deleted
+    public void evictBook(String id) {
+        if (id != null) {
+            afterTransaction(() -> booksById.invalidate(id));
+        }
+    }
+
+    // Call after a student was created, changed or deleted.
+    // Pass every email the student had before and after the change.
+    public void evictStudent(String id, String... emails) {
+        afterTransaction(() -> {
+            if (id != null) {
+                studentsById.invalidate(id);
+            }
+            for (String email : emails) {
+                if (email != null) {
+                    studentIdsByEmail.invalidate(email);
+                }
+            }
+        });
+    }
+
+    // Hit ratio, evictions and size per cache
+    public Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        stats.put("booksById", statsOf(booksById));
+        stats.put("studentsById", statsOf(studentsById));
+        stats.put("studentIdsByEmail", statsOf(studentIdsByEmail));
+        return stats;
+    }
+
+    // Helper methods
+
+    // Runs the eviction once the current DB transaction has committed, or right away without one.
+    // After a rollback too: a lookup inside the transaction may have cached a row that was never committed.
+    private static void afterTransaction(Runnable eviction) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    eviction.run();
+                }
+            });
+        } else {
+            eviction.run();
+        }
+    }
+
+    private static Map<String, Object> statsOf(Cache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("size", cache.estimatedSize());
+        values.put("hitCount", stats.hitCount());
+        values.put("missCount", stats.missCount());
+        values.put("hitRatio", stats.hitRate());
+        values.put("evictionCount", stats.evictionCount());
+        values.put("averageLoadMillis", stats.averageLoadPenalty() / 1_000_000.0);
+        return values;
+    }
+
+    private static Book copyOf(Book book) {
+        Book copy = new Book();
+        copy.setId(book.getId());
+        copy.setTitle(book.getTitle());
+        copy.setAuthor(book.getAuthor());
+        copy.setGenre(book.getGenre());
+        copy.setCopies(book.getCopies());
+        copy.setImagePath(book.getImagePath());
+        copy.setChangeVersion(book.getChangeVersion());
+        return copy;
+    }
+
+    private static Student copyOf(Student student) {
+        Student copy = new Student();
+        copy.setId(student.getId());
+        copy.setName(student.getName());
+        copy.setEmail(student.getEmail());
+        copy.setContact(student.getContact());
+        copy.setCohort(student.getCohort());
+        copy.setPasswordHash(student.getPasswordHash());
+        copy.setChangeVersion(student.getChangeVersion());
+        return copy;
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.librarybackend.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads an uploaded import file one row at a time, as column name -> value.
+ *
+ * CSV files need a header row; quoted values may contain commas, doubled quotes and line
+ * breaks. JSON files are a top-level array of flat objects. Either way only the current row
+ * is held in memory. Column names are lower-cased so "ISBN", "Isbn" and "isbn" are the same.
+ */
+public abstract class ImportRowReader implements Closeable {
+
+    // The next row, or null at the end of the file
+    public abstract Map<String, String> next() throws IOException;
+
+    public static ImportRowReader csv(InputStream in) {
+        return new CsvReader(in);
+    }
+
+    public static ImportRowReader json(InputStream in, ObjectMapper objectMapper) throws IOException {
+        return new JsonReader(in, objectMapper);
+    }
+
+    private static class CsvReader extends ImportRowReader {
+        private final BufferedReader reader;
+        private List<String> header;
+
+        CsvReader(InputStream in) {
+            this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+        }
+
+        @Override
+        public Map<String, String> next() throws IOException {
+            if (header == null) {
+                List<String> names = readRecord();
+                if (names == null) {
+                    return null;
+                }
+                header = new ArrayList<>();
+                for (String name : names) {
+                    header.add(name.replace("﻿", "").trim().toLowerCase(Locale.ROOT));
+                }
+            }
+
+            List<String> values;
+            do {
+                values = readRecord();
+                if (values == null) {
+                    return null;
+                }
+            } while (values.size() == 1 && values.get(0).isBlank()); // Skip empty lines
+
+            Map<String, String> row = new HashMap<>();
+            for (int i = 0; i < header.size() && i < values.size(); i++) {
+                row.put(header.get(i), values.get(i));
+            }
+            return row;
+        }
+
+        // One CSV record, which may span several lines if a quoted value contains line breaks
+        private List<String> readRecord() throws IOException {
+            String line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            List<String> values = new ArrayList<>();
+            StringBuilder value = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                for (int i = 0; i < line.length(); i++) {
+                    char c = line.charAt(i);
+                    if (quoted) {
+                        if (c == '"') {
+                            if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                                value.append('"');
+                                i++;
+                            } else {
+                                quoted = false;
+                            }
+                        } else {
+                            value.append(c);
+                        }
+                    } else if (c == '"') {
+                        quoted = true;
+                    } else if (c == ',') {
+                        values.add(value.toString());
+                        value.setLength(0);
+                    } else {
+                        value.append(c);
+                    }
+                }
+                if (!quoted) {
+                    break;
+                }
+                // The quoted value continues on the next line
+                line = reader.readLine();
+                if (line == null) {
+                    break;
+                }
+                value.append('\n');
+            }
+            values.add(value.toString());
+            return values;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    private static class JsonReader extends ImportRowReader {
+        private final JsonParser parser;
+        private final ObjectMapper objectMapper;
+
+        JsonReader(InputStream in, ObjectMapper objectMapper) throws IOException {
+            this.objectMapper = objectMapper;
+            this.parser = objectMapper.getFactory().createParser(in);
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array of objects");
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Map<String, String> next() throws IOException {
+            JsonToken token = parser.nextToken();
+            if (token == null || token == JsonToken.END_ARRAY) {
+                return null;
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object at line " + parser.currentLocation().getLineNr());
+            }
+            Map<String, Object> object = objectMapper.readValue(parser, Map.class);
+            Map<String, String> row = new HashMap<>();
+            object.forEach((key, value) ->
+                    row.put(key.toLowerCase(Locale.ROOT), value == null ? null : value.toString()));
+            return row;
+        }
+
+        @Override
+        public void close() throws IOException {
+            parser.close();
+        }
+    }
+}
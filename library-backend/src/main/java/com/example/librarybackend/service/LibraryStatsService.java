@@ -0,0 +1,181 @@
+package com.example.librarybackend.service;
+
+import com.example.librarybackend.dto.DashboardSummaryResponse;
+import com.example.librarybackend.repository.BookRepository;
+import com.example.librarybackend.repository.ReservationRepository;
+import com.example.librarybackend.repository.StudentRepository;
+import com.example.librarybackend.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the librarian dashboard totals in memory.
+ *
+ * The controllers call the on...() methods after they change books, students, loans or
+ * reservations, so reading the summary never touches the database. Overdue loans change
+ * with the clock rather than with writes, and a counter can drift if a write fails half way,
+ * so reconcile() recounts everything from the database on a fixed schedule.
+ *
+ * Called inside a DB transaction, an on...() method changes the counters only once the
+ * transaction commits, so a loan or book that is rolled back never shows on the dashboard.
+ */
+@Service
+public class LibraryStatsService {
+
+    private static final Logger log = LoggerFactory.getLogger(LibraryStatsService.class);
+
+    @Autowired private BookRepository bookRepository;
+    @Autowired private StudentRepository studentRepository;
+    @Autowired private TransactionRepository transactionRepository;
+    @Autowired private ReservationRepository reservationRepository;
+
+    private final AtomicLong totalTitles = new AtomicLong();
+    private final AtomicLong totalCopies = new AtomicLong();      // copies currently on the shelf
+    private final AtomicLong availableTitles = new AtomicLong();  // titles with at least one copy on the shelf
+    private final AtomicLong totalMembers = new AtomicLong();
+    private final AtomicLong issuedBooks = new AtomicLong();      // open loans
+    private final AtomicLong overdueBooks = new AtomicLong();
+    private final AtomicLong returnedBooks = new AtomicLong();
+    private final AtomicLong reservedBooks = new AtomicLong();
+    private volatile LocalDateTime lastReconciledAt;
+
+    // Read the current totals - no database access
+    public DashboardSummaryResponse getSummary() {
+        DashboardSummaryResponse summary = new DashboardSummaryResponse();
+        long issued = issuedBooks.get();
+        long returned = returnedBooks.get();
+        summary.setTotalTitles(totalTitles.get());
+        summary.setTotalCopies(totalCopies.get());
+        summary.setAvailableTitles(availableTitles.get());
+        summary.setTotalMembers(totalMembers.get());
+        summary.setIssuedBooks(issued);
+        summary.setOverdueBooks(overdueBooks.get());
+        summary.setReservedBooks(reservedBooks.get());
+        summary.setReturnedBooks(returned);
+        summary.setReturnRate(issued + returned > 0
+                ? Math.round(returned * 1000.0 / (issued + returned)) / 10.0
+                : 0);
+        summary.setLastReconciledAt(lastReconciledAt);
+        return summary;
+    }
+
+    // Recount everything from the database. Runs once at startup and then on a fixed delay.
+    // A write that lands while this runs may be counted twice or not at all; the next run fixes it.
+    @Scheduled(fixedDelayString = "${library.stats.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        try {
+            totalTitles.set(bookRepository.count());
+            totalCopies.set(bookRepository.sumCopies());
+            availableTitles.set(bookRepository.countByCopiesGreaterThan(0));
+            totalMembers.set(studentRepository.count());
+            long open = transactionRepository.countByReturnDateIsNull();
+            issuedBooks.set(open);
+            returnedBooks.set(transactionRepository.count() - open);
+            overdueBooks.set(transactionRepository.countByReturnDateIsNullAndDueDateBefore(LocalDateTime.now()));
+            reservedBooks.set(reservationRepository.count());
+            lastReconciledAt = LocalDateTime.now();
+        } catch (RuntimeException e) {
+            // Keep serving the last known values; we'll try again on the next run
+            log.warn("Could not reconcile dashboard stats: {}", e.getMessage());
+        }
+    }
+
+    // --- Books ---
+    public void onBookAdded(int copies) {
+        afterCommit(() -> {
+            totalTitles.incrementAndGet();
+            totalCopies.addAndGet(copies);
+            if (copies > 0) {
+                availableTitles.incrementAndGet();
+            }
+        });
+    }
+
+    public void onBookCopiesChanged(int oldCopies, int newCopies) {
+        afterCommit(() -> applyCopiesChanged(oldCopies, newCopies));
+    }
+
+    public void onBookDeleted(int copies) {
+        afterCommit(() -> {
+            totalTitles.decrementAndGet();
+            totalCopies.addAndGet(-copies);
+            if (copies > 0) {
+                availableTitles.decrementAndGet();
+            }
+        });
+    }
+
+    // --- Students ---
+    public void onStudentAdded() {
+        afterCommit(totalMembers::incrementAndGet);
+    }
+
+    public void onStudentDeleted() {
+        afterCommit(totalMembers::decrementAndGet);
+    }
+
+    // --- Loans ---
+    // copiesAfter is the number of copies left on the shelf once the book went out
+    public void onBookIssued(int copiesAfter) {
+        afterCommit(() -> {
+            issuedBooks.incrementAndGet();
+            applyCopiesChanged(copiesAfter + 1, copiesAfter);
+        });
+    }
+
+    // copiesAfter is the number of copies on the shelf once the book came back
+    public void onBookReturned(int copiesAfter, boolean wasOverdue) {
+        afterCommit(() -> {
+            issuedBooks.decrementAndGet();
+            returnedBooks.incrementAndGet();
+            if (wasOverdue) {
+                overdueBooks.updateAndGet(count -> Math.max(0, count - 1));
+            }
+            applyCopiesChanged(copiesAfter - 1, copiesAfter);
+        });
+    }
+
+    // --- Reservations ---
+    public void onReservationCreated() {
+        afterCommit(reservedBooks::incrementAndGet);
+    }
+
+    public void onReservationDeleted() {
+        afterCommit(reservedBooks::decrementAndGet);
+    }
+
+    // Helper methods
+
+    private void applyCopiesChanged(int oldCopies, int newCopies) {
+        totalCopies.addAndGet(newCopies - oldCopies);
+        if (oldCopies <= 0 && newCopies > 0) {
+            availableTitles.incrementAndGet();
+        } else if (oldCopies > 0 && newCopies <= 0) {
+            availableTitles.decrementAndGet();
+        }
+    }
+
+    // Runs the counter update once the surrounding transaction commits (dropped if it rolls back),
+    // or straight away outside a transaction. Updates made from afterCommit itself can't register
+    // another synchronization, hence applyCopiesChanged rather than onBookCopiesChanged above.
+    private static void afterCommit(Runnable update) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update.run();
+                }
+            });
+        } else {
+            update.run();
+        }
+    }
+}
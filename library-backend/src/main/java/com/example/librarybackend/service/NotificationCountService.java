@@ -0,0 +1,282 @@
+package com.example.librarybackend.service;
+
+import com.example.librarybackend.repository.NotificationRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pushes unread notification counts to the browser over Server-Sent Events.
+ *
+ * While a user has at least one open stream we keep their unread count in memory. The
+ * controllers report every notification that is created, read or deleted, and the new count
+ * is sent only when it actually changed. The count is read from the database when the first
+ * stream for that user opens, and forgotten when the last one closes, so memory is bounded by
+ * the number of connected users.
+ *
+ * The stream is registered before the count is read, so a change that commits in between is
+ * not lost; a read that overlapped a change is retried. A change reported just after the read
+ * that already saw it would still be counted twice, so each heartbeat also reloads the counts
+ * of all connected users from the database, in a few grouped queries.
+ *
+ * Idle streams cost no request thread (they are async), only a periodic heartbeat comment
+ * that keeps proxies from closing them. Connections are capped globally and per user.
+ */
+@Service
+public class NotificationCountService {
+
+    // Users whose counts one resync query reloads
+    private static final int RESYNC_BATCH_SIZE = 500;
+    // Reads of a new user's count that may overlap a change before we take the count as it is
+    private static final int MAX_LOAD_ATTEMPTS = 3;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Value("${library.notifications.sse.max-connections:5000}")
+    private int maxConnections;
+
+    @Value("${library.notifications.sse.max-connections-per-user:3}")
+    private int maxConnectionsPerUser;
+
+    @Value("${library.notifications.sse.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    private final Map<String, UserStreams> streamsByUser = new ConcurrentHashMap<>();
+    private final AtomicInteger openConnections = new AtomicInteger();
+
+    // Open a new stream for a user. The current count is sent straight away.
+    public SseEmitter subscribe(String userId) {
+        if (openConnections.incrementAndGet() > maxConnections) {
+            openConnections.decrementAndGet();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many notification streams");
+        }
+
+        // Clients reconnect on their own once the timeout closes the stream
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        UserStreams owner = streamsByUser.compute(userId, (id, existing) -> {
+            UserStreams streams = existing != null ? existing : new UserStreams();
+            streams.emitters.add(emitter);
+            return streams;
+        });
+        // Read the count only now that changes are being collected for the user, and outside the map's lock
+        for (int attempt = 1; !owner.loaded; attempt++) {
+            long changesBefore = owner.changes.get();
+            long countFromDb = notificationRepository.countByUserIdAndIsReadFalse(userId);
+            setFromDatabase(userId, owner, changesBefore, countFromDb, attempt >= MAX_LOAD_ATTEMPTS);
+        }
+
+        Runnable cleanup = () -> detach(userId, owner, emitter);
+        emitter.onCompletion(cleanup);
+        emitter.onTimeout(cleanup);
+        emitter.onError(error -> cleanup.run());
+
+        // A new tab beyond the per-user limit replaces the oldest stream
+        while (owner.emitters.size() > maxConnectionsPerUser) {
+            SseEmitter oldest = owner.emitters.get(0);
+            detach(userId, owner, oldest);
+            oldest.complete();
+        }
+
+        send(userId, owner, emitter, countEvent(owner.unread.get()));
+        return emitter;
+    }
+
+    // Unread count for a user: from memory if they have a stream open, otherwise from the database
+    public long getUnreadCount(String userId) {
+        UserStreams streams = streamsByUser.get(userId);
+        return streams != null && streams.loaded
+                ? streams.unread.get() : notificationRepository.countByUserIdAndIsReadFalse(userId);
+    }
+
+    // A new unread notification was saved for this user
+    public void onCreated(String userId) {
+        afterCommit(() -> adjust(userId, 1));
+    }
+
+    // Several new unread notifications were saved for this user at once
+    public void onCreated(String userId, long count) {
+        if (count > 0) {
+            afterCommit(() -> adjust(userId, count));
+        }
+    }
+
+    // This many of the user's unread notifications were marked read or deleted
+    public void onRemovedFromUnread(String userId, long count) {
+        if (count > 0) {
+            afterCommit(() -> adjust(userId, -count));
+        }
+    }
+
+    // All of the user's notifications were marked read or cleared
+    public void onAllRemovedFromUnread(String userId) {
+        afterCommit(() -> {
+            UserStreams streams = streamsByUser.get(userId);
+            if (streams != null) {
+                streams.changes.incrementAndGet();
+                streams.unread.set(0);
+                pushIfChanged(userId, streams);
+            }
+        });
+    }
+
+    // Comment line that keeps idle connections open through proxies and load balancers,
+    // and finds dead connections so they can be released. Then the counts are resynced.
+    @Scheduled(fixedRateString = "${library.notifications.sse.heartbeat-interval-ms:25000}")
+    public void sendHeartbeats() {
+        streamsByUser.forEach((userId, streams) -> {
+            for (SseEmitter emitter : streams.emitters) {
+                send(userId, streams, emitter, SseEmitter.event().comment("heartbeat"));
+            }
+        });
+        resyncCounts();
+    }
+
+    // Reload the unread count of every connected user from the database and push the ones that
+    // were off. A user whose count changed while it was being read keeps it until the next run.
+    public void resyncCounts() {
+        List<String> userIds = new ArrayList<>(streamsByUser.keySet());
+        for (int from = 0; from < userIds.size(); from += RESYNC_BATCH_SIZE) {
+            List<String> batch = userIds.subList(from, Math.min(from + RESYNC_BATCH_SIZE, userIds.size()));
+            Map<String, UserStreams> streamsById = new HashMap<>();
+            Map<String, Long> changesBefore = new HashMap<>();
+            for (String userId : batch) {
+                UserStreams streams = streamsByUser.get(userId);
+                if (streams != null && streams.loaded) {
+                    streamsById.put(userId, streams);
+                    changesBefore.put(userId, streams.changes.get());
+                }
+            }
+            if (streamsById.isEmpty()) {
+                continue;
+            }
+            Map<String, Long> counts = new HashMap<>();
+            for (Object[] row : notificationRepository.countUnreadByUserIds(streamsById.keySet())) {
+                counts.put((String) row[0], (Long) row[1]);
+            }
+            streamsById.forEach((userId, streams) ->
+                    setFromDatabase(userId, streams, changesBefore.get(userId), counts.getOrDefault(userId, 0L), false));
+        }
+    }
+
+    public int getOpenConnections() {
+        return openConnections.get();
+    }
+
+    // Helper methods
+
+    private void adjust(String userId, long delta) {
+        UserStreams streams = streamsByUser.get(userId);
+        if (streams == null) {
+            return; // Nobody is listening; the count is read fresh when they connect
+        }
+        streams.changes.incrementAndGet();
+        streams.unread.updateAndGet(value -> Math.max(0, value + delta));
+        pushIfChanged(userId, streams);
+    }
+
+    // Take a count read from the database, unless the count changed while it was being read
+    // (or force is set). The first count of a new user is sent by subscribe(), not pushed here.
+    private void setFromDatabase(String userId, UserStreams streams, long changesBefore, long count, boolean force) {
+        streams.sendLock.lock();
+        try {
+            if (streams.changes.get() != changesBefore && !force) {
+                return;
+            }
+            streams.unread.set(count);
+            if (!streams.loaded) {
+                streams.lastSent = count;
+                streams.loaded = true;
+                return;
+            }
+            pushIfChanged(userId, streams);
+        } finally {
+            streams.sendLock.unlock();
+        }
+    }
+
+    private void pushIfChanged(String userId, UserStreams streams) {
+        // A lock rather than synchronized: sending writes to the socket, and a virtual thread
+        // blocked inside synchronized would pin its carrier thread (JDK 21-23)
+        streams.sendLock.lock();
+        try {
+            long unread = streams.unread.get();
+            if (!streams.loaded || unread == streams.lastSent) {
+                return;
+            }
+            streams.lastSent = unread;
+            for (SseEmitter emitter : streams.emitters) {
+                send(userId, streams, emitter, countEvent(unread));
+            }
+        } finally {
+            streams.sendLock.unlock();
+        }
+    }
+
+    private SseEmitter.SseEventBuilder countEvent(long unread) {
+        return SseEmitter.event().name("unread-count").data(Map.of("count", unread));
+    }
+
+    private void send(String userId, UserStreams streams, SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            // The browser went away; drop the stream
+            detach(userId, streams, emitter);
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void detach(String userId, UserStreams streams, SseEmitter emitter) {
+        if (streams.emitters.remove(emitter)) {
+            openConnections.decrementAndGet();
+        }
+        // Forget the user once their last stream is gone (atomically, so a stream that is
+        // being added at the same moment keeps the entry alive)
+        streamsByUser.computeIfPresent(userId, (id, current) ->
+                current == streams && current.emitters.isEmpty() ? null : current);
+    }
+
+    // Counts are pushed only once the change is committed, so a client that reacts to the
+    // event by fetching its notifications is guaranteed to see the new ones
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    // Everything we keep for one connected user
+    private static class UserStreams {
+        private final AtomicLong unread = new AtomicLong();
+        // Bumped by every reported change, so a database read can tell whether it overlapped one
+        private final AtomicLong changes = new AtomicLong();
+        private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+        private final ReentrantLock sendLock = new ReentrantLock();
+        private long lastSent; // guarded by sendLock
+        private volatile boolean loaded; // unread holds a count read from the database; set under sendLock
+    }
+}
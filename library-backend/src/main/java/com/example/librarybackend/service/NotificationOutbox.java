@@ -0,0 +1,65 @@
+package com.example.librarybackend.service;
+
+import com.example.librarybackend.model.NotificationOutboxEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Queues notifications for delivery instead of writing them to the notifications table directly.
+ *
+ * An event is a single narrow row in notification_outbox, inserted in the caller's DB
+ * transaction: if the issue/return rolls back, so does its notification, and once it commits
+ * the notification is guaranteed to be delivered, even if the server dies right after.
+ * NotificationOutboxWriter does the actual notifications insert in the background, so the
+ * size and indexes of the notifications table no longer add to desk latency.
+ */
+@Service
+public class NotificationOutbox {
+
+    private static final String INSERT_EVENT_SQL =
+            "INSERT INTO notification_outbox (user_id, type, message, related_book_id, related_transaction_id, " +
+            "created_at, attempts, next_attempt_at) VALUES (?, ?, ?, ?, ?, ?, 0, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Queue one notification. Call inside the transaction that makes the change it reports.
+    public void enqueue(String userId, String type, String message, String relatedBookId,
+                        Integer relatedTransactionId) {
+        NotificationOutboxEvent event = new NotificationOutboxEvent();
+        event.setUserId(userId);
+        event.setType(type);
+        event.setMessage(message);
+        event.setRelatedBookId(relatedBookId);
+        event.setRelatedTransactionId(relatedTransactionId);
+        enqueueAll(List.of(event));
+    }
+
+    // Queue several notifications with one JDBC batch
+    public void enqueueAll(List<NotificationOutboxEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_EVENT_SQL, events, events.size(), (ps, event) -> {
+            ps.setString(1, event.getUserId());
+            ps.setString(2, event.getType());
+            ps.setString(3, event.getMessage());
+            ps.setString(4, event.getRelatedBookId());
+            if (event.getRelatedTransactionId() != null) {
+                ps.setInt(5, event.getRelatedTransactionId());
+            } else {
+                ps.setNull(5, Types.INTEGER);
+            }
+            Timestamp createdAt = event.getCreatedAt() != null ? Timestamp.valueOf(event.getCreatedAt()) : now;
+            ps.setTimestamp(6, createdAt);
+            ps.setTimestamp(7, createdAt);
+        });
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.librarybackend.service;
+
+import com.example.librarybackend.model.NotificationOutboxEvent;
+import com.example.librarybackend.repository.NotificationOutboxRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moves queued notifications from notification_outbox into the notifications table.
+ *
+ * Every poll claims the oldest due events in batches: in one DB transaction the events are
+ * locked, inserted into notifications with one JDBC batch, and deleted from the outbox. The lock
+ * skips rows another writer holds, so each backend instance gets its own events. An event is
+ * delivered exactly once, even if the server dies halfway or several instances poll together.
+ * A poll writes at most max-batches-per-run batches, which caps how hard a burst of circulation
+ * can hit the notifications table; anything beyond that simply waits in the outbox for the next poll.
+ *
+ * If a batch fails because of the data, its events are retried one by one so a single bad
+ * event can't hold up the rest; if the database itself is unavailable, nothing is counted
+ * against the events. A failing event is retried with exponential backoff and parked (next_attempt_at NULL)
+ * after max-attempts failures, where it stays for someone to look at.
+ *
+ * Polls run on a thread of their own rather than the shared @Scheduled one, so notifications
+ * never wait behind the overdue scan, the retention job or the other long housekeeping jobs.
+ */
+@Component
+public class NotificationOutboxWriter {
+
+    // Longest wait between two attempts for the same event
+    private static final long MAX_BACKOFF_SECONDS = 600;
+
+    private static final String INSERT_NOTIFICATION_SQL =
+            "INSERT INTO notifications (user_id, message, type, is_read, created_at, related_book_id, related_transaction_id) " +
+            "VALUES (?, ?, ?, false, ?, ?, ?)";
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationOutboxWriter.class);
+
+    @Autowired private NotificationOutboxRepository outboxRepository;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private NotificationCountService notificationCountService;
+
+    @Value("${library.notifications.outbox.batch-size:500}")
+    private int batchSize;
+
+    @Value("${library.notifications.outbox.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+
+    @Value("${library.notifications.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${library.notifications.outbox.poll-interval-ms:500}")
+    private long pollIntervalMs;
+
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final ScheduledExecutorService executor;
+
+    public NotificationOutboxWriter(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("notification-outbox-");
+        threadFactory.setDaemon(true);
+        this.executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    }
+
+    @PostConstruct
+    public void start() {
+        executor.scheduleWithFixedDelay(this::drain, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public void drain() {
+        if (!running.compareAndSet(false, true)) {
+            return; // Already draining on another thread (a direct call during a poll)
+        }
+        try {
+            for (int i = 0; i < maxBatchesPerRun; i++) {
+                if (deliverBatch() < batchSize) {
+                    break; // The outbox is empty (or everything left is waiting to be retried)
+                }
+            }
+        } catch (RuntimeException e) {
+            // Usually the database is unavailable; the events are safe in the outbox until the next poll
+            log.warn("Could not deliver queued notifications: {}", e.getMessage());
+        } finally {
+            running.set(false);
+        }
+    }
+
+    // Events waiting for delivery, and events that failed too often and were parked
+    public Map<String, Long> getBacklog() {
+        return Map.of(
+                "pending", outboxRepository.countByNextAttemptAtIsNotNull(),
+                "parked", outboxRepository.countByNextAttemptAtIsNull());
+    }
+
+    // Helper methods
+
+    // Deliver the next batch of due events. Returns how many events were taken from the outbox.
+    private int deliverBatch() {
+        List<Long> claimed = new ArrayList<>();
+        try {
+            List<NotificationOutboxEvent> events = transactionTemplate.execute(status -> {
+                List<NotificationOutboxEvent> due = outboxRepository
+                        .findDueForUpdate(LocalDateTime.now(), Limit.of(batchSize));
+                due.forEach(event -> claimed.add(event.getId()));
+                deliver(due);
+                return due;
+            });
+            updateUnreadCounts(events);
+        } catch (TransientDataAccessException | RecoverableDataAccessException | DataAccessResourceFailureException e) {
+            // The database is struggling, not the events: leave them untouched for the next poll
+            throw e;
+        } catch (DataAccessException batchFailure) {
+            // The batch was rolled back, locks included, so each event is claimed again on its own
+            for (Long id : claimed) {
+                deliverOne(id);
+            }
+        }
+        return claimed.size();
+    }
+
+    // Skips the event if another writer has delivered it, or is holding it, since the batch failed
+    private void deliverOne(Long id) {
+        NotificationOutboxEvent delivered;
+        try {
+            delivered = transactionTemplate.execute(status -> outboxRepository.findByIdForUpdate(id)
+                    .map(event -> {
+                        deliver(List.of(event));
+                        return event;
+                    })
+                    .orElse(null));
+        } catch (DataAccessException e) {
+            recordFailure(id, e);
+            return;
+        }
+        if (delivered != null) {
+            updateUnreadCounts(List.of(delivered));
+        }
+    }
+
+    private void deliver(List<NotificationOutboxEvent> events) {
+        jdbcTemplate.batchUpdate(INSERT_NOTIFICATION_SQL, events, events.size(), (ps, event) -> {
+            ps.setString(1, event.getUserId());
+            ps.setString(2, event.getMessage());
+            ps.setString(3, event.getType());
+            ps.setTimestamp(4, Timestamp.valueOf(event.getCreatedAt()));
+            ps.setString(5, event.getRelatedBookId());
+            if (event.getRelatedTransactionId() != null) {
+                ps.setInt(6, event.getRelatedTransactionId());
+            } else {
+                ps.setNull(6, Types.INTEGER);
+            }
+        });
+        List<Long> ids = new ArrayList<>(events.size());
+        for (NotificationOutboxEvent event : events) {
+            ids.add(event.getId());
+        }
+        outboxRepository.deleteAllByIdInBatch(ids);
+    }
+
+    private void recordFailure(Long id, DataAccessException e) {
+        try {
+            // Claimed again, so a row another writer has delivered and deleted meanwhile isn't resurrected
+            transactionTemplate.executeWithoutResult(status -> outboxRepository.findByIdForUpdate(id)
+                    .ifPresent(event -> scheduleRetry(event, e)));
+        } catch (DataAccessException saveFailure) {
+            // The event stays due and is simply retried on the next poll
+            log.warn("Could not record failed delivery of outbox event {}: {}", id, saveFailure.getMessage());
+        }
+    }
+
+    // Changes to the managed event are written when the surrounding DB transaction commits
+    private void scheduleRetry(NotificationOutboxEvent event, DataAccessException e) {
+        event.setAttempts(event.getAttempts() + 1);
+        if (event.getAttempts() >= maxAttempts) {
+            event.setNextAttemptAt(null);
+            log.error("Parking notification outbox event {} after {} failed attempts: {}",
+                    event.getId(), event.getAttempts(), e.getMostSpecificCause().getMessage());
+        } else {
+            long backoffSeconds = Math.min(MAX_BACKOFF_SECONDS, 1L << event.getAttempts());
+            event.setNextAttemptAt(LocalDateTime.now().plusSeconds(backoffSeconds));
+            log.warn("Could not deliver notification outbox event {} (attempt {}), retrying in {} s: {}",
+                    event.getId(), event.getAttempts(), backoffSeconds, e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    // Tell connected clients about their new notifications, one update per user
+    private void updateUnreadCounts(List<NotificationOutboxEvent> events) {
+        Map<String, Integer> perUser = new HashMap<>();
+        for (NotificationOutboxEvent event : events) {
+            perUser.merge(event.getUserId(), 1, Integer::sum);
+        }
+        perUser.forEach(notificationCountService::onCreated);
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.librarybackend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the notifications table from growing forever.
+ *
+ * Notifications older than library.notifications.retention.max-age are archived (copied to
+ * notifications_archive, then deleted) or simply deleted, depending on the configured mode.
+ * The work is done oldest first in small chunks, each in its own short DB transaction with a
+ * pause in between, so the job never holds many row locks and the desk doesn't notice it.
+ */
+@Component
+public class NotificationRetentionJob {
+
+    public static final String MODE_ARCHIVE = "archive";
+    public static final String MODE_DELETE = "delete";
+
+    private static final String FIND_EXPIRED_SQL =
+            "SELECT id, user_id, is_read FROM notifications WHERE created_at < ? ORDER BY created_at, id LIMIT ?";
+    private static final String ARCHIVE_SQL =
+            "INSERT INTO notifications_archive " +
+            "(id, user_id, message, type, is_read, created_at, related_book_id, related_transaction_id, archived_at) " +
+            "SELECT id, user_id, message, type, is_read, created_at, related_book_id, related_transaction_id, :archivedAt " +
+            "FROM notifications WHERE id IN (:ids)";
+    private static final String DELETE_SQL = "DELETE FROM notifications WHERE id IN (:ids)";
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationRetentionJob.class);
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    @Autowired private NotificationCountService notificationCountService;
+
+    @Value("${library.notifications.retention.max-age:P180D}")
+    private Duration maxAge;
+
+    @Value("${library.notifications.retention.mode:" + MODE_ARCHIVE + "}")
+    private String mode;
+
+    @Value("${library.notifications.retention.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${library.notifications.retention.pause-ms:100}")
+    private long pauseMs;
+
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    public NotificationRetentionJob(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    @Scheduled(fixedDelayString = "${library.notifications.retention.interval-ms:86400000}",
+            initialDelayString = "${library.notifications.retention.initial-delay-ms:600000}")
+    public void run() {
+        if (!running.compareAndSet(false, true)) {
+            return; // Another run is already in progress
+        }
+        try {
+            long started = System.currentTimeMillis();
+            LocalDateTime cutoff = LocalDateTime.now().minus(maxAge);
+            boolean archive = !MODE_DELETE.equalsIgnoreCase(mode);
+
+            long removed = 0;
+            int chunk;
+            do {
+                chunk = removeChunk(cutoff, archive);
+                removed += chunk;
+                if (chunk == chunkSize && pauseMs > 0) {
+                    Thread.sleep(pauseMs); // Let the desk's transactions through between chunks
+                }
+            } while (chunk == chunkSize);
+
+            if (removed > 0) {
+                log.info("Notification retention: {} {} notifications older than {} in {} ms",
+                        archive ? "archived" : "deleted", removed, cutoff, System.currentTimeMillis() - started);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // Everything up to the last committed chunk is done; the next run carries on from there
+            log.error("Notification retention failed", e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    // Archive/delete the oldest expired notifications, up to one chunk. Returns how many.
+    private int removeChunk(LocalDateTime cutoff, boolean archive) {
+        return transactionTemplate.execute(status -> {
+            List<Integer> ids = new ArrayList<>(chunkSize);
+            Map<String, Integer> unreadPerUser = new HashMap<>();
+            jdbcTemplate.query(FIND_EXPIRED_SQL, rs -> {
+                ids.add(rs.getInt("id"));
+                if (!rs.getBoolean("is_read")) {
+                    unreadPerUser.merge(rs.getString("user_id"), 1, Integer::sum);
+                }
+            }, Timestamp.valueOf(cutoff), chunkSize);
+            if (ids.isEmpty()) {
+                return 0;
+            }
+
+            MapSqlParameterSource params = new MapSqlParameterSource("ids", ids);
+            if (archive) {
+                params.addValue("archivedAt", Timestamp.valueOf(LocalDateTime.now()));
+                namedParameterJdbcTemplate.update(ARCHIVE_SQL, params);
+            }
+            namedParameterJdbcTemplate.update(DELETE_SQL, params);
+
+            // Expired notifications that were never read no longer count as unread
+            unreadPerUser.forEach(notificationCountService::onRemovedFromUnread);
+            return ids.size();
+        });
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.librarybackend.service;
+
+import com.example.librarybackend.dto.OverdueLoanRow;
+import com.example.librarybackend.model.JobCheckpoint;
+import com.example.librarybackend.repository.JobCheckpointRepository;
+import com.example.librarybackend.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sends a BOOK_OVERDUE notification for every loan that goes past its due date unreturned.
+ *
+ * Each run only looks at loans that fell due since the previous run: the job keeps a
+ * (dueDate, id) high-water mark in job_checkpoints and walks open loans from there in
+ * fixed-size keyset chunks. Memory use is bounded by the chunk size, however many loans there are.
+ *
+ * A chunk's notifications and the new high-water mark are committed together, so a crash
+ * never skips or repeats a chunk. Loans that already have an overdue notice (say, after the
+ * checkpoint was reset) are skipped as well.
+ */
+@Component
+public class OverdueScanJob {
+
+    public static final String CHECKPOINT_NAME = "overdue-scan";
+    public static final String NOTIFICATION_TYPE = "BOOK_OVERDUE";
+
+    // Where the very first run starts: every open loan that is already overdue gets a notice
+    private static final LocalDateTime BEGINNING = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private static final String FIND_NOTIFIED_SQL =
+            "SELECT related_transaction_id FROM notifications " +
+            "WHERE related_transaction_id IN (:ids) AND type = '" + NOTIFICATION_TYPE + "'";
+    private static final String INSERT_NOTIFICATION_SQL =
+            "INSERT INTO notifications (user_id, message, type, is_read, created_at, related_book_id, related_transaction_id) " +
+            "VALUES (?, ?, ?, false, ?, ?, ?)";
+
+    private static final Logger log = LoggerFactory.getLogger(OverdueScanJob.class);
+
+    @Autowired private TransactionRepository transactionRepository;
+    @Autowired private JobCheckpointRepository checkpointRepository;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    @Autowired private NotificationCountService notificationCountService;
+
+    @Value("${library.overdue.scan-chunk-size:1000}")
+    private int chunkSize;
+
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    public OverdueScanJob(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    @Scheduled(fixedDelayString = "${library.overdue.scan-interval-ms:3600000}",
+            initialDelayString = "${library.overdue.scan-initial-delay-ms:60000}")
+    public void run() {
+        if (!running.compareAndSet(false, true)) {
+            return; // Another scan is already in progress
+        }
+        try {
+            long started = System.currentTimeMillis();
+            LocalDateTime until = LocalDateTime.now();
+            JobCheckpoint checkpoint = checkpointRepository.findById(CHECKPOINT_NAME)
+                    .orElseGet(() -> new JobCheckpoint(CHECKPOINT_NAME));
+            LocalDateTime afterDue = checkpoint.getPositionTime() != null ? checkpoint.getPositionTime() : BEGINNING;
+            int afterId = checkpoint.getPositionId() != null ? checkpoint.getPositionId() : 0;
+
+            long scanned = 0;
+            long notified = 0;
+            List<OverdueLoanRow> rows;
+            do {
+                rows = transactionRepository.findOverdueLoans(afterDue, afterId, until, Limit.of(chunkSize));
+                if (rows.isEmpty()) {
+                    break;
+                }
+                OverdueLoanRow last = rows.get(rows.size() - 1);
+                checkpoint.setPositionTime(last.getDueDate());
+                checkpoint.setPositionId(last.getTransactionId());
+                notified += processChunk(rows, checkpoint);
+
+                afterDue = last.getDueDate();
+                afterId = last.getTransactionId();
+                scanned += rows.size();
+            } while (rows.size() == chunkSize);
+
+            if (scanned > 0) {
+                log.info("Overdue scan finished: {} newly overdue loans, {} notifications in {} ms",
+                        scanned, notified, System.currentTimeMillis() - started);
+            }
+        } catch (RuntimeException e) {
+            // The checkpoint still points at the last chunk that was committed; the next run resumes there
+            log.error("Overdue scan failed", e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    // Write one chunk's notifications and move the high-water mark past it, in one DB transaction
+    private int processChunk(List<OverdueLoanRow> rows, JobCheckpoint checkpoint) {
+        return transactionTemplate.execute(status -> {
+            Set<Integer> ids = new HashSet<>();
+            for (OverdueLoanRow row : rows) {
+                ids.add(row.getTransactionId());
+            }
+            Set<Integer> alreadyNotified = new HashSet<>(namedParameterJdbcTemplate.queryForList(
+                    FIND_NOTIFIED_SQL, new MapSqlParameterSource("ids", ids), Integer.class));
+
+            List<OverdueLoanRow> toNotify = new ArrayList<>(rows.size());
+            for (OverdueLoanRow row : rows) {
+                if (!alreadyNotified.contains(row.getTransactionId())) {
+                    toNotify.add(row);
+                }
+            }
+
+            LocalDateTime now = LocalDateTime.now();
+            jdbcTemplate.batchUpdate(INSERT_NOTIFICATION_SQL, toNotify, toNotify.size(), (ps, row) -> {
+                ps.setString(1, row.getStudentId());
+                ps.setString(2, "Book overdue: \"" + row.getBookTitle() + "\". It was due on " +
+                        row.getDueDate().toLocalDate() + ". Please return it as soon as possible.");
+                ps.setString(3, NOTIFICATION_TYPE);
+                ps.setTimestamp(4, Timestamp.valueOf(now));
+                ps.setString(5, row.getBookId());
+                ps.setInt(6, row.getTransactionId());
+            });
+
+            checkpoint.setUpdatedAt(now);
+            checkpointRepository.save(checkpoint);
+
+            Map<String, Integer> perStudent = new HashMap<>();
+            for (OverdueLoanRow row : toNotify) {
+                perStudent.merge(row.getStudentId(), 1, Integer::sum);
+            }
+            perStudent.forEach(notificationCountService::onCreated);
+            return toNotify.size();
+        });
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.librarybackend.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BCrypt hashing and checking, off the request threads.
+ *
+ * BCrypt is slow on purpose (tens of milliseconds per check), so a burst of logins handled on
+ * Tomcat's threads would hold them all and stall every other request behind it. Checks run on a
+ * small fixed pool instead, one thread per CPU by default, and the request thread is released
+ * while they wait (the login endpoint is asynchronous). The queue in front of the pool is bounded:
+ * when it is full the caller gets a RejectedExecutionException at once and answers 503, rather
+ * than queueing more work than the CPUs can get through.
+ */
+@Service
+public class PasswordHashingService {
+
+    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    private final ThreadPoolExecutor executor;
+
+    public PasswordHashingService(@Value("${library.auth.password-workers:0}") int workers,
+                                  @Value("${library.auth.password-queue-size:64}") int queueSize) {
+        int threads = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("password-hash-");
+        threadFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // Whether the password matches the stored hash
+    // Throws RejectedExecutionException if too many checks are already waiting
+    public CompletableFuture<Boolean> matches(String rawPassword, String hash) {
+        return CompletableFuture.supplyAsync(() -> passwordEncoder.matches(rawPassword, hash), executor);
+    }
+
+    // A new hash for storing the password
+    // Throws RejectedExecutionException if too many checks are already waiting
+    public CompletableFuture<String> hash(String rawPassword) {
+        return CompletableFuture.supplyAsync(() -> passwordEncoder.encode(rawPassword), executor);
+    }
+
+    public int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
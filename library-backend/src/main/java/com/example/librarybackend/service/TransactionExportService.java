@@ -0,0 +1,284 @@
+package com.example.librarybackend.service;
+
+import com.example.librarybackend.dto.TransactionResponse;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Writes the transactions history as CSV or NDJSON, for auditors who need all of it at once.
+ *
+ * Rows are read with plain JDBC from a forward-only, read-only result set with a bounded fetch
+ * size and written to the output as they arrive, one row object at a time. No entities are loaded,
+ * so no persistence context fills up. Memory use is the fetch size plus the write buffer, however
+ * long the history is. On MySQL this needs useCursorFetch=true on the connection URL; without it the
+ * driver reads the whole result into memory before the first row is returned.
+ *
+ * An export holds a database connection until it has been written, which for a large history
+ * is minutes, so only library.export.max-concurrent run at once. Output is flushed every
+ * library.export.flush-rows rows so the client (and the gzip filter) see steady progress.
+ */
+@Service
+public class TransactionExportService {
+
+    private static final String EXPORT_SQL =
+            "SELECT t.id, b.id AS book_id, b.title, s.id AS student_id, s.name, " +
+            "t.issue_date, t.due_date, t.return_date, t.fine_paid " +
+            "FROM transactions t JOIN books b ON b.id = t.book_id JOIN students s ON s.id = t.student_id";
+
+    private static final String CSV_HEADER =
+            "id,bookId,bookTitle,studentId,studentName,issueDate,dueDate,returnDate,finePaid";
+
+    private static final RowMapper<TransactionResponse> ROW_MAPPER = (rs, rowNum) -> new TransactionResponse(
+            rs.getInt("id"),
+            rs.getString("book_id"),
+            rs.getString("title"),
+            rs.getString("student_id"),
+            rs.getString("name"),
+            rs.getObject("issue_date", LocalDateTime.class),
+            rs.getObject("due_date", LocalDateTime.class),
+            rs.getObject("return_date", LocalDateTime.class),
+            rs.getBigDecimal("fine_paid"));
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionExportService.class);
+
+    public enum Format {
+        CSV("text/csv;charset=UTF-8", "csv"),
+        NDJSON("application/x-ndjson;charset=UTF-8", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private final JdbcTemplate cursorTemplate;
+    private final ObjectMapper objectMapper;
+    private final int flushRows;
+    private final Semaphore slots;
+
+    public TransactionExportService(DataSource dataSource,
+                                    ObjectMapper objectMapper,
+                                    @Value("${library.export.fetch-size:1000}") int fetchSize,
+                                    @Value("${library.export.flush-rows:1000}") int flushRows,
+                                    @Value("${library.export.max-concurrent:2}") int maxConcurrent) {
+        // Its own template, so the fetch size applies to exports only
+        this.cursorTemplate = new JdbcTemplate(dataSource);
+        this.cursorTemplate.setFetchSize(fetchSize);
+        this.objectMapper = objectMapper;
+        this.flushRows = Math.max(flushRows, 1);
+        this.slots = new Semaphore(maxConcurrent);
+    }
+
+    // Claims one of the export slots, or answers 503 if they are all in use. Claim it before
+    // writing any headers, and close it once the export has been written.
+    public Slot reserveSlot() {
+        if (!slots.tryAcquire()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many exports running, try again later");
+        }
+        return new Slot();
+    }
+
+    // Writes the transactions issued between from and to (both inclusive, either may be null) to
+    // out, oldest first, and returns how many there were. out is flushed but not closed.
+    public long export(Format format, LocalDate from, LocalDate to, OutputStream out) throws IOException {
+        long started = System.currentTimeMillis();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 16 * 1024);
+        RowSink sink = format == Format.CSV ? new CsvSink(writer) : new NdjsonSink(writer);
+
+        StringBuilder sql = new StringBuilder(EXPORT_SQL);
+        List<Object> args = new ArrayList<>();
+        if (from != null || to != null) {
+            sql.append(" WHERE 1 = 1");
+            if (from != null) {
+                sql.append(" AND t.issue_date >= ?");
+                args.add(from.atStartOfDay());
+            }
+            if (to != null) {
+                sql.append(" AND t.issue_date < ?");
+                args.add(to.plusDays(1).atStartOfDay());
+            }
+            // Walks idx_transactions_issue_date (which ends in the id) instead of sorting the range
+            sql.append(" ORDER BY t.issue_date, t.id");
+        } else {
+            sql.append(" ORDER BY t.id");
+        }
+
+        long[] rows = {0};
+        try {
+            sink.start();
+            // JdbcTemplate prepares a default statement: TYPE_FORWARD_ONLY and CONCUR_READ_ONLY
+            cursorTemplate.query(sql.toString(), rs -> {
+                try {
+                    sink.write(ROW_MAPPER.mapRow(rs, 0));
+                    if (++rows[0] % flushRows == 0) {
+                        sink.flush();
+                    }
+                } catch (IOException e) {
+                    // Usually the client has gone away; stop reading and let the cursor be closed
+                    throw new UncheckedIOException(e);
+                }
+            }, args.toArray());
+            sink.flush();
+        } catch (UncheckedIOException e) {
+            log.info("Transaction export stopped after {} rows: {}", rows[0], e.getCause().getMessage());
+            throw e.getCause();
+        }
+        log.info("Exported {} transactions as {} in {} ms", rows[0], format, System.currentTimeMillis() - started);
+        return rows[0];
+    }
+
+    // Helper methods
+
+    // Quotes a CSV field if it contains a separator, quote or line break (RFC 4180)
+    static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return '"' + value.replace("\"", "\"\"") + '"';
+            }
+        }
+        return value;
+    }
+
+    private static String csvField(LocalDateTime value) {
+        return value != null ? DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(value) : "";
+    }
+
+    private static String csvField(BigDecimal value) {
+        return value != null ? value.toPlainString() : "";
+    }
+
+    public final class Slot implements AutoCloseable {
+        private boolean released;
+
+        private Slot() {
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                slots.release();
+            }
+        }
+    }
+
+    private interface RowSink {
+        void start() throws IOException;
+
+        void write(TransactionResponse row) throws IOException;
+
+        void flush() throws IOException;
+    }
+
+    private static final class CsvSink implements RowSink {
+        private final Writer writer;
+
+        CsvSink(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void start() throws IOException {
+            writer.write(CSV_HEADER);
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void write(TransactionResponse row) throws IOException {
+            writer.write(Integer.toString(row.getId()));
+            writer.write(',');
+            writer.write(csvField(row.getBookId()));
+            writer.write(',');
+            writer.write(csvField(row.getBookTitle()));
+            writer.write(',');
+            writer.write(csvField(row.getStudentId()));
+            writer.write(',');
+            writer.write(csvField(row.getStudentName()));
+            writer.write(',');
+            writer.write(csvField(row.getIssueDate()));
+            writer.write(',');
+            writer.write(csvField(row.getDueDate()));
+            writer.write(',');
+            writer.write(csvField(row.getReturnDate()));
+            writer.write(',');
+            writer.write(csvField(row.getFinePaid()));
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+    }
+
+    // One JSON object per line, each written like the transaction list endpoints write them
+    private final class NdjsonSink implements RowSink {
+        private final ObjectWriter rowWriter;
+        private final JsonGenerator generator;
+
+        NdjsonSink(Writer writer) throws IOException {
+            // Without this every row would flush the generator, and with it the response
+            this.rowWriter = objectMapper.writerFor(TransactionResponse.class)
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            this.generator = objectMapper.getFactory().createGenerator(writer);
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            this.generator.setRootValueSeparator(null); // The newlines are written by hand instead
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void write(TransactionResponse row) throws IOException {
+            rowWriter.writeValue(generator, row);
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush(); // Flushes the writer and the response too
+        }
+    }
+}
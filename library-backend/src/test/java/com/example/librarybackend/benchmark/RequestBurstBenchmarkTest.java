@@ -0,0 +1,193 @@
+package com.example.librarybackend.benchmark;
+
+import com.example.librarybackend.LibraryBackendApplication;
+import com.example.librarybackend.model.Book;
+import com.example.librarybackend.repository.BookRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// Registration-week burst: CLIENTS students open the catalog at the same moment and each browses
+// a few pages, while Tomcat keeps its default 200 worker threads. Every database transaction is
+// slowed down by DB_LATENCY_MS to stand in for the network round trips to a real MySQL server.
+// Run once per threading mode and compare the printed throughput and latency:
+//   mvn -Pbenchmark test                 (platform threads only, on Java 17)
+//   mvn -Pbenchmark,java21 test          (both, needs a Java 21 JDK)
+@Tag("benchmark")
+class RequestBurstBenchmarkTest {
+
+    private static final int CLIENTS = 1000;
+    private static final int REQUESTS_PER_CLIENT = 5;
+    private static final int TOMCAT_THREADS = 200;
+    private static final int DB_LATENCY_MS = 5;
+    private static final int BOOKS = 500;
+
+    @Test
+    void platformThreads() throws Exception {
+        run(false);
+    }
+
+    @Test
+    void virtualThreads() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 21, "Virtual threads need Java 21 (mvn -Pbenchmark,java21 test)");
+        run(true);
+    }
+
+    private void run(boolean virtual) throws Exception {
+        String mode = virtual ? "virtual" : "platform";
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(
+                LibraryBackendApplication.class, SlowDatabase.class)
+                .properties(
+                        "server.port=0",
+                        "server.tomcat.threads.max=" + TOMCAT_THREADS,
+                        "spring.threads.virtual.enabled=" + virtual,
+                        "spring.datasource.url=jdbc:h2:mem:burst_" + mode + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                        "library.overdue.scan-initial-delay-ms=3600000",
+                        "logging.level.root=WARN")
+                .run()) {
+            seedBooks(context.getBean(BookRepository.class));
+            int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(30))
+                    .build();
+            // One round to warm up the JIT, caches and connection pool, then the measured burst
+            burst(client, port, CLIENTS / 10);
+            Result result = burst(client, port, CLIENTS);
+
+            System.out.printf("%n[burst] %-8s threads: %d clients x %d requests in %d ms = %.0f req/s, "
+                            + "p50 %d ms, p99 %d ms, max %d ms, 503s %d, errors %d%n",
+                    mode, CLIENTS, REQUESTS_PER_CLIENT, result.elapsedMs,
+                    result.latencies.size() * 1000.0 / result.elapsedMs,
+                    result.percentile(50), result.percentile(99), result.percentile(100),
+                    result.rejected.get(), result.errors.get());
+            assertEquals(0, result.errors.get(), "Every request should get an HTTP response");
+        }
+    }
+
+    // Each client browses sequentially; all clients start together
+    private Result burst(HttpClient client, int port, int clients) {
+        Result result = new Result();
+        long started = System.nanoTime();
+        List<CompletableFuture<Void>> sessions = new ArrayList<>(clients);
+        for (int c = 0; c < clients; c++) {
+            CompletableFuture<Void> session = CompletableFuture.completedFuture(null);
+            for (int r = 0; r < REQUESTS_PER_CLIENT; r++) {
+                URI uri = URI.create("http://localhost:" + port + pathFor(c, r));
+                session = session.thenCompose(ignored -> timedGet(client, uri, result));
+            }
+            sessions.add(session);
+        }
+        CompletableFuture.allOf(sessions.toArray(new CompletableFuture[0])).join();
+        result.elapsedMs = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+        return result;
+    }
+
+    // A mix of what the catalog page does: a page of books (database), one book (cached), a search (in memory)
+    private String pathFor(int client, int request) {
+        switch ((client + request) % 3) {
+            case 0:
+                return "/api/books/page?limit=20" + (request % 2 == 0 ? "&genre=Genre" + (client % 10) : "");
+            case 1:
+                return "/api/books/BURST-" + ((client * 7 + request) % BOOKS);
+            default:
+                return "/api/books/search?q=Title+" + (client % 50);
+        }
+    }
+
+    private CompletableFuture<Void> timedGet(HttpClient client, URI uri, Result result) {
+        long sent = System.nanoTime();
+        return client.sendAsync(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.discarding())
+                .handle((response, error) -> {
+                    if (error != null) {
+                        result.errors.incrementAndGet();
+                    } else if (response.statusCode() == 503) {
+                        result.rejected.incrementAndGet();
+                    } else {
+                        result.latencies.add((System.nanoTime() - sent) / 1_000_000);
+                    }
+                    return null;
+                });
+    }
+
+    private void seedBooks(BookRepository bookRepository) {
+        List<Book> books = new ArrayList<>(BOOKS);
+        for (int i = 0; i < BOOKS; i++) {
+            Book book = new Book();
+            book.setId("BURST-" + i);
+            book.setTitle("Title " + i);
+            book.setAuthor("Author " + (i % 40));
+            book.setGenre("Genre" + (i % 10));
+            book.setCopies(3);
+            books.add(book);
+        }
+        bookRepository.saveAll(books);
+    }
+
+    private static class Result {
+        private final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger rejected = new AtomicInteger();
+        private final AtomicInteger errors = new AtomicInteger();
+        private long elapsedMs;
+
+        long percentile(int p) {
+            List<Long> sorted = new ArrayList<>(latencies);
+            if (sorted.isEmpty()) {
+                return 0;
+            }
+            Collections.sort(sorted);
+            return sorted.get(Math.max(0, (int) Math.ceil(p / 100.0 * sorted.size()) - 1));
+        }
+    }
+
+    // Holds every connection for DB_LATENCY_MS longer, like a query that crosses the network.
+    // Not a @Configuration, so other tests' component scans don't pick it up.
+    static class SlowDatabase {
+        @Bean
+        static BeanPostProcessor slowDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (!(bean instanceof DataSource dataSource) || bean instanceof DelegatingDataSource) {
+                        return bean;
+                    }
+                    return new DelegatingDataSource(dataSource) {
+                        @Override
+                        public Connection getConnection() throws SQLException {
+                            Connection connection = super.getConnection();
+                            try {
+                                Thread.sleep(DB_LATENCY_MS);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                            return connection;
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.librarybackend.config;
+
+import com.example.librarybackend.service.AuthTokenService;
+import com.example.librarybackend.service.AuthTokenService.TokenClaims;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Which requests the token filter lets through, and what it leaves for the controllers
+class TokenAuthenticationFilterTest {
+
+    private final AuthTokenService authTokenService = new AuthTokenService("", Duration.ofHours(8), Duration.ofDays(1), 100);
+
+    @Test
+    void leavesTheClaimsOfAValidTokenForTheControllers() throws ServletException, IOException {
+        String token = authTokenService.issue("S001", AuthTokenService.ROLE_STUDENT).getToken();
+        MockHttpServletRequest request = request("GET", "/api/books");
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+
+        MockFilterChain chain = new MockFilterChain();
+        filter(true).doFilter(request, new MockHttpServletResponse(), chain);
+        assertNotNull(chain.getRequest());
+        assertEquals("S001", TokenAuthenticationFilter.principal(request).orElseThrow().getUserId());
+    }
+
+    @Test
+    void acceptsTheTokenAsAQueryParameter() throws ServletException, IOException {
+        // EventSource and <img> can't send headers
+        MockHttpServletRequest request = request("GET", "/api/notifications/stream");
+        request.setParameter("access_token", authTokenService.issue("S001", AuthTokenService.ROLE_STUDENT).getToken());
+
+        MockFilterChain chain = new MockFilterChain();
+        filter(true).doFilter(request, new MockHttpServletResponse(), chain);
+        assertNotNull(chain.getRequest());
+        assertTrue(TokenAuthenticationFilter.principal(request).isPresent());
+    }
+
+    @Test
+    void answersInvalidExpiredOrRevokedTokens401() throws ServletException, IOException {
+        TokenClaims revoked = authTokenService.issue("S001", AuthTokenService.ROLE_STUDENT);
+        authTokenService.revoke(revoked);
+        String expired = new AuthTokenService("", Duration.ZERO, Duration.ofDays(1), 100)
+                .issue("S001", AuthTokenService.ROLE_STUDENT).getToken();
+
+        for (String token : new String[] {"garbage", revoked.getToken(), expired}) {
+            MockHttpServletRequest request = request("GET", "/api/books");
+            request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            MockFilterChain chain = new MockFilterChain();
+
+            // Even when tokens are optional: a bad one is never treated as anonymous
+            filter(false).doFilter(request, response, chain);
+            assertEquals(401, response.getStatus());
+            assertEquals("Bearer error=\"invalid_token\"", response.getHeader(HttpHeaders.WWW_AUTHENTICATE));
+            assertNull(chain.getRequest());
+        }
+    }
+
+    @Test
+    void letsRequestsWithoutATokenThroughUnlessOneIsRequired() throws ServletException, IOException {
+        MockFilterChain optional = new MockFilterChain();
+        filter(false).doFilter(request("GET", "/api/books"), new MockHttpServletResponse(), optional);
+        assertNotNull(optional.getRequest());
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain required = new MockFilterChain();
+        filter(true).doFilter(request("GET", "/api/books"), response, required);
+        assertEquals(401, response.getStatus());
+        assertEquals("Bearer", response.getHeader(HttpHeaders.WWW_AUTHENTICATE));
+        assertNull(required.getRequest());
+    }
+
+    @Test
+    void alwaysLetsLoginAndPreflightRequestsThrough() throws ServletException, IOException {
+        MockFilterChain login = new MockFilterChain();
+        filter(true).doFilter(request("POST", "/api/auth/login"), new MockHttpServletResponse(), login);
+        assertNotNull(login.getRequest());
+
+        MockFilterChain preflight = new MockFilterChain();
+        filter(true).doFilter(request("OPTIONS", "/api/books"), new MockHttpServletResponse(), preflight);
+        assertNotNull(preflight.getRequest());
+    }
+
+    // Helper methods
+
+    private TokenAuthenticationFilter filter(boolean requireToken) {
+        return new TokenAuthenticationFilter(authTokenService, requireToken);
+    }
+
+    private static MockHttpServletRequest request(String method, String uri) {
+        return new MockHttpServletRequest(method, uri);
+    }
+}
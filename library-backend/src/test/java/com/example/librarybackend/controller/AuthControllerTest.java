@@ -0,0 +1,127 @@
+package com.example.librarybackend.controller;
+
+import com.example.librarybackend.dto.LoginRequest;
+import com.example.librarybackend.dto.LoginResponse;
+import com.example.librarybackend.model.Student;
+import com.example.librarybackend.service.AuthTokenService;
+import com.example.librarybackend.service.EntityCacheService;
+import com.example.librarybackend.service.PasswordHashingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Login outcomes: who gets a token, who doesn't, and what a full hashing queue answers.
+// BCrypt runs for real, on a one-thread hashing pool with room for one waiting check.
+class AuthControllerTest {
+
+    private static final String LIBRARIAN_EMAIL = "librarian@library.com";
+    private static final String LIBRARIAN_PASSWORD = "admin123";
+
+    private final AuthTokenService authTokenService = new AuthTokenService("", Duration.ofHours(8), Duration.ofDays(1), 100);
+    private final PasswordHashingService passwordHashingService = new PasswordHashingService(1, 1);
+    private final EntityCacheService entityCacheService = mock(EntityCacheService.class);
+    private final AuthController authController = new AuthController();
+
+    AuthControllerTest() {
+        ReflectionTestUtils.setField(authController, "authTokenService", authTokenService);
+        ReflectionTestUtils.setField(authController, "passwordHashingService", passwordHashingService);
+        ReflectionTestUtils.setField(authController, "entityCacheService", entityCacheService);
+        ReflectionTestUtils.setField(authController, "librarianEmail", LIBRARIAN_EMAIL);
+        ReflectionTestUtils.setField(authController, "librarianPasswordHash", new BCryptPasswordEncoder(4).encode(LIBRARIAN_PASSWORD));
+        ReflectionTestUtils.setField(authController, "allowPasswordlessStudents", true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        passwordHashingService.shutdown();
+    }
+
+    @Test
+    void rightPasswordGetsAVerifiableToken() throws Exception {
+        ResponseEntity<?> response = login(LIBRARIAN_EMAIL, LIBRARIAN_PASSWORD);
+
+        assertEquals(200, response.getStatusCode().value());
+        LoginResponse user = (LoginResponse) response.getBody();
+        assertEquals(AuthTokenService.ROLE_LIBRARIAN, user.getRole());
+        assertTrue(authTokenService.verify(user.getToken()).orElseThrow().isLibrarian());
+    }
+
+    @Test
+    void wrongPasswordIsRejected() throws Exception {
+        assertEquals(401, login(LIBRARIAN_EMAIL, "not-the-password").getStatusCode().value());
+        assertEquals(401, login("nobody@college.edu", LIBRARIAN_PASSWORD).getStatusCode().value());
+    }
+
+    @Test
+    void passwordlessStudentIsLoggedInWithoutAToken() throws Exception {
+        Student student = new Student();
+        student.setId("S001");
+        student.setName("First Student");
+        student.setEmail("s001@college.edu");
+        when(entityCacheService.findStudentByEmail("s001@college.edu")).thenReturn(Optional.of(student));
+
+        ResponseEntity<?> allowed = login("s001@college.edu", "anything");
+        assertEquals(200, allowed.getStatusCode().value());
+        assertNull(((LoginResponse) allowed.getBody()).getToken());
+
+        ReflectionTestUtils.setField(authController, "allowPasswordlessStudents", false);
+        assertEquals(401, login("s001@college.edu", "anything").getStatusCode().value());
+    }
+
+    @Test
+    void fullHashingQueueAnswers503() throws Exception {
+        // Hold the only hashing thread and fill the one queue slot
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) ReflectionTestUtils.getField(passwordHashingService, "executor");
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute(() -> { });
+        try {
+            ResponseEntity<?> response = login(LIBRARIAN_EMAIL, LIBRARIAN_PASSWORD);
+            assertEquals(503, response.getStatusCode().value());
+            assertEquals("1", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        } finally {
+            release.countDown();
+        }
+
+        // Once the queue drains, logins work again
+        long deadline = System.currentTimeMillis() + 5_000;
+        while ((executor.getActiveCount() > 0 || passwordHashingService.getQueued() > 0)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(200, login(LIBRARIAN_EMAIL, LIBRARIAN_PASSWORD).getStatusCode().value());
+    }
+
+    // Helper methods
+
+    private ResponseEntity<?> login(String email, String password) throws Exception {
+        LoginRequest request = new LoginRequest();
+        request.setEmail(email);
+        request.setPassword(password);
+        return authController.login(request).get(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.librarybackend.controller;
+
+import com.example.librarybackend.service.BookImageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// Byte ranges and conditional requests of the cover image endpoint, on files in a temporary
+// upload directory, without Spring or a database
+class FileUploadControllerTest {
+
+    private static final String COVER = "cover.png";
+    private static final int LENGTH = 1000;
+
+    @TempDir
+    Path uploadDir;
+
+    private final FileUploadController controller = new FileUploadController();
+    private byte[] content;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        content = new byte[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            content[i] = (byte) i;
+        }
+        Files.write(uploadDir.resolve(COVER), content);
+        ReflectionTestUtils.setField(controller, "bookImageService", new BookImageService(uploadDir.toString()));
+    }
+
+    @Test
+    void parsesClosedOpenEndedAndSuffixRanges() {
+        assertArrayEquals(new long[]{100, 199}, FileUploadController.parseRange("bytes=100-199", LENGTH));
+        assertArrayEquals(new long[]{900, 999}, FileUploadController.parseRange("bytes=900-", LENGTH));
+        assertArrayEquals(new long[]{900, 999}, FileUploadController.parseRange("bytes=-100", LENGTH));
+        // Past the end is cut to the end; a suffix longer than the file is the whole file
+        assertArrayEquals(new long[]{900, 999}, FileUploadController.parseRange("bytes=900-5000", LENGTH));
+        assertArrayEquals(new long[]{0, 999}, FileUploadController.parseRange("bytes=-5000", LENGTH));
+    }
+
+    @Test
+    void ignoresReversedMultipleAndMalformedRanges() {
+        assertArrayEquals(new long[0], FileUploadController.parseRange("bytes=500-400", LENGTH));
+        assertArrayEquals(new long[0], FileUploadController.parseRange("bytes=0-9,20-29", LENGTH));
+        assertArrayEquals(new long[0], FileUploadController.parseRange("items=0-9", LENGTH));
+        assertArrayEquals(new long[0], FileUploadController.parseRange("bytes=abc-def", LENGTH));
+        assertArrayEquals(new long[0], FileUploadController.parseRange("bytes=100", LENGTH));
+    }
+
+    @Test
+    void rejectsRangesThatCannotBeSatisfied() {
+        assertNull(FileUploadController.parseRange("bytes=1000-", LENGTH));
+        assertNull(FileUploadController.parseRange("bytes=1000-1100", LENGTH));
+        assertNull(FileUploadController.parseRange("bytes=1200-1100", LENGTH));
+        assertNull(FileUploadController.parseRange("bytes=-0", LENGTH));
+    }
+
+    @Test
+    void servesARangeAs206() throws IOException {
+        MockHttpServletResponse response = serve(HttpHeaders.RANGE, "bytes=-100");
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 900-999/1000", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(100, response.getContentLengthLong());
+        assertArrayEquals(Arrays.copyOfRange(content, 900, 1000), response.getContentAsByteArray());
+    }
+
+    @Test
+    void answersAnUnsatisfiableRange416() throws IOException {
+        MockHttpServletResponse response = serve(HttpHeaders.RANGE, "bytes=2000-");
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */1000", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void servesTheWholeFileForAReversedRange() throws IOException {
+        MockHttpServletResponse response = serve(HttpHeaders.RANGE, "bytes=500-400");
+
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    void honoursTheRangeOnlyIfRangeMatchesTheEtag() throws IOException {
+        String etag = serve(null, null).getHeader(HttpHeaders.ETAG);
+
+        MockHttpServletResponse sameFile = serve(HttpHeaders.RANGE, "bytes=0-9", HttpHeaders.IF_RANGE, etag);
+        assertEquals(206, sameFile.getStatus());
+        assertArrayEquals(Arrays.copyOfRange(content, 0, 10), sameFile.getContentAsByteArray());
+
+        // The client's partial copy is of another version of the file: it gets the whole file
+        MockHttpServletResponse changedFile = serve(HttpHeaders.RANGE, "bytes=0-9", HttpHeaders.IF_RANGE, "\"stale\"");
+        assertEquals(200, changedFile.getStatus());
+        assertArrayEquals(content, changedFile.getContentAsByteArray());
+    }
+
+    @Test
+    void handsLargeBodiesToSendfile() throws IOException {
+        byte[] large = new byte[64 * 1024];
+        Files.write(uploadDir.resolve("large.png"), large);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/uploads/books/large.png");
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader(HttpHeaders.RANGE, "bytes=1024-");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        controller.serveFile("large.png", BookImageService.SIZE_ORIGINAL, request, response);
+        assertEquals(206, response.getStatus());
+        assertEquals(1024L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals((long) large.length, request.getAttribute("org.apache.tomcat.sendfile.end"));
+        assertEquals(0, response.getContentAsByteArray().length); // Tomcat writes it after the request returns
+    }
+
+    // Helper methods
+
+    private MockHttpServletResponse serve(String... headers) throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/uploads/books/" + COVER);
+        for (int i = 0; i + 1 < headers.length; i += 2) {
+            if (headers[i] != null) {
+                request.addHeader(headers[i], headers[i + 1]);
+            }
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.serveFile(COVER, BookImageService.SIZE_ORIGINAL, request, response);
+        return response;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.librarybackend.controller;
+
+import com.example.librarybackend.dto.TransactionDto;
+import com.example.librarybackend.dto.TransactionResponse;
+import com.example.librarybackend.model.Book;
+import com.example.librarybackend.model.CirculationRollup;
+import com.example.librarybackend.model.Student;
+import com.example.librarybackend.repository.BookRepository;
+import com.example.librarybackend.repository.StudentRepository;
+import com.example.librarybackend.repository.TransactionRepository;
+import com.example.librarybackend.service.CirculationRollupService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Fires many simultaneous issue requests at a handful of books with only a few copies each,
+// like the first day of term, and checks that no book is ever oversold.
+@SpringBootTest
+class TransactionControllerConcurrencyTest {
+
+    private static final int BOOKS = 20;
+    private static final int COPIES_PER_BOOK = 5;
+    private static final int REQUESTS_PER_BOOK = 25;
+    private static final int THREADS = 16;
+
+    @Autowired private TransactionController transactionController;
+    @Autowired private BookRepository bookRepository;
+    @Autowired private StudentRepository studentRepository;
+    @Autowired private TransactionRepository transactionRepository;
+    @Autowired private CirculationRollupService rollupService;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < BOOKS; i++) {
+            Book book = new Book();
+            book.setId("STRESS-" + i);
+            book.setTitle("Stress Test Book " + i);
+            book.setAuthor("Author " + i);
+            book.setGenre("Textbook");
+            book.setCopies(COPIES_PER_BOOK);
+            bookRepository.save(book);
+        }
+        for (int i = 0; i < REQUESTS_PER_BOOK; i++) {
+            Student student = new Student();
+            student.setId("STRESS-S" + i);
+            student.setName("Student " + i);
+            student.setEmail("stress" + i + "@college.edu");
+            studentRepository.save(student);
+        }
+    }
+
+    private long rollupIssuesToday() {
+        LocalDate today = LocalDate.now();
+        return rollupService.findRange(CirculationRollupService.PERIOD_DAY, CirculationRollupService.DIMENSION_GENRE, today, today)
+                .stream()
+                .filter(rollup -> rollup.getDimensionValue().equals("Textbook"))
+                .mapToLong(CirculationRollup::getIssues)
+                .sum();
+    }
+
+    @Test
+    void concurrentIssuesNeverOversellCopies() throws Exception {
+        long transactionsBefore = transactionRepository.count();
+        long rollupIssuesBefore = rollupIssuesToday();
+
+        List<Callable<Boolean>> requests = new ArrayList<>();
+        for (int s = 0; s < REQUESTS_PER_BOOK; s++) {
+            for (int b = 0; b < BOOKS; b++) {
+                TransactionDto dto = new TransactionDto();
+                dto.setBookId("STRESS-" + b);
+                dto.setStudentId("STRESS-S" + s);
+                requests.add(() -> {
+                    ResponseEntity<TransactionResponse> response = transactionController.issueBook(dto);
+                    return response.getStatusCode().is2xxSuccessful();
+                });
+            }
+        }
+
+        // Release every request at once so they really contend for the same rows
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (Callable<Boolean> request : requests) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return request.call();
+            }));
+        }
+
+        long started = System.nanoTime();
+        start.countDown();
+        int issued = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get(60, TimeUnit.SECONDS)) {
+                issued++;
+            }
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        pool.shutdown();
+
+        // Every copy was issued exactly once and no book went below zero
+        for (int b = 0; b < BOOKS; b++) {
+            Book book = bookRepository.findById("STRESS-" + b).orElseThrow();
+            assertEquals(0, book.getCopies(), "copies left for " + book.getId());
+        }
+        assertEquals(BOOKS * COPIES_PER_BOOK, issued);
+        assertEquals(BOOKS * COPIES_PER_BOOK, transactionRepository.count() - transactionsBefore);
+        // The genre's rollup for today counted each of them once, and none of the refused requests
+        assertEquals(rollupIssuesBefore + BOOKS * COPIES_PER_BOOK, rollupIssuesToday());
+        assertTrue(elapsedMs < 30_000, "issue path took " + elapsedMs + " ms under contention");
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.librarybackend.service;
+
+import com.example.librarybackend.service.AuthTokenService.TokenClaims;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Signing, expiry, revocation and key rotation of login tokens, without Spring
+class AuthTokenServiceTest {
+
+    private static final String KEY_A = secret('a');
+    private static final String KEY_B = secret('b');
+
+    @Test
+    void verifiesTheTokensItIssued() {
+        AuthTokenService service = service("", Duration.ofHours(8), 100);
+        TokenClaims issued = service.issue("S001", AuthTokenService.ROLE_STUDENT);
+
+        TokenClaims verified = service.verify(issued.getToken()).orElseThrow();
+        assertEquals("S001", verified.getUserId());
+        assertEquals(AuthTokenService.ROLE_STUDENT, verified.getRole());
+        assertEquals(issued.getExpiresAt(), verified.getExpiresAt());
+    }
+
+    @Test
+    void rejectsTamperedTokens() {
+        AuthTokenService service = service("", Duration.ofHours(8), 100);
+        String token = service.issue("S001", AuthTokenService.ROLE_STUDENT).getToken();
+        String[] parts = token.split("\\.");
+
+        // The student's claims re-encoded as the librarian's, with the original signature
+        String claims = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8);
+        String forged = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                claims.replace(AuthTokenService.ROLE_STUDENT, AuthTokenService.ROLE_LIBRARIAN).getBytes(StandardCharsets.UTF_8));
+        assertTrue(service.verify(parts[0] + "." + forged + "." + parts[2]).isEmpty());
+
+        // A changed signature, a missing signature, and a token from another key
+        String otherSignature = (parts[2].charAt(0) == 'A' ? 'B' : 'A') + parts[2].substring(1);
+        assertTrue(service.verify(parts[0] + "." + parts[1] + "." + otherSignature).isEmpty());
+        assertTrue(service.verify(parts[0] + "." + parts[1]).isEmpty());
+        assertTrue(service.verify("not-a-token").isEmpty());
+        String foreign = service("", Duration.ofHours(8), 100).issue("S001", AuthTokenService.ROLE_STUDENT).getToken();
+        assertTrue(service.verify(foreign).isEmpty());
+    }
+
+    @Test
+    void rejectsExpiredTokens() {
+        AuthTokenService service = service("", Duration.ZERO, 100);
+        String token = service.issue("S001", AuthTokenService.ROLE_STUDENT).getToken();
+        assertTrue(service.verify(token).isEmpty());
+    }
+
+    @Test
+    void rejectsRevokedTokens() {
+        AuthTokenService service = service("", Duration.ofHours(8), 100);
+        TokenClaims revoked = service.issue("S001", AuthTokenService.ROLE_STUDENT);
+        TokenClaims other = service.issue("S001", AuthTokenService.ROLE_STUDENT);
+
+        service.revoke(service.verify(revoked.getToken()).orElseThrow());
+        assertTrue(service.verify(revoked.getToken()).isEmpty());
+        assertTrue(service.verify(other.getToken()).isPresent());
+        assertEquals(1, service.getRevokedCount());
+    }
+
+    @Test
+    void droppingARevocationRejectsEveryTokenIssuedUpToIt() throws InterruptedException {
+        AuthTokenService service = service("", Duration.ofHours(8), 2);
+        waitForNextSecond(); // So all four are issued in the same second
+        TokenClaims first = service.issue("S001", AuthTokenService.ROLE_STUDENT);
+        TokenClaims second = service.issue("S002", AuthTokenService.ROLE_STUDENT);
+        TokenClaims third = service.issue("S003", AuthTokenService.ROLE_STUDENT);
+        TokenClaims neverRevoked = service.issue("S004", AuthTokenService.ROLE_STUDENT);
+
+        service.revoke(first);
+        service.revoke(second);
+        service.revoke(third); // One more than max-revoked-tokens: the first revocation is dropped
+        assertEquals(2, service.getRevokedCount());
+        assertTrue(service.verify(first.getToken()).isEmpty());
+        assertTrue(service.verify(second.getToken()).isEmpty());
+        assertTrue(service.verify(third.getToken()).isEmpty());
+        // Issued in the same second as the dropped revocation, so rejected with it
+        assertTrue(service.verify(neverRevoked.getToken()).isEmpty());
+
+        // Tokens issued afterwards are unaffected
+        waitForNextSecond();
+        assertTrue(service.verify(service.issue("S005", AuthTokenService.ROLE_STUDENT).getToken()).isPresent());
+    }
+
+    @Test
+    void rotatedOutGeneratedKeyKeepsVerifyingUntilItsTokensExpire() throws InterruptedException {
+        AuthTokenService service = new AuthTokenService("", Duration.ofSeconds(2), Duration.ZERO, 100);
+        waitForNextSecond(); // So the token has at least a second left
+        TokenClaims beforeRotation = service.issue("S001", AuthTokenService.ROLE_STUDENT);
+
+        // A zero rotation interval rotates on every run; twice, so the first key is two keys back
+        Thread.sleep(2);
+        service.maintain();
+        Thread.sleep(2);
+        service.maintain();
+        TokenClaims afterRotation = service.issue("S001", AuthTokenService.ROLE_STUDENT);
+        assertNotEquals(keyId(beforeRotation), keyId(afterRotation));
+        assertTrue(service.verify(beforeRotation.getToken()).isPresent());
+
+        Thread.sleep(Duration.between(Instant.now(), beforeRotation.getExpiresAt()).toMillis() + 1_100);
+        service.maintain();
+        assertTrue(service.verify(beforeRotation.getToken()).isEmpty());
+    }
+
+    @Test
+    void configuredKeysSignWithTheFirstAndAcceptTheRest() {
+        AuthTokenService before = service("old:" + KEY_A, Duration.ofHours(8), 100);
+        AuthTokenService during = service("new:" + KEY_B + ", old:" + KEY_A, Duration.ofHours(8), 100);
+        AuthTokenService after = service("new:" + KEY_B, Duration.ofHours(8), 100);
+        String oldToken = before.issue("S001", AuthTokenService.ROLE_STUDENT).getToken();
+        String newToken = during.issue("S001", AuthTokenService.ROLE_STUDENT).getToken();
+
+        assertTrue(newToken.startsWith("new."));
+        assertTrue(during.verify(oldToken).isPresent());
+        assertTrue(after.verify(newToken).isPresent());
+        assertTrue(after.verify(oldToken).isEmpty());
+        assertTrue(before.verify(newToken).isEmpty());
+    }
+
+    @Test
+    void rejectsShortOrMalformedConfiguredKeys() {
+        assertThrows(IllegalStateException.class, () -> service("short:" + Base64.getEncoder().encodeToString(new byte[16]),
+                Duration.ofHours(8), 100));
+        assertThrows(IllegalStateException.class, () -> service("no-secret", Duration.ofHours(8), 100));
+        assertThrows(IllegalStateException.class, () -> service("dotted.id:" + KEY_A, Duration.ofHours(8), 100));
+    }
+
+    // Helper methods
+
+    private static AuthTokenService service(String keys, Duration ttl, int maxRevoked) {
+        return new AuthTokenService(keys, ttl, Duration.ofDays(1), maxRevoked);
+    }
+
+    private static String keyId(TokenClaims claims) {
+        return claims.getToken().substring(0, claims.getToken().indexOf('.'));
+    }
+
+    // A 32-byte secret, Base64 encoded as library.auth.token-keys expects
+    private static String secret(char fill) {
+        return Base64.getEncoder().encodeToString(String.valueOf(fill).repeat(32).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void waitForNextSecond() throws InterruptedException {
+        long second = Instant.now().getEpochSecond();
+        while (Instant.now().getEpochSecond() == second) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.librarybackend.service;
+
+import com.example.librarybackend.model.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Matching and ranking of the in-memory search index, without Spring or a database
+class BookSearchIndexTest {
+
+    private BookSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new BookSearchIndex();
+        index.put(book("978-0-439-13959-5", "Harry Potter and the Goblet of Fire", "J. K. Rowling", "Fantasy"));
+        index.put(book("978-0-262-03384-8", "Introduction to Algorithms", "Thomas Cormen", "Computer Science"));
+        index.put(book("978-0-13-468599-1", "The Pragmatic Programmer", "Andrew Hunt", "Software"));
+        index.put(book("978-1-4028-9462-6", "Gardening for Beginners", "Harriet Potter", "Hobbies"));
+        index.put(book("978-0-00-000001-1", "Cooking Basics", "Lena Ford", "Potter Studies"));
+    }
+
+    @Test
+    void matchesPrefixesForTypeahead() {
+        assertEquals(List.of("978-0-262-03384-8"), ids(index.search("algo", 10)));
+        assertEquals(List.of("978-0-13-468599-1"), ids(index.search("pragm prog", 10)));
+    }
+
+    @Test
+    void doesNotExpandSingleLetterPrefixes() {
+        assertTrue(index.search("h", 10).isEmpty());
+    }
+
+    @Test
+    void toleratesOneTypo() {
+        assertEquals(List.of("978-0-262-03384-8"), ids(index.search("algoritms", 10)));  // letter missing
+        assertEquals(List.of("978-0-262-03384-8"), ids(index.search("algorithsm", 10))); // letters swapped
+        assertEquals(List.of("978-0-262-03384-8"), ids(index.search("alkorithms", 10))); // letter changed
+        assertTrue(index.search("alkoritms", 10).isEmpty());                             // two typos
+    }
+
+    @Test
+    void doesNotCorrectShortWords() {
+        assertEquals(List.of("978-0-439-13959-5"), ids(index.search("fure", 10)));
+        assertTrue(index.search("fre", 10).isEmpty());
+    }
+
+    @Test
+    void everyWordHasToMatch() {
+        assertEquals(List.of("978-0-439-13959-5"), ids(index.search("potter goblet", 10)));
+        assertTrue(index.search("potter algorithms", 10).isEmpty());
+    }
+
+    @Test
+    void ranksTitleAboveAuthorAboveGenre() {
+        assertEquals(List.of("978-0-439-13959-5", "978-1-4028-9462-6", "978-0-00-000001-1"),
+                ids(index.search("potter", 10)));
+    }
+
+    @Test
+    void ranksExactAbovePrefixAboveTypo() {
+        index.put(book("978-0-00-000002-2", "Algorithm Design", "Jon Kleinberg", "Computer Science"));
+        index.put(book("978-0-00-000003-3", "Algorithmic Puzzles", "Anany Levitin", "Computer Science"));
+        index.put(book("978-0-00-000004-4", "Algorihtm Notes", "Pierre Martin", "Computer Science"));
+
+        List<String> ranked = ids(index.search("algorithm", 10));
+        assertEquals("978-0-00-000002-2", ranked.get(0));  // exact
+        assertTrue(ranked.indexOf("978-0-00-000003-3") < ranked.indexOf("978-0-00-000004-4")); // prefix, then typo
+    }
+
+    @Test
+    void ranksIsbnMatchFirst() {
+        index.put(book("978-0-00-000005-5", "Notes on 9780262033848", "Anon", "Reference"));
+        assertEquals("978-0-262-03384-8", ids(index.search("9780262033848", 10)).get(0));
+    }
+
+    @Test
+    void reindexesChangedAndRemovedBooks() {
+        index.put(book("978-0-262-03384-8", "Data Structures", "Thomas Cormen", "Computer Science"));
+        assertTrue(index.search("algorithms", 10).isEmpty());
+        assertEquals(List.of("978-0-262-03384-8"), ids(index.search("structures", 10)));
+
+        index.remove("978-0-262-03384-8");
+        assertTrue(index.search("cormen", 10).isEmpty());
+    }
+
+    @Test
+    void keepsAtMostLimitResults() {
+        assertEquals(2, index.search("potter", 2).size());
+    }
+
+    @Test
+    void appliesChangesInsideATransactionOnlyOnCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            index.put(book("978-0-00-000006-6", "Rolled Back Title", "Nobody", "None"));
+            index.put(book("978-0-00-000007-7", "Committed Title", "Somebody", "None"));
+            assertTrue(index.search("title", 10).isEmpty());
+
+            List<TransactionSynchronization> pending = TransactionSynchronizationManager.getSynchronizations();
+            pending.get(1).afterCommit();
+            assertEquals(List.of("978-0-00-000007-7"), ids(index.search("title", 10)));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    // Helper methods
+
+    private static Book book(String id, String title, String author, String genre) {
+        Book book = new Book();
+        book.setId(id);
+        book.setTitle(title);
+        book.setAuthor(author);
+        book.setGenre(genre);
+        book.setCopies(1);
+        return book;
+    }
+
+    private static List<String> ids(List<Book> books) {
+        return books.stream().map(Book::getId).toList();
+    }
+}
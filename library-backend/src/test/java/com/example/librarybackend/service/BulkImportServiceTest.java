@@ -0,0 +1,143 @@
+package com.example.librarybackend.service;
+
+import com.example.librarybackend.dto.ImportResult;
+import com.example.librarybackend.model.Book;
+import com.example.librarybackend.model.Student;
+import com.example.librarybackend.repository.BookRepository;
+import com.example.librarybackend.repository.StudentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+// Validation and upsert rules of the bulk import, against the test database.
+// Every test uses its own ids, so they don't depend on each other.
+@SpringBootTest
+class BulkImportServiceTest {
+
+    @Autowired private BulkImportService bulkImportService;
+    @Autowired private BookRepository bookRepository;
+    @Autowired private StudentRepository studentRepository;
+
+    @Test
+    void skipsMalformedBookRowsAndImportsTheRest() {
+        ImportResult result = importBooks("id,title,author,genre,copies\n"
+                + "IMP-B1,Dune,Frank Herbert,Fiction,3\n"
+                + "IMP-B2,,Nobody,Fiction,1\n"
+                + "IMP-B3,Emma,Jane Austen,Fiction,three\n"
+                + "IMP-B4,Ulysses,James Joyce,Fiction,-1\n"
+                + "IMP-B5," + "x".repeat(256) + ",Someone,Fiction,1\n"
+                + "IMP-B6,Beloved,Toni Morrison,Fiction,2\n");
+
+        assertEquals(6, result.getRowsRead());
+        assertEquals(2, result.getRowsImported());
+        assertEquals(4, result.getRowsFailed());
+        assertEquals(Map.of(
+                        2L, "title is required",
+                        3L, "copies must be a whole number, got 'three'",
+                        4L, "copies cannot be negative",
+                        5L, "title is longer than 255 characters"),
+                errorsByRow(result));
+        assertEquals(3, bookRepository.findById("IMP-B1").orElseThrow().getCopies());
+        assertEquals(2, bookRepository.findById("IMP-B6").orElseThrow().getCopies());
+        assertFalse(bookRepository.existsById("IMP-B3"));
+    }
+
+    @Test
+    void duplicateBookIdsUpdateTheSameBook() {
+        Book existing = new Book();
+        existing.setId("IMP-D1");
+        existing.setTitle("Old Title");
+        existing.setCopies(9);
+        existing.setImagePath("cover.png");
+        bookRepository.save(existing);
+
+        ImportResult result = importBooks("id,title,copies\n"
+                + "IMP-D1,New Title,4\n"
+                + "IMP-D2,First Version,1\n"
+                + "IMP-D2,Second Version,5\n");
+
+        assertEquals(3, result.getRowsImported());
+        assertEquals(List.of(), result.getErrors());
+        Book updated = bookRepository.findById("IMP-D1").orElseThrow();
+        assertEquals("New Title", updated.getTitle());
+        assertEquals(4, updated.getCopies());
+        assertEquals("cover.png", updated.getImagePath()); // No imagePath column keeps the cover
+        Book duplicated = bookRepository.findById("IMP-D2").orElseThrow();
+        assertEquals("Second Version", duplicated.getTitle());
+        assertEquals(5, duplicated.getCopies());
+    }
+
+    @Test
+    void rejectsStudentRowsWithConflictingOrInvalidEmails() {
+        Student existing = new Student();
+        existing.setId("IMP-S1");
+        existing.setName("Existing Student");
+        existing.setEmail("imp-taken@college.edu");
+        studentRepository.save(existing);
+
+        ImportResult result = importStudents("id,name,email,cohort\n"
+                + "IMP-S2,Second Student,imp-taken@college.edu,2025\n"
+                + "IMP-S3,Third Student,imp-new@college.edu,2025\n"
+                + "IMP-S4,Fourth Student,imp-new@college.edu,2025\n"
+                + "IMP-S5,Fifth Student,not-an-email,2025\n"
+                + "IMP-S6,,imp-six@college.edu,2025\n"
+                + "IMP-S1,Existing Student,imp-taken@college.edu,2024\n");
+
+        assertEquals(6, result.getRowsRead());
+        assertEquals(2, result.getRowsImported());
+        assertEquals(Map.of(
+                        1L, "Email imp-taken@college.edu is already used by student IMP-S1",
+                        3L, "Email imp-new@college.edu is already used by student IMP-S3",
+                        4L, "email 'not-an-email' is not a valid address",
+                        5L, "name is required"),
+                errorsByRow(result));
+        assertEquals("imp-new@college.edu", studentRepository.findById("IMP-S3").orElseThrow().getEmail());
+        assertEquals("2024", studentRepository.findById("IMP-S1").orElseThrow().getCohort());
+        assertFalse(studentRepository.existsById("IMP-S2"));
+        assertFalse(studentRepository.existsById("IMP-S4"));
+    }
+
+    @Test
+    void reportsJsonThatIsNotAnArrayOfObjects() {
+        ImportResult notAnArray = bulkImportService.importBooks(
+                stream("{\"id\": \"IMP-J1\", \"title\": \"Dune\", \"copies\": 1}"), BulkImportService.FORMAT_JSON);
+        assertEquals(0, notAnArray.getRowsImported());
+        assertEquals(Map.of(1L, "Stopped reading file: Expected a JSON array of objects"), errorsByRow(notAnArray));
+
+        ImportResult brokenHalfWay = bulkImportService.importBooks(
+                stream("[{\"id\": \"IMP-J2\", \"title\": \"Dune\", \"copies\": 1}, \"IMP-J3\"]"), BulkImportService.FORMAT_JSON);
+        assertEquals(1, brokenHalfWay.getRowsImported());
+        assertEquals(Map.of(2L, "Stopped reading file: Expected a JSON object at line 1"), errorsByRow(brokenHalfWay));
+        assertEquals("Dune", bookRepository.findById("IMP-J2").orElseThrow().getTitle());
+    }
+
+    // Helper methods
+
+    private ImportResult importBooks(String csv) {
+        return bulkImportService.importBooks(stream(csv), BulkImportService.FORMAT_CSV);
+    }
+
+    private ImportResult importStudents(String csv) {
+        return bulkImportService.importStudents(stream(csv), BulkImportService.FORMAT_CSV);
+    }
+
+    // Error messages by row number; data rows are numbered from 1, not counting the CSV header
+    private static Map<Long, String> errorsByRow(ImportResult result) {
+        return result.getErrors().stream()
+                .collect(Collectors.toMap(ImportResult.RowError::getRow, ImportResult.RowError::getMessage));
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
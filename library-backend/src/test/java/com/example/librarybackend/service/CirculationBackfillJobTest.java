@@ -0,0 +1,244 @@
+package com.example.librarybackend.service;
+
+import com.example.librarybackend.controller.TransactionController;
+import com.example.librarybackend.dto.TransactionDto;
+import com.example.librarybackend.dto.TransactionResponse;
+import com.example.librarybackend.model.Book;
+import com.example.librarybackend.model.CirculationRollup;
+import com.example.librarybackend.model.Student;
+import com.example.librarybackend.model.Transaction;
+import com.example.librarybackend.repository.BookRepository;
+import com.example.librarybackend.repository.CirculationRollupRepository;
+import com.example.librarybackend.repository.StudentRepository;
+import com.example.librarybackend.repository.TransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Rebuilds the rollups from a history the live path never saw, while the desk keeps issuing and
+// returning books, and checks that the result matches the transactions table exactly and that
+// the analytics never read an empty table in the meantime.
+@SpringBootTest
+class CirculationBackfillJobTest {
+
+    private static final String[] GENRES = {"Backfill Fiction", "Backfill Science", " "};
+    private static final String[] COHORTS = {"BF-2024", "BF-2025", null};
+    private static final int BOOKS = 6;
+    private static final int STUDENTS = 9;
+    private static final int HISTORY = 400;
+    private static final int CHUNK_SIZE = 7;
+
+    @Autowired private CirculationBackfillJob backfillJob;
+    @Autowired private CirculationRollupService rollupService;
+    @Autowired private CirculationRollupRepository rollupRepository;
+    @Autowired private TransactionController transactionController;
+    @Autowired private BookRepository bookRepository;
+    @Autowired private StudentRepository studentRepository;
+    @Autowired private TransactionRepository transactionRepository;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    private int defaultChunkSize;
+
+    @BeforeEach
+    void setUp() {
+        // Small chunks, so the rebuild takes many steps and the desk gets in between them
+        defaultChunkSize = (int) ReflectionTestUtils.getField(backfillJob, "chunkSize");
+        ReflectionTestUtils.setField(backfillJob, "chunkSize", CHUNK_SIZE);
+
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < BOOKS; i++) {
+            Book book = new Book();
+            book.setId("BACKFILL-" + i);
+            book.setTitle("Backfill Book " + i);
+            book.setGenre(GENRES[i % GENRES.length]);
+            book.setCopies(1000);
+            books.add(book);
+        }
+        bookRepository.saveAll(books);
+        List<Student> students = new ArrayList<>();
+        for (int i = 0; i < STUDENTS; i++) {
+            Student student = new Student();
+            student.setId("BACKFILL-S" + i);
+            student.setName("Backfill Student " + i);
+            student.setEmail("backfill" + i + "@college.edu");
+            student.setCohort(COHORTS[i % COHORTS.length]);
+            students.add(student);
+        }
+        studentRepository.saveAll(students);
+
+        // Two months of history saved straight to the table, so the rollups know nothing about it
+        Random random = new Random(7);
+        LocalDateTime now = LocalDateTime.now();
+        List<Transaction> history = new ArrayList<>();
+        for (int i = 0; i < HISTORY; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setBook(books.get(random.nextInt(BOOKS)));
+            transaction.setStudent(students.get(random.nextInt(STUDENTS)));
+            LocalDateTime issued = now.minusDays(1 + random.nextInt(60)).minusMinutes(random.nextInt(600));
+            transaction.setIssueDate(issued);
+            transaction.setDueDate(issued.plusDays(15));
+            if (random.nextInt(3) > 0) {
+                LocalDateTime returned = issued.plusDays(random.nextInt(25));
+                transaction.setReturnDate(returned.isAfter(now) ? now.minusHours(1) : returned);
+                if (returned.isAfter(issued.plusDays(15))) {
+                    transaction.setFinePaid(new BigDecimal("1.50"));
+                }
+            }
+            history.add(transaction);
+        }
+        transactionRepository.saveAll(history);
+    }
+
+    @AfterEach
+    void restoreChunkSize() {
+        ReflectionTestUtils.setField(backfillJob, "chunkSize", defaultChunkSize);
+    }
+
+    @Test
+    void rebuildMatchesTransactionsWhileTheDeskKeepsWorking() throws Exception {
+        // Some rollups the rebuild has to keep showing until it swaps the new ones in
+        TransactionDto first = new TransactionDto();
+        first.setBookId("BACKFILL-0");
+        first.setStudentId("BACKFILL-S0");
+        transactionController.issueBook(first);
+
+        AtomicBoolean stop = new AtomicBoolean(false);
+        AtomicInteger deskChanges = new AtomicInteger();
+        AtomicInteger emptyReads = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int w = 0; w < 2; w++) {
+            int worker = w;
+            workers.add(pool.submit(() -> {
+                Random random = new Random(worker);
+                List<Integer> open = new ArrayList<>();
+                while (!stop.get()) {
+                    if (open.isEmpty() || random.nextBoolean()) {
+                        TransactionDto dto = new TransactionDto();
+                        dto.setBookId("BACKFILL-" + random.nextInt(BOOKS));
+                        dto.setStudentId("BACKFILL-S" + random.nextInt(STUDENTS));
+                        ResponseEntity<TransactionResponse> issued = transactionController.issueBook(dto);
+                        open.add(issued.getBody().getId());
+                    } else {
+                        int id = open.remove(random.nextInt(open.size()));
+                        Map<String, Object> payload = random.nextBoolean() ? Map.of("finePaid", "0.75") : Map.of();
+                        transactionController.returnBook(id, payload);
+                    }
+                    deskChanges.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        workers.add(pool.submit(() -> {
+            LocalDate today = LocalDate.now();
+            while (!stop.get()) {
+                if (rollupService.findRange(CirculationRollupService.PERIOD_DAY,
+                        CirculationRollupService.DIMENSION_GENRE, today, today).isEmpty()) {
+                    emptyReads.incrementAndGet();
+                }
+            }
+            return null;
+        }));
+
+        waitForDeskChanges(deskChanges, 20);
+        long read = backfillJob.rebuild();
+        int changesDuringRebuild = deskChanges.get();
+        waitForDeskChanges(deskChanges, changesDuringRebuild + 20);
+        stop.set(true);
+        for (Future<?> worker : workers) {
+            worker.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertTrue(read >= HISTORY, "rebuild read " + read + " transactions");
+        assertEquals(0, emptyReads.get(), "analytics read an empty rollup table during the rebuild");
+        assertEquals(expectedFromTransactions(), actualRollups());
+    }
+
+    // Helper methods
+
+    private static void waitForDeskChanges(AtomicInteger deskChanges, int atLeast) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (deskChanges.get() < atLeast && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    // Every bucket worked out straight from the transactions table, as
+    // "period|start|dimension|value" -> "issues returns overdue fines"
+    private Map<String, String> expectedFromTransactions() {
+        Map<String, long[]> counts = new HashMap<>();
+        Map<String, BigDecimal> fines = new HashMap<>();
+        jdbcTemplate.query("SELECT t.issue_date, t.due_date, t.return_date, t.fine_paid, b.genre, s.cohort " +
+                "FROM transactions t JOIN books b ON b.id = t.book_id JOIN students s ON s.id = t.student_id", rs -> {
+            String genre = blankTo(rs.getString("genre"), "Unknown");
+            String cohort = blankTo(rs.getString("cohort"), "Unassigned");
+            LocalDate issued = rs.getTimestamp("issue_date").toLocalDateTime().toLocalDate();
+            for (String key : keys(issued, genre, cohort)) {
+                counts.computeIfAbsent(key, k -> new long[3])[0]++;
+                fines.putIfAbsent(key, BigDecimal.ZERO);
+            }
+            Timestamp returnDate = rs.getTimestamp("return_date");
+            if (returnDate != null) {
+                boolean late = returnDate.after(rs.getTimestamp("due_date"));
+                BigDecimal fine = rs.getBigDecimal("fine_paid") != null ? rs.getBigDecimal("fine_paid") : BigDecimal.ZERO;
+                for (String key : keys(returnDate.toLocalDateTime().toLocalDate(), genre, cohort)) {
+                    long[] bucket = counts.computeIfAbsent(key, k -> new long[3]);
+                    bucket[1]++;
+                    if (late) {
+                        bucket[2]++;
+                    }
+                    fines.merge(key, fine, BigDecimal::add);
+                }
+            }
+        });
+        Map<String, String> expected = new HashMap<>();
+        counts.forEach((key, bucket) -> expected.put(key,
+                bucket[0] + " " + bucket[1] + " " + bucket[2] + " " + fines.get(key).stripTrailingZeros().toPlainString()));
+        return expected;
+    }
+
+    private Map<String, String> actualRollups() {
+        Map<String, String> actual = new HashMap<>();
+        for (CirculationRollup rollup : rollupRepository.findAll()) {
+            actual.put(rollup.getPeriod() + "|" + rollup.getPeriodStart() + "|" + rollup.getDimension() + "|" + rollup.getDimensionValue(),
+                    rollup.getIssues() + " " + rollup.getReturns() + " " + rollup.getOverdueReturns() + " "
+                            + rollup.getFinesCollected().stripTrailingZeros().toPlainString());
+        }
+        return actual;
+    }
+
+    private static List<String> keys(LocalDate day, String genre, String cohort) {
+        LocalDate month = day.withDayOfMonth(1);
+        return List.of("DAY|" + day + "|GENRE|" + genre, "MONTH|" + month + "|GENRE|" + genre,
+                "DAY|" + day + "|COHORT|" + cohort, "MONTH|" + month + "|COHORT|" + cohort);
+    }
+
+    private static String blankTo(String value, String fallback) {
+        return value == null || value.isBlank() ? fallback : value;
+    }
+}
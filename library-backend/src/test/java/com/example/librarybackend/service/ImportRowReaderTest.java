@@ -0,0 +1,97 @@
+package com.example.librarybackend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Parsing of CSV and JSON import files, one row at a time
+class ImportRowReaderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void readsCsvRowsByLowerCasedHeader() throws IOException {
+        List<Map<String, String>> rows = readCsv("﻿ID, Title ,COPIES\n978-1,Dune,3\n978-2,Emma,1\n");
+        assertEquals(List.of(Map.of("id", "978-1", "title", "Dune", "copies", "3"),
+                Map.of("id", "978-2", "title", "Emma", "copies", "1")), rows);
+    }
+
+    @Test
+    void readsQuotedCsvValues() throws IOException {
+        List<Map<String, String>> rows = readCsv("id,title\n"
+                + "978-1,\"Eats, Shoots & Leaves\"\n"
+                + "978-2,\"The \"\"Best\"\" Book\"\n"
+                + "978-3,\"Two\nLines\"\n");
+        assertEquals("Eats, Shoots & Leaves", rows.get(0).get("title"));
+        assertEquals("The \"Best\" Book", rows.get(1).get("title"));
+        assertEquals("Two\nLines", rows.get(2).get("title"));
+        assertEquals("978-3", rows.get(2).get("id"));
+    }
+
+    @Test
+    void skipsBlankCsvLinesAndLeavesMissingColumnsOut() throws IOException {
+        List<Map<String, String>> rows = readCsv("id,title,copies\n\n978-1\n\n978-2,Emma,1,extra\n");
+        assertEquals(List.of(Map.of("id", "978-1"), Map.of("id", "978-2", "title", "Emma", "copies", "1")), rows);
+    }
+
+    @Test
+    void readsAnUnterminatedQuoteToTheEndOfTheFile() throws IOException {
+        List<Map<String, String>> rows = readCsv("id,title\n978-1,\"Never closed\n978-2,Emma\n");
+        assertEquals(List.of(Map.of("id", "978-1", "title", "Never closed\n978-2,Emma")), rows);
+    }
+
+    @Test
+    void emptyCsvHasNoRows() throws IOException {
+        assertEquals(List.of(), readCsv(""));
+        assertEquals(List.of(), readCsv("id,title\n"));
+    }
+
+    @Test
+    void readsJsonObjectsAsText() throws IOException {
+        try (ImportRowReader reader = ImportRowReader.json(stream("[{\"ID\": \"978-1\", \"copies\": 3, \"genre\": null}]"),
+                objectMapper)) {
+            Map<String, String> row = reader.next();
+            assertEquals("978-1", row.get("id"));
+            assertEquals("3", row.get("copies"));
+            assertNull(row.get("genre"));
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void rejectsJsonThatIsNotAnArrayOfObjects() throws IOException {
+        assertThrows(IOException.class, () -> ImportRowReader.json(stream("{\"id\": \"978-1\"}"), objectMapper));
+        try (ImportRowReader reader = ImportRowReader.json(stream("[{\"id\": \"978-1\"}, 42]"), objectMapper)) {
+            assertEquals("978-1", reader.next().get("id"));
+            assertThrows(IOException.class, reader::next);
+        }
+    }
+
+    // Helper methods
+
+    private static List<Map<String, String>> readCsv(String csv) throws IOException {
+        List<Map<String, String>> rows = new ArrayList<>();
+        try (ImportRowReader reader = ImportRowReader.csv(stream(csv))) {
+            Map<String, String> row;
+            while ((row = reader.next()) != null) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
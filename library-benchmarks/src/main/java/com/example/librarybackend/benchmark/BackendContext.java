@@ -0,0 +1,97 @@
+package com.example.librarybackend.benchmark;
+
+import com.example.librarybackend.LibraryBackendApplication;
+import com.example.librarybackend.controller.AuthController;
+import com.example.librarybackend.controller.TransactionController;
+import com.example.librarybackend.model.Book;
+import com.example.librarybackend.model.Student;
+import com.example.librarybackend.repository.BookRepository;
+import com.example.librarybackend.repository.StudentRepository;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// The whole backend (minus the web server) on an in-memory H2 database in MySQL mode, seeded
+// with BOOKS books and STUDENTS students. Shared by the benchmarks that go through the real
+// controllers, JPA and transactions, so they measure what a request costs apart from HTTP.
+@State(Scope.Benchmark)
+public class BackendContext {
+
+    public static final int BOOKS = 1000;
+    public static final int STUDENTS = 1000;
+    // Enough that issuing never runs out, since every issue in a benchmark is followed by a return
+    private static final int COPIES = 1000;
+
+    private ConfigurableApplicationContext context;
+
+    public TransactionController transactionController;
+    public AuthController authController;
+
+    @Setup(Level.Trial)
+    public void start() {
+        // Command-line arguments, so they win over the MySQL settings in application.properties
+        context = new SpringApplicationBuilder(LibraryBackendApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:bench;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--library.overdue.scan-initial-delay-ms=3600000",
+                        "--logging.level.root=WARN");
+        seed();
+        transactionController = context.getBean(TransactionController.class);
+        authController = context.getBean(AuthController.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    public static String bookId(int i) {
+        return "BENCH-B" + i;
+    }
+
+    public static String studentId(int i) {
+        return "BENCH-S" + i;
+    }
+
+    public static String studentEmail(int i) {
+        return "student" + i + "@bench.example.com";
+    }
+
+    // Helper methods
+
+    private void seed() {
+        List<Book> books = new ArrayList<>(BOOKS);
+        for (int i = 0; i < BOOKS; i++) {
+            Book book = new Book();
+            book.setId(bookId(i));
+            book.setTitle("Benchmark Book " + i);
+            book.setAuthor("Author " + (i % 50));
+            book.setGenre("Genre " + (i % 12));
+            book.setCopies(COPIES);
+            books.add(book);
+        }
+        context.getBean(BookRepository.class).saveAll(books);
+
+        List<Student> students = new ArrayList<>(STUDENTS);
+        for (int i = 0; i < STUDENTS; i++) {
+            Student student = new Student();
+            student.setId(studentId(i));
+            student.setName("Student " + i);
+            student.setEmail(studentEmail(i));
+            student.setCohort("Cohort " + (i % 8));
+            students.add(student);
+        }
+        context.getBean(StudentRepository.class).saveAll(students);
+    }
+}
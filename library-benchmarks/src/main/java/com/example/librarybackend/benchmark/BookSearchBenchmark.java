@@ -0,0 +1,121 @@
+package com.example.librarybackend.benchmark;
+
+import com.example.librarybackend.model.Book;
+import com.example.librarybackend.service.BookSearchIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// BookSearchIndex.search over a catalog of BOOKS generated titles, the size the search endpoint is
+// meant to answer within 5 ms. Titles, authors and genres are drawn from a vocabulary of VOCABULARY
+// random words, and half of every title from its first COMMON_WORDS, so common words hit thousands
+// of books, like "introduction" in a real catalog. The queries are what the search box sends: a
+// typeahead prefix, a word with a typo, and two words that both have to match. The index is built
+// once, without Spring or a database. Sampled rather than averaged, for the percentiles; the index
+// holds a few GB at this size, hence the heap.
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class BookSearchBenchmark {
+
+    private static final int BOOKS = 500_000;
+    private static final int VOCABULARY = 20_000;
+    private static final int COMMON_WORDS = 300;
+    private static final int QUERIES = 1_000;
+    private static final int LIMIT = 20;
+
+    private final BookSearchIndex index = new BookSearchIndex();
+    private String[] words;
+    private String[] prefixQueries;
+    private String[] typoQueries;
+    private String[] twoWordQueries;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        words = new String[VOCABULARY];
+        for (int i = 0; i < VOCABULARY; i++) {
+            words[i] = word(random);
+        }
+        for (int i = 0; i < BOOKS; i++) {
+            Book book = new Book();
+            book.setId("978-" + (1_000_000_000L + i));
+            book.setTitle(common(random) + " " + common(random) + " " + words[random.nextInt(VOCABULARY)]
+                    + " " + words[random.nextInt(VOCABULARY)]);
+            book.setAuthor(words[random.nextInt(VOCABULARY)] + " " + words[random.nextInt(VOCABULARY)]);
+            book.setGenre(words[random.nextInt(40)]);
+            book.setCopies(1 + random.nextInt(5));
+            index.put(book);
+        }
+
+        prefixQueries = new String[QUERIES];
+        typoQueries = new String[QUERIES];
+        twoWordQueries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            String word = common(random);
+            prefixQueries[i] = word.substring(0, Math.min(word.length(), 3 + random.nextInt(2)));
+            typoQueries[i] = typo(word, random);
+            twoWordQueries[i] = common(random) + " " + words[random.nextInt(VOCABULARY)];
+        }
+    }
+
+    @Benchmark
+    public List<Book> prefix(Cursor cursor) {
+        return index.search(prefixQueries[cursor.next++ % QUERIES], LIMIT);
+    }
+
+    @Benchmark
+    public List<Book> typo(Cursor cursor) {
+        return index.search(typoQueries[cursor.next++ % QUERIES], LIMIT);
+    }
+
+    @Benchmark
+    public List<Book> twoWords(Cursor cursor) {
+        return index.search(twoWordQueries[cursor.next++ % QUERIES], LIMIT);
+    }
+
+    // Helper methods
+
+    // Four to ten random letters
+    private static String word(Random random) {
+        char[] letters = new char[4 + random.nextInt(7)];
+        for (int i = 0; i < letters.length; i++) {
+            letters[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(letters);
+    }
+
+    private String common(Random random) {
+        return words[random.nextInt(COMMON_WORDS)];
+    }
+
+    // The word with two neighbouring letters swapped
+    private static String typo(String word, Random random) {
+        int at = random.nextInt(word.length() - 1);
+        char[] letters = word.toCharArray();
+        char swapped = letters[at];
+        letters[at] = letters[at + 1];
+        letters[at + 1] = swapped;
+        return new String(letters);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.librarybackend.benchmark;
+
+import com.example.librarybackend.dto.TransactionDto;
+import com.example.librarybackend.dto.TransactionResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Issuing a book and returning it again through TransactionController, with everything that
+// comes with it: row locks, the loan insert, search index and cache updates, stats, rollups
+// and the notification outbox. Books and students rotate so the caches behave like real traffic.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CirculationBenchmark {
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public TransactionResponse issueAndReturn(BackendContext backend, Cursor cursor) {
+        int i = cursor.next++;
+        TransactionDto request = new TransactionDto();
+        request.setBookId(BackendContext.bookId(i % BackendContext.BOOKS));
+        request.setStudentId(BackendContext.studentId(i % BackendContext.STUDENTS));
+
+        TransactionResponse issued = backend.transactionController.issueBook(request).getBody();
+        return backend.transactionController.returnBook(issued.getId(), Map.of()).getBody();
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.librarybackend.benchmark;
+
+import com.example.librarybackend.dto.LoginRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.TimeUnit;
+
+// AuthController.login for the three kinds of caller: the librarian (a BCrypt check on the password
+// hashing pool), a known student without a password (looked up by email through the entity cache)
+// and an email nobody has. Successful logins include signing a token.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoginBenchmark {
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public ResponseEntity<?> studentLogin(BackendContext backend, Cursor cursor) {
+        String email = BackendContext.studentEmail(cursor.next++ % BackendContext.STUDENTS);
+        return backend.authController.login(request(email, "secret")).join();
+    }
+
+    @Benchmark
+    public ResponseEntity<?> librarianLogin(BackendContext backend) {
+        return backend.authController.login(request("librarian@library.com", "admin123")).join();
+    }
+
+    @Benchmark
+    public ResponseEntity<?> unknownLogin(BackendContext backend, Cursor cursor) {
+        return backend.authController.login(request("nobody" + (cursor.next++ % 1000) + "@bench.example.com", "secret")).join();
+    }
+
+    private static LoginRequest request(String email, String password) {
+        LoginRequest request = new LoginRequest();
+        request.setEmail(email);
+        request.setPassword(password);
+        return request;
+    }
+}
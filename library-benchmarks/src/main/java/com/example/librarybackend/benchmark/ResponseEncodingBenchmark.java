@@ -0,0 +1,107 @@
+package com.example.librarybackend.benchmark;
+
+import com.example.librarybackend.config.GzipEncoderPool;
+import com.example.librarybackend.dto.TransactionResponse;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// The body of GET /api/transactions in each encoding a client can ask for: JSON, Smile or CBOR,
+// each plain or gzipped the way ResponseCompressionFilter does it (pooled encoder, level 5).
+// Measures the CPU time per response; the encoded sizes are printed once per trial, as
+// "Encoded size: ..." lines in the output.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseEncodingBenchmark {
+
+    private static final int GZIP_LEVEL = 5;
+
+    @Param({"10000", "100000"})
+    public int rows;
+
+    @Param({"json", "smile", "cbor"})
+    public String format;
+
+    @Param({"identity", "gzip"})
+    public String encoding;
+
+    private List<TransactionResponse> transactions;
+    private ObjectWriter writer;
+    private GzipEncoderPool encoders;
+    private ByteArrayOutputStream body;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ObjectMapper json = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS) // As Spring Boot configures it
+                .build();
+        ObjectMapper mapper = switch (format) {
+            case "smile" -> json.copyWith(new SmileFactory());
+            case "cbor" -> json.copyWith(new CBORFactory());
+            default -> json.copyWith(new JsonFactory());
+        };
+        writer = mapper.writerFor(new TypeReference<List<TransactionResponse>>() { });
+        encoders = new GzipEncoderPool(GZIP_LEVEL, 1, 16 * 1024);
+        transactions = TransactionJsonBenchmark.sampleTransactions(rows);
+
+        // Big enough for the largest body, so growing the buffer isn't measured
+        body = new ByteArrayOutputStream(rows * 300);
+        encode();
+        System.out.printf("%nEncoded size: %d rows as %s, %s: %,d bytes%n", rows, format, encoding, body.size());
+    }
+
+    @Benchmark
+    public int encode() throws IOException {
+        body.reset();
+        if (encoding.equals("gzip")) {
+            GzipEncoderPool.GzipStream gzip = encoders.open(body);
+            writer.writeValue(nonClosing(gzip), transactions);
+            gzip.finish();
+        } else {
+            writer.writeValue(body, transactions);
+        }
+        return body.size();
+    }
+
+    // Jackson closes the stream it writes to; the filter finishes the gzip stream itself afterwards
+    private static OutputStream nonClosing(OutputStream out) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+        };
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.librarybackend.benchmark;
+
+import com.example.librarybackend.dto.TransactionResponse;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Writing the body of GET /api/transactions: a List<TransactionResponse> serialized the way
+// Spring MVC does it (a Jackson writer for the declared type, ISO dates). The bytes go nowhere,
+// so only serialization is measured, not buffering.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransactionJsonBenchmark {
+
+    @Param({"10000", "100000"})
+    public int rows;
+
+    private List<TransactionResponse> transactions;
+    private ObjectWriter writer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        writer = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS) // As Spring Boot configures it
+                .build()
+                .writerFor(new TypeReference<List<TransactionResponse>>() { });
+        transactions = sampleTransactions(rows);
+    }
+
+    @Benchmark
+    public void serialize() throws IOException {
+        writer.writeValue(OutputStream.nullOutputStream(), transactions);
+    }
+
+    // A loan history with 5000 books and 2000 students; two in three loans returned, a few with a fine
+    static List<TransactionResponse> sampleTransactions(int rows) {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 8, 9, 0);
+        List<TransactionResponse> transactions = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            LocalDateTime issued = start.plusMinutes(i * 7L);
+            boolean returned = i % 3 != 0;
+            transactions.add(new TransactionResponse(i + 1, "978-0-" + (100000 + i % 5000), "Book title number " + (i % 5000),
+                    "S" + (10000 + i % 2000), "Student Name " + (i % 2000), issued, issued.plusDays(15),
+                    returned ? issued.plusDays(i % 20) : null,
+                    returned && i % 20 > 15 ? BigDecimal.valueOf(i % 20 - 15) : null));
+        }
+        return transactions;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.librarybackend.controller;
+
+import com.example.librarybackend.dto.ReservationResponse;
+import com.example.librarybackend.dto.TransactionResponse;
+import com.example.librarybackend.model.Book;
+import com.example.librarybackend.model.Reservation;
+import com.example.librarybackend.model.Student;
+import com.example.librarybackend.model.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// The entity -> DTO conversions in TransactionController and ReservationController, on
+// ENTITIES plain entities (no Hibernate proxies). Reported per converted entity.
+// Lives in the controller package because convertToDto is package-private.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DtoConversionBenchmark {
+
+    private static final int ENTITIES = 1000;
+
+    private final TransactionController transactionController = new TransactionController();
+    private final ReservationController reservationController = new ReservationController();
+    private List<Transaction> transactions;
+    private List<Reservation> reservations;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        transactions = new ArrayList<>(ENTITIES);
+        reservations = new ArrayList<>(ENTITIES);
+        LocalDateTime start = LocalDateTime.of(2024, 1, 8, 9, 0);
+        for (int i = 0; i < ENTITIES; i++) {
+            Book book = new Book();
+            book.setId("978-0-" + (100000 + i));
+            book.setTitle("Book title number " + i);
+            Student student = new Student();
+            student.setId("S" + (10000 + i));
+            student.setName("Student Name " + i);
+
+            Transaction transaction = new Transaction();
+            transaction.setId(i + 1);
+            transaction.setBook(book);
+            transaction.setStudent(student);
+            transaction.setIssueDate(start.plusHours(i));
+            transaction.setDueDate(start.plusHours(i).plusDays(15));
+            if (i % 2 == 0) {
+                transaction.setReturnDate(start.plusHours(i).plusDays(10));
+                transaction.setFinePaid(BigDecimal.ZERO);
+            }
+            transactions.add(transaction);
+
+            Reservation reservation = new Reservation();
+            reservation.setId(i + 1);
+            reservation.setBook(book);
+            reservation.setStudent(student);
+            reservation.setReservationDate(start.plusMinutes(i));
+            reservations.add(reservation);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTITIES)
+    public void transactionToDto(Blackhole blackhole) {
+        for (Transaction transaction : transactions) {
+            TransactionResponse dto = transactionController.convertToDto(transaction);
+            blackhole.consume(dto);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTITIES)
+    public void reservationToDto(Blackhole blackhole) {
+        for (Reservation reservation : reservations) {
+            ReservationResponse dto = reservationController.convertToDto(reservation);
+            blackhole.consume(dto);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.example.librarybackend.loadtest;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+// Fills the library tables with a data set the size of a large library at scale 1.0: 500k books,
+// 50k students, 5M transactions over three years, plus reservations and notifications.
+//
+// The same seed and scale always give the same rows, and dates are relative to the start of the
+// day the data is generated, so runs on different days see the same mix of open, overdue and
+// returned loans. Rows go in with plain JDBC batches; the schema must already exist.
+final class DataGenerator {
+
+    static final int BOOKS = 500_000;
+    static final int STUDENTS = 50_000;
+    static final int TRANSACTIONS = 5_000_000;
+
+    static final String[] GENRES = {
+            "Fiction", "Mystery", "Science Fiction", "Fantasy", "Romance", "Thriller", "Horror", "Biography",
+            "History", "Science", "Mathematics", "Computer Science", "Philosophy", "Poetry", "Drama",
+            "Children", "Travel", "Art", "Economics", "Psychology"
+    };
+    static final String[] WORDS = {
+            "river", "shadow", "garden", "silent", "empire", "winter", "journey", "secret", "ocean", "mountain",
+            "glass", "crown", "forest", "storm", "letter", "island", "machine", "memory", "city", "night",
+            "summer", "stone", "fire", "light", "house", "road", "song", "dream", "war", "peace",
+            "theory", "history", "guide", "principles", "systems", "mind", "language", "world", "star", "code",
+            "kingdom", "harbor", "winds", "castle", "mirror", "bridge", "valley", "paper", "iron", "silver"
+    };
+    private static final String[] FIRST_NAMES = {
+            "Ada", "Alan", "Amara", "Ben", "Chen", "Clara", "David", "Elena", "Farah", "George", "Hana", "Ivan",
+            "Jamal", "Julia", "Kenji", "Laura", "Liam", "Maya", "Nadia", "Omar", "Priya", "Rafael", "Sara",
+            "Tomas", "Uma", "Victor", "Wei", "Yusuf", "Zara", "Noah"
+    };
+    private static final String[] LAST_NAMES = {
+            "Adams", "Baker", "Castro", "Diaz", "Evans", "Fischer", "Garcia", "Hughes", "Ito", "Jensen", "Khan",
+            "Larsen", "Moreau", "Nakamura", "Okafor", "Patel", "Quinn", "Rossi", "Silva", "Tanaka", "Usman",
+            "Varga", "Weber", "Xu", "Yamada", "Zhang", "Novak", "Kowalski", "Olsen", "Mendes"
+    };
+    private static final String[] NOTIFICATION_TYPES = {"BOOK_ISSUED", "BOOK_RETURNED", "BOOK_OVERDUE"};
+
+    private static final int BATCH_SIZE = 5_000;
+    private static final int HISTORY_DAYS = 3 * 365;
+    private static final int LOAN_DAYS = 15; // As TransactionController sets the due date
+    private static final BigDecimal FINE_PER_DAY = new BigDecimal("0.50");
+
+    private final Random random;
+    private final LocalDateTime now;
+    private final int books;
+    private final int students;
+    private final int transactions;
+
+    DataGenerator(double scale, long seed, LocalDateTime now) {
+        this.random = new Random(seed);
+        this.now = now;
+        this.books = scaled(BOOKS, scale);
+        this.students = scaled(STUDENTS, scale);
+        this.transactions = scaled(TRANSACTIONS, scale);
+    }
+
+    int getBooks() {
+        return books;
+    }
+
+    int getStudents() {
+        return students;
+    }
+
+    static int scaled(int count, double scale) {
+        return Math.max(1, (int) Math.round(count * scale));
+    }
+
+    static String bookId(int i) {
+        return String.format("LT-B%07d", i);
+    }
+
+    static String studentId(int i) {
+        return String.format("LT-S%06d", i);
+    }
+
+    static String studentEmail(int i) {
+        return "student" + i + "@loadtest.example.com";
+    }
+
+    static String genre(int book) {
+        return GENRES[book % GENRES.length];
+    }
+
+    // Book popularity is skewed like real circulation: a few titles take most of the loans
+    static int popularBook(Random random, int books) {
+        return (int) (books * Math.pow(random.nextDouble(), 3));
+    }
+
+    void generate(Connection connection) throws SQLException {
+        connection.setAutoCommit(false);
+        int[] copies = insertBooks(connection);
+        log("books", books);
+        insertStudents(connection);
+        log("students", students);
+        int[] onLoan = insertTransactions(connection, copies);
+        updateCopies(connection, onLoan);
+        log("transactions", transactions);
+        int reservations = insertReservations(connection, copies, onLoan);
+        log("reservations", reservations);
+        int notifications = insertNotifications(connection);
+        log("notifications", notifications);
+    }
+
+    // Helper methods
+
+    private int[] insertBooks(Connection connection) throws SQLException {
+        int[] copies = new int[books];
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO books (id, title, author, genre, copies) VALUES (?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < books; i++) {
+                copies[i] = 1 + random.nextInt(8);
+                ps.setString(1, bookId(i));
+                ps.setString(2, title());
+                ps.setString(3, name());
+                ps.setString(4, genre(i));
+                ps.setInt(5, copies[i]);
+                addToBatch(connection, ps, i);
+            }
+            flush(connection, ps);
+        }
+        return copies;
+    }
+
+    private void insertStudents(Connection connection) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO students (id, name, email, contact, cohort) VALUES (?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < students; i++) {
+                ps.setString(1, studentId(i));
+                ps.setString(2, name());
+                ps.setString(3, studentEmail(i));
+                ps.setString(4, String.format("555-%07d", i));
+                ps.setString(5, String.valueOf(now.getYear() - random.nextInt(6)));
+                addToBatch(connection, ps, i);
+            }
+            flush(connection, ps);
+        }
+    }
+
+    // Issue dates walk forward through the history, so ids grow with time as they do in production.
+    // Loans from the last two weeks are mostly still out, a few older ones are overdue, the rest came
+    // back, some of them late with a fine. Open loans take a copy off the shelf.
+    private int[] insertTransactions(Connection connection, int[] copies) throws SQLException {
+        int[] onLoan = new int[books];
+        LocalDateTime start = now.minusDays(HISTORY_DAYS);
+        long spanSeconds = HISTORY_DAYS * 86_400L;
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO transactions (book_id, student_id, issue_date, due_date, return_date, fine_paid) " +
+                "VALUES (?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < transactions; i++) {
+                LocalDateTime issued = start.plusSeconds(spanSeconds * i / transactions + random.nextInt(60));
+                LocalDateTime due = issued.plusDays(LOAN_DAYS);
+                int book = popularBook(random, books);
+                long ageDays = Duration.between(issued, now).toDays();
+                boolean open = ageDays < LOAN_DAYS ? random.nextInt(10) < 6 : ageDays < 45 && random.nextInt(20) == 0;
+                if (open && onLoan[book] >= copies[book]) {
+                    open = false; // Every copy is already out
+                }
+
+                ps.setString(1, bookId(book));
+                ps.setString(2, studentId(random.nextInt(students)));
+                ps.setTimestamp(3, Timestamp.valueOf(issued));
+                ps.setTimestamp(4, Timestamp.valueOf(due));
+                if (open) {
+                    onLoan[book]++;
+                    ps.setTimestamp(5, null);
+                    ps.setBigDecimal(6, null);
+                } else {
+                    LocalDateTime returned = issued.plusDays(1 + random.nextInt(20)).plusMinutes(random.nextInt(600));
+                    if (returned.isAfter(now)) {
+                        returned = now.minusMinutes(1 + random.nextInt(60));
+                    }
+                    long daysLate = Duration.between(due, returned).toDays();
+                    ps.setTimestamp(5, Timestamp.valueOf(returned));
+                    ps.setBigDecimal(6, daysLate > 0 ? FINE_PER_DAY.multiply(BigDecimal.valueOf(daysLate)) : null);
+                }
+                addToBatch(connection, ps, i);
+            }
+            flush(connection, ps);
+        }
+        return onLoan;
+    }
+
+    // books.copies holds the copies on the shelf, so open loans are taken off it
+    private void updateCopies(Connection connection, int[] onLoan) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("UPDATE books SET copies = copies - ? WHERE id = ?")) {
+            int pending = 0;
+            for (int i = 0; i < books; i++) {
+                if (onLoan[i] > 0) {
+                    ps.setInt(1, onLoan[i]);
+                    ps.setString(2, bookId(i));
+                    addToBatch(connection, ps, pending++);
+                }
+            }
+            flush(connection, ps);
+        }
+    }
+
+    // Students queue for books that have no copy left, and now and then for ones that do
+    private int insertReservations(Connection connection, int[] copies, int[] onLoan) throws SQLException {
+        List<Integer> unavailable = new ArrayList<>();
+        for (int i = 0; i < books; i++) {
+            if (onLoan[i] >= copies[i]) {
+                unavailable.add(i);
+            }
+        }
+        int count = Math.max(1, students / 2);
+        Set<Long> taken = new HashSet<>();
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO reservations (book_id, student_id, reservation_date) VALUES (?, ?, ?)")) {
+            for (int i = 0; i < count; i++) {
+                int book = !unavailable.isEmpty() && random.nextInt(10) < 8
+                        ? unavailable.get(random.nextInt(unavailable.size()))
+                        : popularBook(random, books);
+                int student = random.nextInt(students);
+                if (!taken.add((long) book * students + student)) {
+                    continue; // One place per student in a book's queue
+                }
+                ps.setString(1, bookId(book));
+                ps.setString(2, studentId(student));
+                ps.setTimestamp(3, Timestamp.valueOf(now.minusMinutes(random.nextInt(14 * 24 * 60))));
+                addToBatch(connection, ps, i);
+            }
+            flush(connection, ps);
+        }
+        return taken.size();
+    }
+
+    // About ten notifications per student over the last 90 days; those older than a week have been read
+    private int insertNotifications(Connection connection) throws SQLException {
+        int count = 0;
+        try (PreparedStatement ps = connection.prepareStatement(
+                "INSERT INTO notifications (user_id, message, type, is_read, created_at) VALUES (?, ?, ?, ?, ?)")) {
+            for (int student = 0; student < students; student++) {
+                int perStudent = random.nextInt(21);
+                for (int j = 0; j < perStudent; j++) {
+                    LocalDateTime created = now.minusMinutes(random.nextInt(90 * 24 * 60));
+                    String type = NOTIFICATION_TYPES[random.nextInt(NOTIFICATION_TYPES.length)];
+                    ps.setString(1, studentId(student));
+                    ps.setString(2, message(type));
+                    ps.setString(3, type);
+                    ps.setBoolean(4, created.isBefore(now.minusDays(7)) || random.nextBoolean());
+                    ps.setTimestamp(5, Timestamp.valueOf(created));
+                    addToBatch(connection, ps, count++);
+                }
+            }
+            flush(connection, ps);
+        }
+        return count;
+    }
+
+    private String title() {
+        int words = 1 + random.nextInt(3);
+        StringBuilder title = new StringBuilder("The");
+        for (int i = 0; i < words; i++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            title.append(' ').append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+        }
+        return title.toString();
+    }
+
+    private String name() {
+        return FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+    }
+
+    private String message(String type) {
+        String title = title();
+        switch (type) {
+            case "BOOK_ISSUED":
+                return "Book issued: \"" + title + "\". Due date: " + now.plusDays(random.nextInt(LOAN_DAYS)).toLocalDate();
+            case "BOOK_RETURNED":
+                return "Book returned: \"" + title + "\". Thank you!";
+            default:
+                return "Book overdue: \"" + title + "\". Please return it as soon as possible.";
+        }
+    }
+
+    private static void addToBatch(Connection connection, PreparedStatement ps, int index) throws SQLException {
+        ps.addBatch();
+        if ((index + 1) % BATCH_SIZE == 0) {
+            flush(connection, ps);
+        }
+    }
+
+    private static void flush(Connection connection, PreparedStatement ps) throws SQLException {
+        ps.executeBatch();
+        connection.commit();
+    }
+
+    private static void log(String table, int rows) {
+        System.out.printf("  %,d %s%n", rows, table);
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.librarybackend.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Response times and outcomes per endpoint ("GET /api/books/{id}"), kept only while recording is on,
+// so the warmup does not count. Every sample is kept, which makes the percentiles exact; a run of a
+// few minutes is a few hundred thousand longs.
+final class LatencyRecorder {
+
+    private final Map<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+    private volatile boolean recording;
+
+    void start() {
+        recording = true;
+    }
+
+    void stop() {
+        recording = false;
+    }
+
+    // status is the HTTP status, or 0 when no response came back (connection error, timeout)
+    void record(String endpoint, long nanos, int status) {
+        if (recording) {
+            endpoints.computeIfAbsent(endpoint, e -> new EndpointStats()).add(nanos, status);
+        }
+    }
+
+    // One row per endpoint plus a total; throughput is over the recorded window
+    List<Row> rows(Duration window) {
+        double seconds = window.toMillis() / 1000.0;
+        List<Row> rows = new ArrayList<>();
+        EndpointStats total = new EndpointStats();
+        for (Map.Entry<String, EndpointStats> entry : new TreeMap<>(endpoints).entrySet()) {
+            EndpointStats stats = entry.getValue();
+            rows.add(stats.toRow(entry.getKey(), seconds));
+            total.addAll(stats);
+        }
+        rows.add(total.toRow("TOTAL", seconds));
+        return rows;
+    }
+
+    String formatReport(Duration window) {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, "%-52s %9s %8s %6s %7s %9s %9s %9s %9s%n",
+                "Endpoint", "Requests", "Req/s", "4xx", "Errors", "p50 ms", "p95 ms", "p99 ms", "Max ms"));
+        for (Row row : rows(window)) {
+            out.append(String.format(Locale.ROOT, "%-52s %9d %8.1f %6d %6.2f%% %9.1f %9.1f %9.1f %9.1f%n",
+                    row.endpoint(), row.requests(), row.perSecond(), row.clientErrors(), row.errorPercent(),
+                    row.p50(), row.p95(), row.p99(), row.max()));
+        }
+        return out.toString();
+    }
+
+    void writeCsv(Path file, Duration window) throws IOException {
+        StringBuilder out = new StringBuilder("endpoint,requests,per_second,client_errors,errors,error_percent,p50_ms,p95_ms,p99_ms,max_ms\n");
+        for (Row row : rows(window)) {
+            out.append(String.format(Locale.ROOT, "\"%s\",%d,%.2f,%d,%d,%.3f,%.3f,%.3f,%.3f,%.3f%n",
+                    row.endpoint(), row.requests(), row.perSecond(), row.clientErrors(), row.errors(),
+                    row.errorPercent(), row.p50(), row.p95(), row.p99(), row.max()));
+        }
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Files.writeString(file, out);
+    }
+
+    // Latencies are in milliseconds. Errors are server errors and requests without a response;
+    // 4xx answers (no copies left, say) are counted separately, since the scenarios provoke some on purpose.
+    record Row(String endpoint, long requests, double perSecond, long clientErrors, long errors,
+               double errorPercent, double p50, double p95, double p99, double max) { }
+
+    // Helper methods
+
+    private static final class EndpointStats {
+        private long[] samples = new long[1024];
+        private int size;
+        private long clientErrors;
+        private long errors;
+
+        synchronized void add(long nanos, int status) {
+            if (size == samples.length) {
+                samples = Arrays.copyOf(samples, size * 2);
+            }
+            samples[size++] = nanos;
+            if (status == 0 || status >= 500) {
+                errors++;
+            } else if (status >= 400) {
+                clientErrors++;
+            }
+        }
+
+        synchronized void addAll(EndpointStats other) {
+            synchronized (other) {
+                if (size + other.size > samples.length) {
+                    samples = Arrays.copyOf(samples, Math.max(size + other.size, samples.length * 2));
+                }
+                System.arraycopy(other.samples, 0, samples, size, other.size);
+                size += other.size;
+                clientErrors += other.clientErrors;
+                errors += other.errors;
+            }
+        }
+
+        synchronized Row toRow(String endpoint, double seconds) {
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            return new Row(endpoint, size, seconds > 0 ? size / seconds : 0, clientErrors, errors,
+                    size > 0 ? errors * 100.0 / size : 0,
+                    percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99),
+                    size > 0 ? toMillis(sorted[size - 1]) : 0);
+        }
+
+        // Nearest-rank percentile
+        private static double percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return toMillis(sorted[Math.max(index, 0)]);
+        }
+
+        private static double toMillis(long nanos) {
+            return nanos / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.librarybackend.loadtest;
+
+import com.example.librarybackend.LibraryBackendApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Runs the load test end to end: generates the data set, starts the backend on it, drives it with
+// virtual users for the warmup and the measured duration, and reports every endpoint's throughput,
+// error rate and latency percentiles over the measured part only.
+//
+// Settings are system properties; the pom passes them on from -Dloadtest.* (see there for how to run it).
+// The backend runs in this JVM, so the users and the server share its CPUs, as they would on one box.
+public final class LoadTest {
+
+    private static final String DEFAULT_JDBC_URL =
+            "jdbc:h2:file:./target/loadtest-db/library;MODE=MySQL;DATABASE_TO_LOWER=TRUE";
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        double scale = Double.parseDouble(System.getProperty("loadtest.scale", "1.0"));
+        long seed = Long.getLong("loadtest.seed", 42L);
+        int users = Integer.getInteger("loadtest.users", 50);
+        Duration duration = Duration.parse(System.getProperty("loadtest.duration", "PT2M"));
+        Duration warmup = Duration.parse(System.getProperty("loadtest.warmup", "PT30S"));
+        long thinkTimeMs = Long.getLong("loadtest.think-time-ms", 200L);
+        String jdbcUrl = System.getProperty("loadtest.jdbc-url", DEFAULT_JDBC_URL);
+        String jdbcUser = System.getProperty("loadtest.jdbc-user", "sa");
+        String jdbcPassword = System.getProperty("loadtest.jdbc-password", "");
+        String baseUrl = System.getProperty("loadtest.base-url", "");
+        Path report = Path.of(System.getProperty("loadtest.report", "target/loadtest-report.csv"));
+
+        DataGenerator generator = new DataGenerator(scale, seed, LocalDate.now().atStartOfDay());
+        ConfigurableApplicationContext server = null;
+        if (baseUrl.isBlank()) {
+            System.out.printf("Generating data (scale %s, seed %d) into %s%n", scale, seed, jdbcUrl);
+            long started = System.nanoTime();
+            createSchema(jdbcUrl, jdbcUser, jdbcPassword);
+            try (Connection connection = DriverManager.getConnection(jdbcUrl, jdbcUser, jdbcPassword)) {
+                generator.generate(connection);
+            }
+            System.out.printf("Generated in %d s%n", TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - started));
+
+            server = startServer(jdbcUrl, jdbcUser, jdbcPassword);
+            baseUrl = "http://localhost:" + ((WebServerApplicationContext) server).getWebServer().getPort();
+        }
+
+        try {
+            LatencyRecorder recorder = new LatencyRecorder();
+            Duration window = run(baseUrl, recorder, generator, seed, users, warmup, duration, thinkTimeMs);
+            System.out.printf("%nResults over %d s with %d users (%s):%n%n", window.toSeconds(), users, baseUrl);
+            System.out.print(recorder.formatReport(window));
+            recorder.writeCsv(report, window);
+            System.out.printf("%nWritten to %s%n", report.toAbsolutePath());
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    // Helper methods
+
+    // Starts the users, lets them warm the server up, then records for the measured duration.
+    // Returns how long recording was actually on.
+    private static Duration run(String baseUrl, LatencyRecorder recorder, DataGenerator generator, long seed,
+                                int users, Duration warmup, Duration duration, long thinkTimeMs) throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        ObjectMapper mapper = new ObjectMapper();
+        long start = System.nanoTime();
+        long deadline = start + warmup.toNanos() + duration.toNanos();
+        System.out.printf("Running %d users against %s: %d s warmup, %d s measured%n",
+                users, baseUrl, warmup.toSeconds(), duration.toSeconds());
+
+        ExecutorService pool = Executors.newFixedThreadPool(users);
+        // Users join over the first half of the warmup rather than all in the same millisecond
+        long rampUpStepMs = warmup.toMillis() / 2 / users;
+        for (int i = 0; i < users; i++) {
+            pool.execute(new VirtualUser(client, mapper, baseUrl, recorder, seed * 31 + i,
+                    generator.getBooks(), generator.getStudents(), thinkTimeMs, deadline));
+            Thread.sleep(rampUpStepMs);
+        }
+
+        TimeUnit.NANOSECONDS.sleep(start + warmup.toNanos() - System.nanoTime());
+        recorder.start();
+        long recordingStarted = System.nanoTime();
+        TimeUnit.NANOSECONDS.sleep(deadline - recordingStarted);
+        recorder.stop();
+        long recordingStopped = System.nanoTime();
+
+        pool.shutdown();
+        if (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+            pool.shutdownNow();
+        }
+        return Duration.ofNanos(recordingStopped - recordingStarted);
+    }
+
+    // Lets Hibernate create the tables exactly as the backend maps them, dropping any that are there
+    private static void createSchema(String jdbcUrl, String user, String password) {
+        new SpringApplicationBuilder(LibraryBackendApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(datasourceArgs(jdbcUrl, user, password, "create"))
+                .close();
+    }
+
+    private static ConfigurableApplicationContext startServer(String jdbcUrl, String user, String password) {
+        String[] datasource = datasourceArgs(jdbcUrl, user, password, "none");
+        String[] args = new String[datasource.length + 2];
+        System.arraycopy(datasource, 0, args, 0, datasource.length);
+        args[datasource.length] = "--server.port=0";
+        // The first overdue scan would notify every generated overdue loan at once, which no steady state has
+        args[datasource.length + 1] = "--library.overdue.scan-initial-delay-ms=86400000";
+        return new SpringApplicationBuilder(LibraryBackendApplication.class).run(args);
+    }
+
+    // Command-line arguments, so they win over the MySQL settings in application.properties
+    private static String[] datasourceArgs(String jdbcUrl, String user, String password, String ddlAuto) {
+        return new String[] {
+                "--spring.datasource.url=" + jdbcUrl,
+                "--spring.datasource.username=" + user,
+                "--spring.datasource.password=" + password,
+                "--spring.jpa.hibernate.ddl-auto=" + ddlAuto,
+                "--logging.level.root=WARN"
+        };
+    }
+}
@@ -0,0 +1,309 @@
+package com.example.librarybackend.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// One simulated user of the frontend. Each iteration picks a scenario by weight and makes the
+// requests its page makes, with think time between them, until the run is over.
+// Seeded per user, so a run with the same seed sends the same sequence of requests.
+final class VirtualUser implements Runnable {
+
+    // How often each kind of page visit happens, out of 100
+    enum Scenario {
+        DASHBOARD(15),      // Librarian dashboard: summary cards and the open/overdue loan tables
+        NOTIFICATIONS(40),  // Header.js on every page: unread count, the count stream, the notification panel
+        CATALOG(30),        // BookCatalogPage: browsing pages by genre, searching, opening a book
+        CIRCULATION(10),    // The issue/return desk, one book at a time and in stacks
+        RESERVATIONS(5);    // A student reserving a book, checking their queue, sometimes cancelling
+
+        final int weight;
+
+        Scenario(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final int PAGE_SIZE = 24;
+    private static final int BATCH_SIZE = 3;
+
+    private final HttpClient client;
+    private final ObjectMapper mapper;
+    private final String baseUrl;
+    private final LatencyRecorder recorder;
+    private final Random random;
+    private final int books;
+    private final int students;
+    private final long thinkTimeMs;
+    private final long deadline;
+
+    VirtualUser(HttpClient client, ObjectMapper mapper, String baseUrl, LatencyRecorder recorder, long seed,
+                int books, int students, long thinkTimeMs, long deadline) {
+        this.client = client;
+        this.mapper = mapper;
+        this.baseUrl = baseUrl;
+        this.recorder = recorder;
+        this.random = new Random(seed);
+        this.books = books;
+        this.students = students;
+        this.thinkTimeMs = thinkTimeMs;
+        this.deadline = deadline;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (System.nanoTime() < deadline) {
+                switch (pickScenario()) {
+                    case DASHBOARD -> dashboard();
+                    case NOTIFICATIONS -> notifications();
+                    case CATALOG -> catalog();
+                    case CIRCULATION -> circulation();
+                    case RESERVATIONS -> reservations();
+                }
+                think();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // === Scenarios ===
+
+    private void dashboard() throws InterruptedException {
+        get("GET /api/dashboard/summary", "/api/dashboard/summary");
+        think();
+        JsonNode open = get("GET /api/transactions/page?status=open", "/api/transactions/page?status=open&limit=50");
+        if (open != null && open.hasNonNull("nextCursor") && random.nextBoolean()) {
+            think();
+            get("GET /api/transactions/page?status=open", "/api/transactions/page?status=open&limit=50&cursor="
+                    + open.get("nextCursor").asInt());
+        }
+        think();
+        get("GET /api/transactions/page?status=overdue", "/api/transactions/page?status=overdue&limit=50");
+    }
+
+    private void notifications() throws InterruptedException {
+        int student = random.nextInt(students);
+        String userId = DataGenerator.studentId(student);
+        if (random.nextInt(10) == 0) {
+            // A new session starts with the login page
+            send("POST /api/auth/login", "POST", "/api/auth/login",
+                    Map.of("email", DataGenerator.studentEmail(student), "password", "loadtest"));
+            think();
+        }
+
+        get("GET /api/notifications/user/{id}/unread/count", "/api/notifications/user/" + userId + "/unread/count");
+        try (InputStream stream = openStream(userId)) {
+            if (random.nextInt(10) < 3) {
+                // The user opens the notification panel, reads one and closes it again
+                think();
+                JsonNode list = get("GET /api/notifications/user/{id}", "/api/notifications/user/" + userId);
+                JsonNode unread = firstUnread(list);
+                if (unread != null) {
+                    think();
+                    send("PUT /api/notifications/{id}/read", "PUT", "/api/notifications/" + unread.get("id").asInt() + "/read", null);
+                } else if (list != null && list.size() > 0 && random.nextInt(10) == 0) {
+                    think();
+                    send("PUT /api/notifications/user/{id}/read-all", "PUT", "/api/notifications/user/" + userId + "/read-all", null);
+                }
+                think();
+                get("GET /api/notifications/user/{id}/unread/count", "/api/notifications/user/" + userId + "/unread/count");
+            } else {
+                think();
+            }
+        } catch (IOException e) {
+            // Closing a half-read stream; nothing to record
+        }
+    }
+
+    private void catalog() throws InterruptedException {
+        String genre = random.nextInt(3) == 0 ? DataGenerator.GENRES[random.nextInt(DataGenerator.GENRES.length)] : null;
+        String path = "/api/books/page?limit=" + PAGE_SIZE + (genre != null ? "&genre=" + encode(genre) : "");
+        String name = genre != null ? "GET /api/books/page?genre" : "GET /api/books/page";
+        JsonNode page = get(name, path);
+        int pages = random.nextInt(4);
+        for (int i = 0; i < pages && page != null && page.hasNonNull("nextCursor"); i++) {
+            think();
+            page = get(name, path + "&cursor=" + encode(page.get("nextCursor").asText()));
+        }
+        if (random.nextInt(10) < 4) {
+            // Typeahead: a prefix of a title word, then the whole word
+            think();
+            String word = DataGenerator.WORDS[random.nextInt(DataGenerator.WORDS.length)];
+            get("GET /api/books/search", "/api/books/search?q=" + encode(word.substring(0, Math.min(3, word.length()))));
+            get("GET /api/books/search", "/api/books/search?q=" + encode(word));
+        }
+        think();
+        get("GET /api/books/{id}", "/api/books/" + DataGenerator.bookId(DataGenerator.popularBook(random, books)));
+    }
+
+    private void circulation() throws InterruptedException {
+        String studentId = DataGenerator.studentId(random.nextInt(students));
+        if (random.nextInt(5) > 0) {
+            JsonNode issued = send("POST /api/transactions", "POST", "/api/transactions",
+                    Map.of("bookId", DataGenerator.bookId(DataGenerator.popularBook(random, books)), "studentId", studentId));
+            if (issued != null) {
+                think();
+                send("PUT /api/transactions/{id}", "PUT", "/api/transactions/" + issued.get("id").asInt(), Map.of());
+            }
+            return;
+        }
+
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            items.add(Map.of("bookId", DataGenerator.bookId(DataGenerator.popularBook(random, books)), "studentId", studentId));
+        }
+        JsonNode issued = send("POST /api/transactions/batch/issue", "POST", "/api/transactions/batch/issue", items);
+        List<Map<String, Object>> returns = new ArrayList<>();
+        if (issued != null) {
+            for (JsonNode result : issued.path("results")) {
+                if (result.path("success").asBoolean()) {
+                    returns.add(Map.of("transactionId", result.path("transaction").path("id").asInt()));
+                }
+            }
+        }
+        if (!returns.isEmpty()) {
+            think();
+            send("POST /api/transactions/batch/return", "POST", "/api/transactions/batch/return", returns);
+        }
+    }
+
+    private void reservations() throws InterruptedException {
+        String studentId = DataGenerator.studentId(random.nextInt(students));
+        JsonNode reservation = send("POST /api/reservations", "POST", "/api/reservations",
+                Map.of("bookId", DataGenerator.bookId(DataGenerator.popularBook(random, books)), "studentId", studentId));
+        think();
+        get("GET /api/reservations/student/{id}", "/api/reservations/student/" + studentId);
+        if (reservation != null && random.nextBoolean()) {
+            // Cancelled again, so the queues stay the size the generator made them
+            think();
+            send("DELETE /api/reservations/{id}", "DELETE", "/api/reservations/" + reservation.get("id").asInt(), null);
+        }
+    }
+
+    // Helper methods
+
+    private Scenario pickScenario() {
+        int roll = random.nextInt(100);
+        for (Scenario scenario : Scenario.values()) {
+            roll -= scenario.weight;
+            if (roll < 0) {
+                return scenario;
+            }
+        }
+        return Scenario.CATALOG;
+    }
+
+    private void think() throws InterruptedException {
+        if (thinkTimeMs > 0) {
+            // Somewhere between half and one and a half times the configured think time
+            Thread.sleep(thinkTimeMs / 2 + (long) (random.nextDouble() * thinkTimeMs));
+        }
+    }
+
+    private JsonNode get(String endpoint, String path) {
+        return send(endpoint, "GET", path, null);
+    }
+
+    // Sends the request and records how long the whole response took; returns the parsed body of a 2xx
+    // response, or null
+    private JsonNode send(String endpoint, String method, String path, Object body) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(REQUEST_TIMEOUT);
+        try {
+            if (body != null) {
+                request.header("Content-Type", "application/json")
+                        .method(method, HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(body)));
+            } else {
+                request.method(method, HttpRequest.BodyPublishers.noBody());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        long started = System.nanoTime();
+        HttpResponse<byte[]> response;
+        try {
+            response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            recorder.record(endpoint, System.nanoTime() - started, 0);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        recorder.record(endpoint, System.nanoTime() - started, response.statusCode());
+
+        if (response.statusCode() / 100 != 2 || response.body().length == 0) {
+            return null;
+        }
+        try {
+            return mapper.readTree(response.body());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // Opens the unread-count stream as EventSource does and records the time to its first event.
+    // The stream stays open, holding a server connection, until the caller closes it.
+    private InputStream openStream(String userId) {
+        String endpoint = "GET /api/notifications/user/{id}/stream (first event)";
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/notifications/user/" + userId + "/stream"))
+                .header("Accept", "text/event-stream")
+                .build();
+        long started = System.nanoTime();
+        try {
+            HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            InputStream body = response.body();
+            if (response.statusCode() != 200) {
+                recorder.record(endpoint, System.nanoTime() - started, response.statusCode());
+                body.close();
+                return InputStream.nullInputStream();
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null && !line.startsWith("data:")) {
+                // Skip the event name and comment lines
+            }
+            recorder.record(endpoint, System.nanoTime() - started, line != null ? 200 : 0);
+            return body;
+        } catch (IOException e) {
+            recorder.record(endpoint, System.nanoTime() - started, 0);
+            return InputStream.nullInputStream();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return InputStream.nullInputStream();
+        }
+    }
+
+    private static JsonNode firstUnread(JsonNode notifications) {
+        if (notifications != null) {
+            for (JsonNode notification : notifications) {
+                if (!notification.path("isRead").asBoolean(true)) {
+                    return notification;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -164,12 +164,22 @@ function Header() {
   useEffect(() => {
     if (!currentUser?.id) return;
 
-    fetchNotificationCount();
-
-    const interval = setInterval(fetchNotificationCount, 30000);
-    return () => clearInterval(interval);
+    // The server pushes the unread count when it changes; EventSource reconnects by itself
+    const source = new EventSource(
+      `http://localhost:8080/api/notifications/user/${currentUser.id}/stream`
+    );
+    source.addEventListener('unread-count', (event) => {
+      try {
+        const data = JSON.parse(event.data);
+        setNotificationCount(data.count || 0);
+      } catch (error) {
+        console.error('Failed to read notification count:', error);
+      }
+    });
+
+    return () => source.close();
 
-  }, [currentUser?.id, fetchNotificationCount]);
+  }, [currentUser?.id]);
 
   const handleNotificationClick = (event) => {
     setNotificationAnchorEl(event.currentTarget);